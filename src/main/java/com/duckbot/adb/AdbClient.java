@@ -2,27 +2,175 @@ package com.duckbot.adb;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * ADB client for interacting with Android devices via adb commands.
  * Auto-detects bundled LDPlayer adb.exe or falls back to system PATH.
+ * Commands go over the adb server socket when it is reachable and fall back
+ * to spawning the adb executable otherwise. Input commands share one persistent
+ * shell session per device.
+ *
+ * Device calls are asynchronous underneath: every *Async method runs under a deadline,
+ * at most {@link #setMaxConcurrentPerDevice} calls per device run at once, and a call that
+ * times out or is cancelled closes its socket or kills its adb process. The synchronous
+ * methods wait on those futures with the default timeouts.
+ *
+ * Calls to a device are also paced by a token bucket ({@link #setRateLimit}) and admitted
+ * by {@link Lane}: taps and text go before captures, which go before UI previews.
  */
-public class AdbClient {
+public class AdbClient implements AutoCloseable {
+
+    private static final Pattern SAFE_SHELL_ARG = Pattern.compile("[A-Za-z0-9_./%:=,+@-]+");
+    /** Session timeout for shell commands run outside a deadline-bound call. */
+    private static final long SESSION_TIMEOUT_MS = 10000;
+    private static final Duration INPUT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration CAPTURE_TIMEOUT = Duration.ofSeconds(15);
+    private static final Duration HOST_TIMEOUT = Duration.ofSeconds(10);
+    private static final String HOST_KEY = "<host>";
+    private static final String MINITOUCH_PATH = "/data/local/tmp/minitouch";
+    private static final String ADB_KEYBOARD_IME = "com.android.adbkeyboard/.AdbIME";
+    private static final String CLIPPER_PACKAGE = "ca.zgrs.clipper";
+    private static final int KEYCODE_PASTE = 279;
+    private static final String TEXT_BACKEND_UNAVAILABLE = "__DUCKBOT_TEXT_BACKEND_UNAVAILABLE";
+    private static final Pattern WM_SIZE = Pattern.compile("(Physical|Override) size:\\s*(\\d+)x(\\d+)");
+    private static final Pattern SURFACE_ORIENTATION = Pattern.compile("SurfaceOrientation:\\s*(\\d)");
+    private static final long MINITOUCH_RETRY_MIN_MS = 30_000;
+    private static final long MINITOUCH_RETRY_MAX_MS = 600_000;
+    private static final long ROTATION_TTL_MS = 5_000;
+    private static final String UI_DUMP_PATH = "/data/local/tmp/duckbot-ui.xml";
+    private static final Duration UI_DUMP_TIMEOUT = Duration.ofSeconds(20);
+    private static final int UI_FINGERPRINT_GRID = 32;
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "adb-deadline");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final ThreadLocal<AdbCall> CURRENT_CALL = new ThreadLocal<>();
+
+    /**
+     * How {@link #screencap} pulls frames: RAW skips PNG encoding on the device and decoding here.
+     */
+    public enum CaptureMode { RAW, PNG }
+
+    /**
+     * How taps and swipes reach the device: the Android input command, or a minitouch
+     * server over a forwarded socket (falls back to INPUT when minitouch is unavailable).
+     */
+    public enum TouchBackend {
+        INPUT, MINITOUCH;
+
+        public static TouchBackend parse(String name) {
+            return name != null && name.trim().equalsIgnoreCase("minitouch") ? MINITOUCH : INPUT;
+        }
+    }
+
+    /**
+     * How text reaches the device, fastest first: a base64 broadcast to the ADBKeyBoard IME,
+     * the clipboard (set through the Clipper app) plus a paste key event, or the Android input
+     * command, which types ASCII only and one key event per character.
+     */
+    public enum TextBackend {
+        ADB_KEYBOARD, CLIPBOARD, INPUT;
+
+        /**
+         * @return the named backend, or null for "auto" and unknown names
+         */
+        public static TextBackend parse(String name) {
+            if (name == null) return null;
+            return switch (name.trim().toLowerCase().replace("_", "").replace(" ", "")) {
+                case "adbkeyboard" -> ADB_KEYBOARD;
+                case "clipboard" -> CLIPBOARD;
+                case "input" -> INPUT;
+                default -> null;
+            };
+        }
+    }
+
+    /**
+     * Priority of a device call, highest first. A call waits while any call of a higher lane
+     * is queued for the same device, until it has waited about two seconds and is promoted.
+     */
+    public enum Lane { INPUT, CAPTURE, PREVIEW }
 
     private String adbPath;
+    private final AdbSocketTransport transport;
+    private final Map<String, ShellSession> sessions = new ConcurrentHashMap<>();
+    private volatile CaptureMode captureMode = CaptureMode.RAW;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "adb-call");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, DeviceGate> gates = new ConcurrentHashMap<>();
+    private final Map<String, double[]> rateLimits = new ConcurrentHashMap<>();
+    private volatile double defaultCommandsPerSecond = 20;
+    private volatile int defaultBurst = 10;
+    private final Map<String, MinitouchClient> touchClients = new ConcurrentHashMap<>();
+    private final Map<String, InputStream> minitouchServers = new ConcurrentHashMap<>();
+    private final Map<String, Object> touchLocks = new ConcurrentHashMap<>();
+    private final Map<String, Integer> touchPorts = new ConcurrentHashMap<>();
+    /** Per device without minitouch: {retry at, current backoff ms}. */
+    private final Map<String, long[]> touchBackoff = new ConcurrentHashMap<>();
+    /** Per device: {rotation, read at}. */
+    private final Map<String, long[]> rotations = new ConcurrentHashMap<>();
+    private final Map<String, int[]> screenSizes = new ConcurrentHashMap<>();
+    private final Map<String, TextBackend> textBackends = new ConcurrentHashMap<>();
+    private final Map<String, CachedTree> uiTrees = new ConcurrentHashMap<>();
+    private volatile int maxConcurrentPerDevice = 2;
 
     public AdbClient() {
-        this.adbPath = findAdbPath();
+        this(findAdbPath());
     }
 
     public AdbClient(String adbPath) {
+        this(adbPath, new AdbSocketTransport());
+    }
+
+    /**
+     * @param transport socket transport to try first, or null to always spawn adb processes
+     */
+    public AdbClient(String adbPath, AdbSocketTransport transport) {
         this.adbPath = adbPath;
+        this.transport = transport;
     }
 
     /**
@@ -48,149 +196,1087 @@ public class AdbClient {
         return "adb";
     }
 
+    /**
+     * Cap how many calls may run against one device at the same time. Applies to devices
+     * first used after the change.
+     */
+    public void setMaxConcurrentPerDevice(int max) {
+        this.maxConcurrentPerDevice = Math.max(1, max);
+    }
+
+    /**
+     * Pace calls to every device without its own limit; 0 commands per second disables pacing.
+     */
+    public void setDefaultRateLimit(double commandsPerSecond, int burst) {
+        this.defaultCommandsPerSecond = commandsPerSecond;
+        this.defaultBurst = Math.max(1, burst);
+        gates.forEach((serial, gate) -> {
+            if (!rateLimits.containsKey(serial) && !HOST_KEY.equals(serial)) {
+                gate.setRate(commandsPerSecond, defaultBurst);
+            }
+        });
+    }
+
+    /**
+     * Pace calls to one device: at most {@code burst} back to back, then {@code commandsPerSecond}.
+     */
+    public void setRateLimit(String serial, double commandsPerSecond, int burst) {
+        rateLimits.put(serial, new double[]{commandsPerSecond, Math.max(1, burst)});
+        DeviceGate gate = gates.get(serial);
+        if (gate != null) {
+            gate.setRate(commandsPerSecond, Math.max(1, burst));
+        }
+    }
+
+    /**
+     * Queueing delay per lane for a device; empty if it has not been used.
+     */
+    public Map<Lane, QueueStats> queueStats(String serial) {
+        DeviceGate gate = gates.get(serial);
+        return gate == null ? Map.of() : gate.stats();
+    }
+
     /**
      * Test if ADB is accessible and working.
      */
     public boolean testConnection() {
-        try {
-            ProcessBuilder pb = new ProcessBuilder(adbPath, "version");
-            pb.redirectErrorStream(true);
-            Process proc = pb.start();
-            int exitCode = proc.waitFor();
-            return exitCode == 0;
-        } catch (Exception e) {
-            return false;
+        if (socketAvailable()) {
+            return true;
         }
+        return await(submit(HOST_KEY, HOST_TIMEOUT, () -> {
+            Process proc = startProcess(false, adbPath, "version");
+            return proc.waitFor() == 0;
+        }), false);
     }
 
     /**
      * Get list of connected devices.
      */
     public List<String> listDevices() {
+        return await(listDevicesAsync(HOST_TIMEOUT), new ArrayList<>());
+    }
+
+    public CompletableFuture<List<String>> listDevicesAsync(Duration timeout) {
+        return deviceStatesAsync(timeout).thenApply(states -> new ArrayList<>(states.keySet()));
+    }
+
+    /**
+     * Serials known to the adb server with their state ("device", "offline", "unauthorized", ...).
+     */
+    public Map<String, String> deviceStates() {
+        return await(deviceStatesAsync(HOST_TIMEOUT), new LinkedHashMap<>());
+    }
+
+    public CompletableFuture<Map<String, String>> deviceStatesAsync(Duration timeout) {
+        return submit(HOST_KEY, timeout, () -> {
+            if (socketAvailable()) {
+                try {
+                    return parseDevices(transport.hostQuery("host:devices"));
+                } catch (IOException ignored) {
+                    // Fall through to the adb executable
+                }
+            }
+            return parseDevices(execAdb("devices"));
+        });
+    }
+
+    private static Map<String, String> parseDevices(String output) {
+        Map<String, String> devices = new LinkedHashMap<>();
+        for (String line : output.split("\n")) {
+            if (line.contains("\t") && !line.contains("List of devices")) {
+                String[] parts = line.split("\t");
+                if (parts.length > 0) devices.put(parts[0].trim(), parts.length > 1 ? parts[1].trim() : "");
+            }
+        }
+        return devices;
+    }
+
+    public boolean shell(String serial, String... cmd) {
+        return await(shellAsync(serial, INPUT_TIMEOUT, cmd), null) != null;
+    }
+
+    /**
+     * Run a shell command and return its output, also when it exits non-zero, or null if it
+     * could not be run.
+     */
+    public String shellOutput(String serial, String... cmd) {
         try {
-            ProcessBuilder pb = new ProcessBuilder(adbPath, "devices");
-            pb.redirectErrorStream(true);
-            Process proc = pb.start();
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            return shellAsync(serial, INPUT_TIMEOUT, cmd).join();
+        } catch (CompletionException e) {
+            return e.getCause() instanceof ShellSession.ExitException exit ? exit.output : null;
+        } catch (CancellationException e) {
+            return null;
+        }
+    }
+
+    public CompletableFuture<String> shellAsync(String serial, Duration timeout, String... cmd) {
+        return shellAsync(serial, Lane.CAPTURE, timeout, cmd);
+    }
+
+    public CompletableFuture<String> shellAsync(String serial, Lane lane, Duration timeout, String... cmd) {
+        return submit(serial, lane, timeout, () -> runShell(serial, cmd));
+    }
+
+    public boolean tap(String serial, int x, int y) {
+        return await(tapAsync(serial, x, y, INPUT_TIMEOUT), null) != null;
+    }
+
+    /**
+     * Tap with the given backend. A minitouch tap runs in the input lane like any other; on a
+     * device without minitouch it is sent with {@code input tap} instead.
+     */
+    public boolean tap(String serial, int x, int y, TouchBackend backend) {
+        if (backend != TouchBackend.MINITOUCH) {
+            return tap(serial, x, y);
+        }
+        return await(submit(serial, Lane.INPUT, INPUT_TIMEOUT, () -> {
+            if (touch(serial, client -> client.tap(x, y))) {
+                return "";
+            }
+            return runShell(serial, "input", "tap", String.valueOf(x), String.valueOf(y));
+        }), null) != null;
+    }
+
+    public CompletableFuture<String> tapAsync(String serial, int x, int y, Duration timeout) {
+        return shellAsync(serial, Lane.INPUT, timeout, "input", "tap", String.valueOf(x), String.valueOf(y));
+    }
+
+    public boolean swipe(String serial, int x1, int y1, int x2, int y2, int durationMs) {
+        return await(swipeAsync(serial, x1, y1, x2, y2, durationMs, INPUT_TIMEOUT.plusMillis(durationMs)), null) != null;
+    }
+
+    /**
+     * Swipe with the given backend, returning once the gesture has finished on the device as
+     * {@code input swipe} does.
+     */
+    public boolean swipe(String serial, int x1, int y1, int x2, int y2, int durationMs, TouchBackend backend) {
+        if (backend != TouchBackend.MINITOUCH) {
+            return swipe(serial, x1, y1, x2, y2, durationMs);
+        }
+        return await(submit(serial, Lane.INPUT, INPUT_TIMEOUT.plusMillis(durationMs), () -> {
+            if (touch(serial, client -> {
+                client.swipe(x1, y1, x2, y2, durationMs);
+                // minitouch paces the moves itself; hold the device until they are done
+                Thread.sleep(durationMs);
+            })) {
+                return "";
+            }
+            return runShell(serial, "input", "swipe", String.valueOf(x1), String.valueOf(y1),
+                    String.valueOf(x2), String.valueOf(y2), String.valueOf(durationMs));
+        }), null) != null;
+    }
+
+    public CompletableFuture<String> swipeAsync(String serial, int x1, int y1, int x2, int y2, int durationMs, Duration timeout) {
+        return shellAsync(serial, Lane.INPUT, timeout, "input", "swipe",
+                String.valueOf(x1), String.valueOf(y1),
+                String.valueOf(x2), String.valueOf(y2),
+                String.valueOf(durationMs));
+    }
+
+    public boolean inputText(String serial, String text) {
+        return await(inputTextAsync(serial, text, INPUT_TIMEOUT), null) != null;
+    }
+
+    public CompletableFuture<String> inputTextAsync(String serial, String text, Duration timeout) {
+        return shellAsync(serial, Lane.INPUT, timeout, "input", "text", text.replace(" ", "%s"));
+    }
+
+    /**
+     * Type text with the fastest backend the device supports, falling back to {@code input text}.
+     */
+    public boolean typeText(String serial, String text) {
+        return typeText(serial, text, textBackend(serial));
+    }
+
+    /**
+     * Type text in one shell round trip with the given backend. The device first checks the
+     * backend can deliver (ADBKeyBoard is the current IME, Clipper took the clipboard) and
+     * only if it cannot is the backend detected again and the text typed with
+     * {@code input text}. Any other failure returns false without retrying, since the text
+     * may already have arrived.
+     */
+    public boolean typeText(String serial, String text, TextBackend backend) {
+        if (text == null || text.isEmpty()) {
+            return true;
+        }
+        String unavailable = "echo " + TEXT_BACKEND_UNAVAILABLE + "; exit 3";
+        String script = switch (backend) {
+            case ADB_KEYBOARD -> "[ \"$(settings get secure default_input_method)\" = " + ADB_KEYBOARD_IME + " ] || { "
+                    + unavailable + "; }; "
+                    + toShellCommand("am", "broadcast", "-a", "ADB_INPUT_B64", "--es", "msg",
+                            Base64.getEncoder().encodeToString(text.getBytes(StandardCharsets.UTF_8)));
+            // Clipper reports result=-1 once the clipboard is set; paste only then
+            case CLIPBOARD -> "case \"$(" + toShellCommand("am", "broadcast", "-a", "clipper.set", "-e", "text", text)
+                    + ")\" in *result=-1*) input keyevent " + KEYCODE_PASTE + " ;; *) " + unavailable + " ;; esac";
+            case INPUT -> null;
+        };
+        if (script == null) {
+            return inputText(serial, text);
+        }
+        String output;
+        boolean ran;
+        try {
+            output = shellAsync(serial, Lane.INPUT, INPUT_TIMEOUT, "sh", "-c", script).join();
+            ran = true;
+        } catch (CompletionException e) {
+            output = e.getCause() instanceof ShellSession.ExitException exit ? exit.output : null;
+            ran = false;
+        } catch (CancellationException e) {
+            output = null;
+            ran = false;
+        }
+        if (output != null && output.contains(TEXT_BACKEND_UNAVAILABLE)) {
+            textBackends.remove(serial);
+            return inputText(serial, text);
+        }
+        return ran;
+    }
+
+    /**
+     * Fastest text backend installed on the device; detected with one shell call and cached.
+     * An installed ADBKeyBoard is made the current IME so it receives the broadcasts.
+     */
+    public TextBackend textBackend(String serial) {
+        TextBackend cached = textBackends.get(serial);
+        if (cached != null) {
+            return cached;
+        }
+        String output = shellOutput(serial, "sh", "-c", "ime list -a -s; pm list packages " + CLIPPER_PACKAGE);
+        if (output == null) {
+            return TextBackend.INPUT;
+        }
+        TextBackend backend = TextBackend.INPUT;
+        if (output.contains(ADB_KEYBOARD_IME)) {
+            String set = shellOutput(serial, "sh", "-c", "ime enable " + ADB_KEYBOARD_IME + " && ime set " + ADB_KEYBOARD_IME);
+            if (set != null && !set.contains("Unknown") && !set.contains("Error")) {
+                backend = TextBackend.ADB_KEYBOARD;
+            }
+        }
+        if (backend == TextBackend.INPUT && output.contains("package:" + CLIPPER_PACKAGE)) {
+            shell(serial, "am", "startservice", CLIPPER_PACKAGE + "/.ClipboardService");
+            backend = TextBackend.CLIPBOARD;
+        }
+        textBackends.put(serial, backend);
+        return backend;
+    }
+
+    public CaptureMode getCaptureMode() {
+        return captureMode;
+    }
+
+    public void setCaptureMode(CaptureMode captureMode) {
+        this.captureMode = captureMode;
+    }
+
+    public BufferedImage screencap(String serial) {
+        return screencap(serial, Lane.CAPTURE);
+    }
+
+    /**
+     * Capture in the given lane, e.g. {@link Lane#PREVIEW} for UI previews that must not
+     * delay a running script.
+     */
+    public BufferedImage screencap(String serial, Lane lane) {
+        // Blank image on failure, as callers have always expected
+        return await(screencapAsync(serial, lane, CAPTURE_TIMEOUT),
+                new BufferedImage(1080, 1920, BufferedImage.TYPE_INT_RGB));
+    }
+
+    public CompletableFuture<BufferedImage> screencapAsync(String serial, Duration timeout) {
+        return screencapAsync(serial, Lane.CAPTURE, timeout);
+    }
+
+    public CompletableFuture<BufferedImage> screencapAsync(String serial, Lane lane, Duration timeout) {
+        return submit(serial, lane, timeout, () -> {
+            if (captureMode == CaptureMode.RAW) {
+                try {
+                    return readRaw(serial, null).toImage();
+                } catch (IOException ignored) {
+                    // Fall back to PNG capture
+                }
+            }
+            return readPng(serial);
+        });
+    }
+
+    /**
+     * Capture the raw framebuffer. Pass the previous frame as {@code reuse} to read into its
+     * buffer instead of allocating a new one for every capture.
+     */
+    public RawFrame screencapRaw(String serial, RawFrame reuse) throws IOException {
+        try {
+            return screencapRawAsync(serial, reuse, CAPTURE_TIMEOUT).join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw cause instanceof IOException io ? io : new IOException(cause);
+        }
+    }
+
+    public CompletableFuture<RawFrame> screencapRawAsync(String serial, RawFrame reuse, Duration timeout) {
+        return submit(serial, timeout, () -> readRaw(serial, reuse));
+    }
+
+    private RawFrame readRaw(String serial, RawFrame reuse) throws IOException {
+        if (socketAvailable()) {
+            try (Socket socket = track(transport.openService(serial, "exec:screencap"));
+                 InputStream in = socket.getInputStream()) {
+                return RawFrame.read(in, reuse);
+            } catch (IOException ignored) {
+                // Fall through to the adb executable
+            }
+        }
+        Process proc = startProcess(true, adbPath, "-s", serial, "exec-out", "screencap");
+        try (InputStream in = proc.getInputStream()) {
+            return RawFrame.read(in, reuse);
+        } finally {
+            proc.destroy();
+        }
+    }
+
+    private BufferedImage readPng(String serial) throws Exception {
+        byte[] pngBytes = null;
+        if (socketAvailable()) {
+            try {
+                pngBytes = socketExec(serial, "exec:screencap -p");
+            } catch (IOException ignored) {
+                // Fall through to the adb executable
+            }
+        }
+        if (pngBytes == null || pngBytes.length == 0) {
+            Process proc = startProcess(true, adbPath, "-s", serial, "exec-out", "screencap", "-p");
             try (InputStream in = proc.getInputStream()) {
-                in.transferTo(out);
+                pngBytes = in.readAllBytes();
             }
             proc.waitFor();
-            String output = out.toString("UTF-8");
-            List<String> devices = new ArrayList<>();
-            for (String line : output.split("\n")) {
-                if (line.contains("\t") && !line.contains("List of devices")) {
-                    String[] parts = line.split("\t");
-                    if (parts.length > 0) devices.add(parts[0].trim());
+        }
+        BufferedImage image = pngBytes.length == 0 ? null : ImageIO.read(new ByteArrayInputStream(pngBytes));
+        if (image == null) {
+            throw new IOException("No screenshot received from " + serial);
+        }
+        return image;
+    }
+
+    /**
+     * Start a long-running exec command and return its stdout. Closing the stream
+     * closes the socket or kills the adb process behind it.
+     */
+    public InputStream execStream(String serial, String command) throws IOException {
+        if (socketAvailable()) {
+            try {
+                return transport.openService(serial, "exec:" + command).getInputStream();
+            } catch (IOException ignored) {
+                // Fall through to the adb executable
+            }
+        }
+        List<String> cmd = new ArrayList<>(List.of(adbPath, "-s", serial, "exec-out"));
+        cmd.addAll(List.of(command.split(" ")));
+        Process proc = new ProcessBuilder(cmd)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        return new FilterInputStream(proc.getInputStream()) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    proc.destroyForcibly();
+                }
+            }
+        };
+    }
+
+    /**
+     * Run a long command (hashing, scanning) on its own exec connection rather than the shared
+     * shell session, so input queued for the device does not wait behind it.
+     *
+     * @return the output, also when the command exits non-zero, or null if it could not be run
+     */
+    public String execOutput(String serial, Duration timeout, String... cmd) {
+        String command = toShellCommand(cmd);
+        return await(submit(serial, Lane.CAPTURE, timeout, () -> {
+            Socket socket = null;
+            if (socketAvailable()) {
+                try {
+                    socket = track(transport.openService(serial, "exec:" + command));
+                } catch (IOException ignored) {
+                    // Fall through to the adb executable
                 }
             }
-            return devices;
+            if (socket != null) {
+                try (Socket open = socket) {
+                    return readLines(open.getInputStream(), null);
+                }
+            }
+            Process proc = startProcess(false, adbPath, "-s", serial, "exec-out", command);
+            String output = readLines(proc.getInputStream(), null);
+            proc.waitFor();
+            return output;
+        }), null);
+    }
+
+    /**
+     * Forward a free local TCP port to {@code remote} on the device (e.g. "localabstract:minitouch").
+     *
+     * @return the local port
+     */
+    public int forward(String serial, String remote) throws IOException {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        String local = "tcp:" + port;
+        if (socketAvailable()) {
+            try {
+                transport.hostCommand("host-serial:" + serial + ":forward:" + local + ";" + remote);
+                return port;
+            } catch (IOException ignored) {
+                // Fall through to the adb executable
+            }
+        }
+        try {
+            execAdb("-s", serial, "forward", local, remote);
         } catch (Exception e) {
-            return new ArrayList<>();
+            throw new IOException("adb forward failed for " + serial, e);
         }
+        return port;
     }
 
-    public boolean shell(String serial, String... cmd) {
-        return true;
+    /**
+     * Remove a forward set up by {@link #forward}; errors are ignored.
+     */
+    public void removeForward(String serial, int port) {
+        String local = "tcp:" + port;
+        if (socketAvailable()) {
+            try {
+                transport.hostCommand("host-serial:" + serial + ":killforward:" + local);
+                return;
+            } catch (IOException ignored) {
+                // Fall through to the adb executable
+            }
+        }
+        try {
+            execAdb("-s", serial, "forward", "--remove", local);
+        } catch (Exception ignored) {
+        }
     }
 
-    public boolean tap(String serial, int x, int y) {
+    /**
+     * Screen size in pixels from {@code wm size} (override size wins), cached per device.
+     *
+     * @return {width, height}, or {0, 0} if unknown
+     */
+    public int[] screenSize(String serial) {
+        int[] cached = screenSizes.get(serial);
+        if (cached != null) {
+            return cached;
+        }
+        return cacheScreenSize(serial, shellOutput(serial, "wm", "size"));
+    }
+
+    private int[] cacheScreenSize(String serial, String output) {
+        int[] size = {0, 0};
+        if (output != null) {
+            Matcher m = WM_SIZE.matcher(output);
+            while (m.find()) {
+                size = new int[]{Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3))};
+            }
+        }
+        if (size[0] > 0) {
+            screenSizes.put(serial, size);
+        }
+        return size;
+    }
+
+    /**
+     * Dump and parse the current view tree with {@code uiautomator dump}. Takes a second or
+     * more per call, so prefer {@link #uiHierarchy(String, BufferedImage)}.
+     *
+     * @return the tree, or null if the dump failed (e.g. the screen is a game surface)
+     */
+    public UiHierarchy uiDump(String serial) {
+        String xml = await(shellAsync(serial, Lane.CAPTURE, UI_DUMP_TIMEOUT, "sh", "-c",
+                "uiautomator dump " + UI_DUMP_PATH + " >/dev/null && cat " + UI_DUMP_PATH), null);
+        int start = xml == null ? -1 : xml.indexOf('<');
+        if (start < 0) {
+            return null;
+        }
         try {
-            execAdb("-s", serial, "shell", "input", "tap", String.valueOf(x), String.valueOf(y));
-            return true;
+            return UiHierarchy.parse(xml.substring(start));
         } catch (Exception e) {
-            return false;
+            return null;
         }
     }
 
-    public boolean swipe(String serial, int x1, int y1, int x2, int y2, int durationMs) {
+    /**
+     * View tree for the screen shown in {@code frame}. The last tree is kept per device and
+     * reused while the frame's fingerprint is unchanged, so repeated lookups on a static
+     * screen cost no dump. A null frame always dumps.
+     */
+    public UiHierarchy uiHierarchy(String serial, BufferedImage frame) {
+        long fingerprint = frame == null ? 0 : uiFingerprint(frame);
+        CachedTree cached = uiTrees.get(serial);
+        if (frame != null && cached != null && cached.fingerprint() == fingerprint) {
+            return cached.tree();
+        }
+        UiHierarchy tree = uiDump(serial);
+        if (tree != null && frame != null) {
+            uiTrees.put(serial, new CachedTree(fingerprint, tree));
+        } else {
+            uiTrees.remove(serial);
+        }
+        return tree;
+    }
+
+    /**
+     * Forget the cached tree, e.g. after an input that changes the screen without a new frame yet.
+     */
+    public void invalidateUiHierarchy(String serial) {
+        uiTrees.remove(serial);
+    }
+
+    /**
+     * Hash of a grid of pixels quantized to 4 bits per channel, so compression noise and
+     * blinking cursors rarely count as a new screen.
+     */
+    private static long uiFingerprint(BufferedImage frame) {
+        int w = frame.getWidth();
+        int h = frame.getHeight();
+        long hash = 1125899906842597L + w * 31L + h;
+        for (int gy = 0; gy < UI_FINGERPRINT_GRID; gy++) {
+            int y = (int) ((gy + 0.5) * h / UI_FINGERPRINT_GRID);
+            for (int gx = 0; gx < UI_FINGERPRINT_GRID; gx++) {
+                int x = (int) ((gx + 0.5) * w / UI_FINGERPRINT_GRID);
+                hash = 31 * hash + (frame.getRGB(x, y) & 0xF0F0F0);
+            }
+        }
+        return hash;
+    }
+
+    private record CachedTree(long fingerprint, UiHierarchy tree) {
+    }
+
+    /**
+     * Run a gesture over minitouch while holding the device's touch lock, so gestures on one
+     * device never interleave while other devices are not blocked.
+     *
+     * @return false if minitouch is unavailable and nothing was sent
+     * @throws IOException if sending failed part way; the gesture is not retried
+     */
+    private boolean touch(String serial, TouchAction action) throws Exception {
+        synchronized (touchLocks.computeIfAbsent(serial, k -> new Object())) {
+            MinitouchClient client = minitouch(serial);
+            if (client == null) {
+                return false;
+            }
+            try {
+                client.setRotation(rotation(serial));
+                action.run(client);
+                return true;
+            } catch (IOException e) {
+                dropMinitouch(serial);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Connected minitouch client for the device, starting the server binary from
+     * /data/local/tmp if nothing answers. Returns null when minitouch can't be reached; the
+     * device is then not tried again until a backoff, doubling per failure, has passed.
+     * Called from a device call holding the touch lock.
+     */
+    private MinitouchClient minitouch(String serial) {
+        MinitouchClient existing = touchClients.get(serial);
+        if (existing != null && !existing.isClosed()) {
+            return existing;
+        }
+        if (existing != null) {
+            dropMinitouch(serial);
+        }
+        long[] backoff = touchBackoff.get(serial);
+        if (backoff != null && System.currentTimeMillis() < backoff[0]) {
+            return null;
+        }
+        int port = -1;
         try {
-            execAdb("-s", serial, "shell", "input", "swipe", 
-                String.valueOf(x1), String.valueOf(y1), 
-                String.valueOf(x2), String.valueOf(y2), 
-                String.valueOf(durationMs));
-            return true;
-        } catch (Exception e) {
-            return false;
+            port = forward(serial, "localabstract:minitouch");
+            int[] size = readScreenSize(serial);
+            MinitouchClient client;
+            try {
+                client = MinitouchClient.connect("127.0.0.1", port, size[0], size[1]);
+            } catch (IOException notRunning) {
+                minitouchServers.put(serial, execStream(serial, MINITOUCH_PATH));
+                client = connectWithRetry(port, size);
+            }
+            touchClients.put(serial, client);
+            touchPorts.put(serial, port);
+            touchBackoff.remove(serial);
+            return client;
+        } catch (IOException e) {
+            closeQuietly(minitouchServers.remove(serial));
+            if (port > 0) {
+                removeForward(serial, port);
+            }
+            long delay = backoff == null ? MINITOUCH_RETRY_MIN_MS : Math.min(MINITOUCH_RETRY_MAX_MS, backoff[1] * 2);
+            touchBackoff.put(serial, new long[]{System.currentTimeMillis() + delay, delay});
+            return null;
         }
     }
 
-    public boolean inputText(String serial, String text) {
+    /**
+     * {@link #screenSize} for use inside a device call, reading {@code wm size} directly
+     * rather than queuing a second call behind this one.
+     */
+    private int[] readScreenSize(String serial) {
+        int[] cached = screenSizes.get(serial);
+        if (cached != null) {
+            return cached;
+        }
+        String output;
         try {
-            execAdb("-s", serial, "shell", "input", "text", text.replace(" ", "%s"));
-            return true;
+            output = runShell(serial, "wm", "size");
         } catch (Exception e) {
-            return false;
+            output = null;
         }
+        return cacheScreenSize(serial, output);
     }
 
-    public BufferedImage screencap(String serial) {
+    /**
+     * Display rotation from {@code dumpsys input}, re-read every few seconds since games
+     * switch orientation at runtime. Called from a device call.
+     */
+    private int rotation(String serial) {
+        long now = System.currentTimeMillis();
+        long[] cached = rotations.get(serial);
+        if (cached != null && now - cached[1] < ROTATION_TTL_MS) {
+            return (int) cached[0];
+        }
+        int rotation = 0;
+        try {
+            Matcher m = SURFACE_ORIENTATION.matcher(runShell(serial, "sh", "-c", "dumpsys input | grep -m1 SurfaceOrientation"));
+            if (m.find()) {
+                rotation = Integer.parseInt(m.group(1));
+            }
+        } catch (Exception ignored) {
+            // Assume the natural orientation
+        }
+        rotations.put(serial, new long[]{rotation, now});
+        return rotation;
+    }
+
+    private static MinitouchClient connectWithRetry(int port, int[] size) throws IOException {
+        IOException last = null;
+        for (int attempt = 0; attempt < 10; attempt++) {
+            try {
+                return MinitouchClient.connect("127.0.0.1", port, size[0], size[1]);
+            } catch (IOException e) {
+                last = e;
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        throw last != null ? last : new IOException("minitouch did not start");
+    }
+
+    private void dropMinitouch(String serial) {
+        closeQuietly(touchClients.remove(serial));
+        closeQuietly(minitouchServers.remove(serial));
+        Integer port = touchPorts.remove(serial);
+        if (port != null) {
+            removeForward(serial, port);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
         try {
-            ProcessBuilder pb = new ProcessBuilder(adbPath, "-s", serial, "exec-out", "screencap", "-p");
-            pb.redirectErrorStream(false);
-            Process proc = pb.start();
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Push a local file to the device with mode 0644.
+     */
+    public boolean push(String serial, Path local, String remotePath) {
+        long size;
+        try {
+            size = Files.size(local);
+        } catch (IOException e) {
+            return false;
+        }
+        // Allow for a slow 1 MB/s link on top of the usual call timeout
+        Duration timeout = INPUT_TIMEOUT.plusMillis(size / 1000);
+        return await(pushAsync(serial, local, remotePath, 0644, timeout, null), false);
+    }
+
+    /**
+     * Push a file over the adb sync protocol, or {@code adb push} when the server socket is
+     * not reachable.
+     *
+     * @param throttle called with each chunk's size before it is sent, e.g. to cap bandwidth;
+     *                 the {@code adb push} fallback calls it once with the whole size up front
+     */
+    public CompletableFuture<Boolean> pushAsync(String serial, Path local, String remotePath, int mode,
+                                                Duration timeout, IntConsumer throttle) {
+        return submit(serial, timeout, () -> {
+            if (socketAvailable()) {
+                try (Socket socket = track(transport.openService(serial, "sync:"));
+                     InputStream in = Files.newInputStream(local)) {
+                    long mtime = Files.getLastModifiedTime(local).toMillis() / 1000;
+                    AdbSocketTransport.sendFile(socket, in, remotePath, 0100000 | mode, mtime, throttle);
+                    return true;
+                } catch (IOException ignored) {
+                    // Fall through to the adb executable
+                }
+            }
+            if (throttle != null) {
+                long size = Files.size(local);
+                for (long left = size; left > 0; left -= Integer.MAX_VALUE) {
+                    throttle.accept((int) Math.min(left, Integer.MAX_VALUE));
+                }
+            }
+            Process proc = startProcess(false, adbPath, "-s", serial, "push", local.toString(), remotePath);
             try (InputStream in = proc.getInputStream()) {
-                byte[] buffer = new byte[8192];
-                int read;
-                while ((read = in.read(buffer)) != -1) {
-                    baos.write(buffer, 0, read);
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return proc.waitFor() == 0;
+        });
+    }
+
+    /**
+     * Block until the probe reports the device ready or its deadline passes.
+     */
+    public ReadinessProbe.Result awaitReady(String serial, ReadinessProbe probe) throws InterruptedException {
+        return probe.run(this, serial);
+    }
+
+    /**
+     * {@link #awaitReady} on a background thread; cancelling the future stops the polling.
+     */
+    public CompletableFuture<ReadinessProbe.Result> awaitReadyAsync(String serial, ReadinessProbe probe) {
+        CompletableFuture<ReadinessProbe.Result> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = executor.submit(() -> {
+                try {
+                    result.complete(probe.run(this, serial));
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+            return result;
+        }
+        result.whenComplete((r, t) -> {
+            if (result.isCancelled()) task.cancel(true);
+        });
+        return result;
+    }
+
+    /**
+     * Run a compiled {@link InputBatch} as one device-side script. The whole timeout, sleeps
+     * included, bounds the script in the shell session.
+     */
+    public InputBatch.Result runBatch(String serial, InputBatch batch) {
+        return await(runBatchAsync(serial, batch, INPUT_TIMEOUT.plusMillis(batch.expectedDurationMs())),
+                InputBatch.Result.failed(batch.size()));
+    }
+
+    /**
+     * A batch that fails part way is never sent again; its result shows which commands ran.
+     */
+    public CompletableFuture<InputBatch.Result> runBatchAsync(String serial, InputBatch batch, Duration timeout) {
+        return submit(serial, Lane.INPUT, timeout, () -> {
+            InputBatch.Timer timer = batch.startTimer();
+            try {
+                runShellCommand(serial, batch.compile(), timer::onLine);
+            } catch (IOException e) {
+                // Report how far the device got rather than replaying the inputs
             }
-            proc.waitFor();
-            byte[] pngBytes = baos.toByteArray();
-            if (pngBytes.length == 0) {
-                // Fallback to blank image if capture fails
-                return new BufferedImage(1080, 1920, BufferedImage.TYPE_INT_RGB);
+            return timer.result();
+        });
+    }
+
+    /**
+     * Run a shell command on the device through its persistent session, within what is left
+     * of the surrounding call's deadline. Only when the session cannot be opened is the
+     * command run one-off, over a socket shell or else the adb executable; once it may have
+     * reached the device it is never sent again, so a slow tap is not tapped twice.
+     */
+    private String runShell(String serial, String... args) throws Exception {
+        return runShellCommand(serial, toShellCommand(args), null);
+    }
+
+    private String runShellCommand(String serial, String command, Consumer<String> lineListener) throws Exception {
+        try {
+            return session(serial).run(command, lineListener, remainingMs());
+        } catch (ShellSession.UnavailableException ignored) {
+            // Never sent; the session is reopened on the next call, run this command one-off
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("Cancelled: " + command);
+        }
+        Socket socket = null;
+        if (socketAvailable()) {
+            try {
+                socket = track(transport.openService(serial, "shell:" + command));
+            } catch (IOException ignored) {
+                // Fall through to the adb executable
+            }
+        }
+        if (socket != null) {
+            try (Socket open = socket) {
+                return readLines(open.getInputStream(), lineListener);
             }
-            return ImageIO.read(new ByteArrayInputStream(pngBytes));
-        } catch (Exception e) {
-            // Return blank image on error
-            return new BufferedImage(1080, 1920, BufferedImage.TYPE_INT_RGB);
         }
+        Process proc = startProcess(false, adbPath, "-s", serial, "shell", command);
+        String output = readLines(proc.getInputStream(), lineListener);
+        int status = proc.waitFor();
+        if (status != 0) {
+            throw new ShellSession.ExitException(command, status, output);
+        }
+        return output;
     }
 
-    private void execAdb(String... args) throws Exception {
-        ProcessBuilder pb = new ProcessBuilder(adbPath);
-        pb.command().addAll(List.of(args));
-        pb.redirectErrorStream(true);
-        Process proc = pb.start();
-        proc.waitFor();
+    /**
+     * Time left before the deadline of the call running on this thread.
+     */
+    private static long remainingMs() {
+        AdbCall call = CURRENT_CALL.get();
+        if (call == null) {
+            return SESSION_TIMEOUT_MS;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(call.deadline - System.nanoTime()));
+    }
+
+    private static String readLines(InputStream stream, Consumer<String> lineListener) throws IOException {
+        StringBuilder output = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.replace("\r", "");
+                if (lineListener != null) {
+                    lineListener.accept(line);
+                }
+                output.append(line).append('\n');
+            }
+        }
+        return output.toString();
+    }
+
+    private ShellSession session(String serial) {
+        return sessions.compute(serial, (key, existing) ->
+                existing == null || existing.isClosed() ? new ShellSession(key, adbPath, transport) : existing);
     }
 
     /**
-     * Resolve LDPlayer instance name to ADB serial using ldconsole adb command.
-     * Falls back to detecting by console list2 + matching running port.
+     * Close all persistent shell sessions and touch connections and stop the call threads.
      */
-    public static String resolveInstanceSerial(String instanceName, List<String> ldRoots) {
-        for (String root : ldRoots) {
-            if (root == null || root.isBlank()) continue;
-            File base = new File(root);
-            if (!base.exists()) continue;
+    @Override
+    public void close() {
+        sessions.values().forEach(ShellSession::close);
+        sessions.clear();
+        uiTrees.clear();
+        new ArrayList<>(touchClients.keySet()).forEach(this::dropMinitouch);
+        minitouchServers.values().forEach(AdbClient::closeQuietly);
+        minitouchServers.clear();
+        touchBackoff.clear();
+        executor.shutdownNow();
+    }
+
+    private boolean socketAvailable() {
+        return transport != null && transport.isAvailable();
+    }
 
-            // Try ldconsole.exe adb --name <instance>
-            File ldconsole = new File(base, "ldconsole.exe");
-            if (!ldconsole.exists()) {
-                ldconsole = new File(new File(base, "LDPlayer9"), "ldconsole.exe");
+    /**
+     * Join arguments into one device shell command line, quoting anything the shell would split or expand.
+     */
+    static String toShellCommand(String... args) {
+        StringBuilder sb = new StringBuilder();
+        for (String arg : args) {
+            if (sb.length() > 0) sb.append(' ');
+            if (SAFE_SHELL_ARG.matcher(arg).matches()) {
+                sb.append(arg);
+            } else {
+                sb.append('\'').append(arg.replace("'", "'\\''")).append('\'');
             }
-            if (ldconsole.exists()) {
+        }
+        return sb.toString();
+    }
+
+    private byte[] socketExec(String serial, String service) throws IOException {
+        try (Socket socket = track(transport.openService(serial, service));
+             InputStream in = socket.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private String execAdb(String... args) throws Exception {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(adbPath);
+        cmd.addAll(List.of(args));
+        Process proc = startProcess(false, cmd.toArray(new String[0]));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = proc.getInputStream()) {
+            in.transferTo(out);
+        }
+        proc.waitFor();
+        return out.toString("UTF-8");
+    }
+
+    /**
+     * Start an adb process that is killed if the surrounding call times out or is cancelled.
+     */
+    private static Process startProcess(boolean discardStderr, String... cmd) throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        if (discardStderr) {
+            pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        } else {
+            pb.redirectErrorStream(true);
+        }
+        Process proc = pb.start();
+        track(proc::destroyForcibly);
+        return proc;
+    }
+
+    private <T> CompletableFuture<T> submit(String serial, Duration timeout, AdbTask<T> task) {
+        return submit(serial, Lane.CAPTURE, timeout, task);
+    }
+
+    /**
+     * Run {@code task} on the call pool under a deadline that also covers waiting for admission
+     * to the device (a free slot, a rate token and no higher lane queued).
+     */
+    private <T> CompletableFuture<T> submit(String serial, Lane lane, Duration timeout, AdbTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        AdbCall call = new AdbCall(deadline);
+        DeviceGate slots = gates.computeIfAbsent(serial, this::newGate);
+        Future<?> running;
+        try {
+            running = executor.submit(() -> {
+                boolean acquired = false;
+                CURRENT_CALL.set(call);
                 try {
-                    ProcessBuilder pb = new ProcessBuilder(
-                        ldconsole.getAbsolutePath(), "adb", "--name", instanceName
-                    );
-                    pb.redirectErrorStream(true);
-                    Process p = pb.start();
-                    ByteArrayOutputStream out = new ByteArrayOutputStream();
-                    try (InputStream in = p.getInputStream()) {
-                        in.transferTo(out);
-                    }
-                    p.waitFor();
-                    String output = out.toString("UTF-8").trim();
-                    // Output typically: 127.0.0.1:5555
-                    if (output.contains(":") && !output.contains(" ")) {
-                        return output;
+                    acquired = slots.acquire(lane, deadline);
+                    if (!acquired) {
+                        throw new TimeoutException("No free adb slot for " + serial);
                     }
-                } catch (Exception ignored) {}
+                    future.complete(task.run());
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                } finally {
+                    CURRENT_CALL.remove();
+                    if (acquired) slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Client closed
+            future.completeExceptionally(e);
+            return future;
+        }
+        ScheduledFuture<?> timer = TIMER.schedule(
+                () -> future.completeExceptionally(new TimeoutException("adb call timed out on " + serial + " after " + timeout.toMillis() + "ms")),
+                timeout.toNanos(), TimeUnit.NANOSECONDS);
+        future.whenComplete((result, error) -> {
+            timer.cancel(false);
+            if (error != null) {
+                call.abort();
+                running.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    private DeviceGate newGate(String serial) {
+        if (HOST_KEY.equals(serial)) {
+            return new DeviceGate(maxConcurrentPerDevice, 0, 1);
+        }
+        double[] limit = rateLimits.get(serial);
+        return limit != null
+                ? new DeviceGate(maxConcurrentPerDevice, limit[0], (int) limit[1])
+                : new DeviceGate(maxConcurrentPerDevice, defaultCommandsPerSecond, defaultBurst);
+    }
+
+    private static <T> T await(CompletableFuture<T> future, T fallback) {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Register a resource with the call running on this thread so an abort can close it.
+     */
+    private static <C extends Closeable> C track(C resource) throws IOException {
+        AdbCall call = CURRENT_CALL.get();
+        if (call != null) {
+            call.add(resource);
+        }
+        return resource;
+    }
+
+    @FunctionalInterface
+    private interface AdbTask<T> {
+        T run() throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface TouchAction {
+        void run(MinitouchClient client) throws Exception;
+    }
+
+    /**
+     * Sockets and processes opened by one call; closed together on timeout or cancellation.
+     */
+    private static final class AdbCall {
+        /** {@link System#nanoTime()} by which the call must finish. */
+        final long deadline;
+        private final List<Closeable> resources = new CopyOnWriteArrayList<>();
+        private volatile boolean aborted;
+
+        AdbCall(long deadline) {
+            this.deadline = deadline;
+        }
+
+        void add(Closeable resource) throws IOException {
+            resources.add(resource);
+            if (aborted) {
+                resource.close();
+                throw new IOException("adb call aborted");
+            }
+        }
+
+        void abort() {
+            aborted = true;
+            for (Closeable resource : resources) {
+                try {
+                    resource.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolve LDPlayer instance name to ADB serial using ldconsole adb command.
+     * Falls back to detecting by console list2 + matching running port.
+     */
+    public static String resolveInstanceSerial(String instanceName, List<String> ldRoots) {
+        // ldconsole adb --name <instance>
+        List<String> lines = LdConsoleHelper.runLdConsoleCommand(ldRoots, "adb", "--name", instanceName);
+        if (lines != null) {
+            String output = String.join("\n", lines).trim();
+            // Output typically: 127.0.0.1:5555
+            if (output.contains(":") && !output.contains(" ")) {
+                return output;
             }
         }
         // Fallback: assume 127.0.0.1:5555 for first instance
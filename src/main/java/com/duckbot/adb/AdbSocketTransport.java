@@ -0,0 +1,260 @@
+package com.duckbot.adb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntConsumer;
+
+/**
+ * Talks to the local adb server over its host protocol (normally localhost:5037)
+ * so device commands don't pay for spawning an adb process each time.
+ *
+ * Every request is a 4-digit hex length followed by the payload; the server answers
+ * OKAY or FAIL (+ length-prefixed message). Device services are reached by first
+ * switching the connection with host:transport:&lt;serial&gt;.
+ *
+ * Replies to requests are read under a timeout so a stalled server fails the call instead
+ * of blocking it; once a device service is open its stream has no read timeout.
+ */
+public final class AdbSocketTransport {
+
+    public static final String DEFAULT_HOST = "127.0.0.1";
+    public static final int DEFAULT_PORT = 5037;
+
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+    private static final long RETRY_AFTER_FAILURE_MS = 5000;
+    private static final long TRUST_SUCCESS_MS = 30000;
+    private static final int SYNC_DATA_MAX = 64 * 1024;
+
+    private final String host;
+    private final int port;
+    private final int handshakeTimeoutMs;
+    private volatile long lastConnectFailureAt;
+    private volatile long lastConnectSuccessAt;
+
+    public AdbSocketTransport() {
+        this(DEFAULT_HOST, DEFAULT_PORT);
+    }
+
+    public AdbSocketTransport(String host, int port) {
+        this(host, port, HANDSHAKE_TIMEOUT_MS);
+    }
+
+    /**
+     * @param handshakeTimeoutMs how long to wait for the server's reply to each request
+     */
+    public AdbSocketTransport(String host, int port, int handshakeTimeoutMs) {
+        this.host = host;
+        this.port = port;
+        this.handshakeTimeoutMs = handshakeTimeoutMs;
+    }
+
+    /**
+     * Whether the adb server accepted a connection recently. After a refused connection
+     * the transport reports unavailable for a few seconds so callers go straight to the fallback.
+     */
+    public boolean isAvailable() {
+        long now = System.currentTimeMillis();
+        if (now - lastConnectFailureAt < RETRY_AFTER_FAILURE_MS) {
+            return false;
+        }
+        if (now - lastConnectSuccessAt < TRUST_SUCCESS_MS) {
+            return true;
+        }
+        try {
+            hostQuery("host:version");
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Send a host request (host:version, host:devices, ...) and return its length-prefixed reply.
+     */
+    public String hostQuery(String request) throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, request);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            readStatus(in, request);
+            return readLengthPrefixed(in);
+        }
+    }
+
+    /**
+     * Send a host request that only answers OKAY/FAIL (e.g. host-serial:...:forward:...).
+     * Some commands acknowledge twice (request accepted, then done), so a second
+     * status is read when the server sends one before closing.
+     */
+    public void hostCommand(String request) throws IOException {
+        try (Socket socket = connect()) {
+            send(socket, request);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            readStatus(in, request);
+            in.mark(4);
+            try {
+                if (in.read() >= 0) {
+                    in.reset();
+                    readStatus(in, request);
+                }
+            } catch (SocketTimeoutException e) {
+                // Server kept the connection open without a second status; the first one counts
+            }
+        }
+    }
+
+    /**
+     * Open a device service (shell:, exec:, sync:, ...) and return the connected socket.
+     * The caller owns the socket and must close it.
+     */
+    public Socket openService(String serial, String service) throws IOException {
+        Socket socket = connect();
+        try {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            send(socket, "host:transport:" + serial);
+            readStatus(in, "host:transport:" + serial);
+            send(socket, service);
+            readStatus(in, service);
+            // Services stream for as long as they run (screenrecord, logcat, shell sessions)
+            socket.setSoTimeout(0);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Run a command through exec: (raw binary stream, no pty) and return all of stdout.
+     */
+    public byte[] exec(String serial, String command) throws IOException {
+        return readAll(serial, "exec:" + command);
+    }
+
+    /**
+     * Run a command through shell: and return its output as text.
+     */
+    public String shell(String serial, String command) throws IOException {
+        return new String(readAll(serial, "shell:" + command), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Send a file over a socket already switched to the {@code sync:} service.
+     *
+     * Sync requests are a 4-byte id and a little-endian length: SEND "path,mode", DATA chunks
+     * of at most 64 KiB, then DONE with the mtime; the device answers OKAY or FAIL + message.
+     *
+     * @param beforeChunk called with each chunk's size before it is written (for throttling), or null
+     */
+    public static void sendFile(Socket syncSocket, InputStream data, String remotePath, int mode,
+                                long mtimeSeconds, IntConsumer beforeChunk) throws IOException {
+        OutputStream out = new BufferedOutputStream(syncSocket.getOutputStream(), SYNC_DATA_MAX + 8);
+        DataInputStream in = new DataInputStream(syncSocket.getInputStream());
+        byte[] spec = (remotePath + "," + mode).getBytes(StandardCharsets.UTF_8);
+        writeSyncHeader(out, "SEND", spec.length);
+        out.write(spec);
+        byte[] buffer = new byte[SYNC_DATA_MAX];
+        int n;
+        while ((n = data.readNBytes(buffer, 0, buffer.length)) > 0) {
+            if (beforeChunk != null) {
+                beforeChunk.accept(n);
+            }
+            writeSyncHeader(out, "DATA", n);
+            out.write(buffer, 0, n);
+        }
+        writeSyncHeader(out, "DONE", (int) mtimeSeconds);
+        out.flush();
+
+        byte[] id = new byte[4];
+        in.readFully(id);
+        int length = Integer.reverseBytes(in.readInt());
+        String status = new String(id, StandardCharsets.US_ASCII);
+        if ("FAIL".equals(status)) {
+            byte[] message = new byte[length];
+            in.readFully(message);
+            throw new IOException("Push to " + remotePath + " failed: " + new String(message, StandardCharsets.UTF_8));
+        }
+        if (!"OKAY".equals(status)) {
+            throw new IOException("Unexpected sync response '" + status + "' pushing " + remotePath);
+        }
+        writeSyncHeader(out, "QUIT", 0);
+        out.flush();
+    }
+
+    private static void writeSyncHeader(OutputStream out, String id, int length) throws IOException {
+        out.write(id.getBytes(StandardCharsets.US_ASCII));
+        out.write(length & 0xFF);
+        out.write((length >>> 8) & 0xFF);
+        out.write((length >>> 16) & 0xFF);
+        out.write((length >>> 24) & 0xFF);
+    }
+
+    private byte[] readAll(String serial, String service) throws IOException {
+        try (Socket socket = openService(serial, service)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (InputStream in = socket.getInputStream()) {
+                in.transferTo(out);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(handshakeTimeoutMs);
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            lastConnectSuccessAt = System.currentTimeMillis();
+            return socket;
+        } catch (IOException e) {
+            lastConnectFailureAt = System.currentTimeMillis();
+            socket.close();
+            throw e;
+        }
+    }
+
+    private static void send(Socket socket, String request) throws IOException {
+        byte[] payload = request.getBytes(StandardCharsets.UTF_8);
+        OutputStream out = socket.getOutputStream();
+        out.write(String.format("%04x", payload.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(payload);
+        out.flush();
+    }
+
+    private static void readStatus(DataInputStream in, String request) throws IOException {
+        byte[] status = new byte[4];
+        in.readFully(status);
+        String code = new String(status, StandardCharsets.US_ASCII);
+        if ("OKAY".equals(code)) {
+            return;
+        }
+        if ("FAIL".equals(code)) {
+            throw new IOException("adb rejected '" + request + "': " + readLengthPrefixed(in));
+        }
+        throw new IOException("Unexpected adb response '" + code + "' to '" + request + "'");
+    }
+
+    private static String readLengthPrefixed(DataInputStream in) throws IOException {
+        byte[] len = new byte[4];
+        in.readFully(len);
+        int length;
+        try {
+            length = Integer.parseInt(new String(len, StandardCharsets.US_ASCII), 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed adb length prefix", e);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,47 @@
+package com.duckbot.adb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings applied to each clone with {@code ldconsole modify}. Zero or blank values
+ * leave the setting as copied from the golden instance.
+ */
+public final class CloneSettings {
+
+    public int width;
+    public int height;
+    public int dpi;
+    public int cpu;
+    public int memoryMb;
+    /** Give each clone its own IMEI, Android ID and MAC so they do not look like one device. */
+    public boolean randomizeIdentity = true;
+    /** Clones copied at once; copying an instance is disk-bound. */
+    public int maxParallelCopies = 2;
+
+    /**
+     * Arguments for {@code modify --name <instance>}, or an empty list when nothing is set.
+     */
+    List<String> modifyArgs() {
+        List<String> args = new ArrayList<>();
+        if (width > 0 && height > 0 && dpi > 0) {
+            args.add("--resolution");
+            args.add(width + "," + height + "," + dpi);
+        }
+        if (cpu > 0) {
+            args.add("--cpu");
+            args.add(String.valueOf(cpu));
+        }
+        if (memoryMb > 0) {
+            args.add("--memory");
+            args.add(String.valueOf(memoryMb));
+        }
+        if (randomizeIdentity) {
+            for (String key : new String[]{"--imei", "--imsi", "--simserial", "--androidid", "--mac"}) {
+                args.add(key);
+                args.add("auto");
+            }
+        }
+        return args;
+    }
+}
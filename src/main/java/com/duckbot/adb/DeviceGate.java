@@ -0,0 +1,135 @@
+package com.duckbot.adb;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for one device: at most {@code maxConcurrent} calls at a time, commands
+ * paced by a token bucket, and priority between {@link AdbClient.Lane lanes} — a call only
+ * proceeds while no call of a higher lane is waiting. So that a steady stream of input and
+ * captures cannot starve previews, a call that has waited {@code agingMillis} is promoted ahead
+ * of every lane.
+ */
+final class DeviceGate {
+
+    private static final AdbClient.Lane[] LANES = AdbClient.Lane.values();
+    private static final double SMOOTHING = 0.2;
+    private static final long AGING_MS = 2000;
+
+    private final int maxConcurrent;
+    private final long agingNanos;
+    private final int[] waiting = new int[LANES.length];
+    private final long[] calls = new long[LANES.length];
+    private final double[] avgDelayMs = new double[LANES.length];
+    private final long[] maxDelayMs = new long[LANES.length];
+    private int inFlight;
+    /** Waiting calls promoted by age. */
+    private int aged;
+
+    /** Commands per second; 0 or less disables pacing. */
+    private double rate;
+    private double burst;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    DeviceGate(int maxConcurrent, double commandsPerSecond, int burst) {
+        this(maxConcurrent, commandsPerSecond, burst, AGING_MS);
+    }
+
+    DeviceGate(int maxConcurrent, double commandsPerSecond, int burst, long agingMillis) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+        setRate(commandsPerSecond, burst);
+        this.tokens = this.burst;
+    }
+
+    synchronized void setRate(double commandsPerSecond, int burst) {
+        refill(System.nanoTime());
+        this.rate = commandsPerSecond;
+        this.burst = Math.max(1, burst);
+        this.tokens = Math.min(tokens, this.burst);
+        notifyAll();
+    }
+
+    /**
+     * Wait for a slot and a token.
+     *
+     * @return false if the deadline ({@link System#nanoTime()} based) passed first
+     */
+    synchronized boolean acquire(AdbClient.Lane lane, long deadlineNanos) throws InterruptedException {
+        int l = lane.ordinal();
+        long queuedAt = System.nanoTime();
+        boolean promoted = false;
+        waiting[l]++;
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                refill(now);
+                if (!promoted && now - queuedAt >= agingNanos) {
+                    promoted = true;
+                    aged++;
+                }
+                boolean ahead = promoted || (aged == 0 && !higherWaiting(l));
+                boolean first = ahead && inFlight < maxConcurrent;
+                if (first && (rate <= 0 || tokens >= 1)) {
+                    if (rate > 0) tokens -= 1;
+                    inFlight++;
+                    record(l, (now - queuedAt) / 1_000_000);
+                    return true;
+                }
+                long remaining = deadlineNanos - now;
+                if (remaining <= 0) {
+                    return false;
+                }
+                long wait = remaining;
+                if (first) {
+                    // Only short of a token: sleep until one is due
+                    wait = Math.min(wait, (long) Math.ceil((1 - tokens) / rate * 1_000_000_000L));
+                }
+                if (!promoted) {
+                    wait = Math.min(wait, queuedAt + agingNanos - now);
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, Math.max(1, wait));
+            }
+        } finally {
+            waiting[l]--;
+            if (promoted) aged--;
+            notifyAll();
+        }
+    }
+
+    synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    synchronized Map<AdbClient.Lane, QueueStats> stats() {
+        Map<AdbClient.Lane, QueueStats> stats = new EnumMap<>(AdbClient.Lane.class);
+        for (AdbClient.Lane lane : LANES) {
+            int l = lane.ordinal();
+            stats.put(lane, new QueueStats(lane, calls[l], waiting[l], avgDelayMs[l], maxDelayMs[l]));
+        }
+        return stats;
+    }
+
+    private boolean higherWaiting(int lane) {
+        for (int i = 0; i < lane; i++) {
+            if (waiting[i] > 0) return true;
+        }
+        return false;
+    }
+
+    private void refill(long now) {
+        if (rate > 0) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) / 1e9 * rate);
+        }
+        refilledAt = now;
+    }
+
+    private void record(int lane, long delayMs) {
+        avgDelayMs[lane] = calls[lane] == 0 ? delayMs : avgDelayMs[lane] * (1 - SMOOTHING) + delayMs * SMOOTHING;
+        maxDelayMs[lane] = Math.max(maxDelayMs[lane], delayMs);
+        calls[lane]++;
+    }
+}
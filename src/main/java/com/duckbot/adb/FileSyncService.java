@@ -0,0 +1,332 @@
+package com.duckbot.adb;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Copies files to many devices, skipping files that are already up to date.
+ *
+ * For each device the remote sizes are read with one {@code stat}; files whose size matches
+ * are then compared by {@code md5sum} against the local hash (computed once per file and
+ * shared by all devices). Only changed files are pushed. Devices are synced in parallel up
+ * to the concurrency cap, and all pushes share one bandwidth cap.
+ */
+public final class FileSyncService {
+
+    private static final int FILES_PER_COMMAND = 50;
+    /** Slowest device-side md5sum throughput a hashing timeout allows for. */
+    private static final long HASH_BYTES_PER_SECOND = 10L * 1024 * 1024;
+
+    private final AdbClient adb;
+    private final int maxConcurrentDevices;
+    private final long maxBytesPerSecond;
+
+    /**
+     * @param maxBytesPerSecond total push bandwidth across all devices, or 0 for no cap
+     */
+    public FileSyncService(AdbClient adb, int maxConcurrentDevices, long maxBytesPerSecond) {
+        this.adb = adb;
+        this.maxConcurrentDevices = Math.max(1, maxConcurrentDevices);
+        this.maxBytesPerSecond = Math.max(0, maxBytesPerSecond);
+    }
+
+    /**
+     * A local file and where it goes on the device.
+     */
+    public static final class Entry {
+        public final Path local;
+        public final String remote;
+        public final int mode;
+
+        public Entry(Path local, String remote, int mode) {
+            this.local = local;
+            this.remote = remote;
+            this.mode = mode;
+        }
+
+        public static Entry file(Path local, String remote) {
+            return new Entry(local, remote, 0644);
+        }
+
+        public static Entry executable(Path local, String remote) {
+            return new Entry(local, remote, 0755);
+        }
+    }
+
+    /**
+     * Every regular file under {@code localDir}, mapped to the same relative path under {@code remoteDir}.
+     */
+    public static List<Entry> directory(Path localDir, String remoteDir) throws IOException {
+        String base = remoteDir.endsWith("/") ? remoteDir : remoteDir + "/";
+        try (Stream<Path> files = Files.walk(localDir)) {
+            return files.filter(Files::isRegularFile)
+                    .map(p -> Entry.file(p, base + localDir.relativize(p).toString().replace('\\', '/')))
+                    .toList();
+        }
+    }
+
+    /**
+     * Sync the files to every device.
+     *
+     * @return one report per serial, in the given order
+     */
+    public List<Report> sync(List<String> serials, List<Entry> entries) {
+        Map<Path, String> localHashes = new ConcurrentHashMap<>();
+        ByteRateLimiter limiter = maxBytesPerSecond > 0 ? new ByteRateLimiter(maxBytesPerSecond) : null;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(maxConcurrentDevices, Math.max(1, serials.size())), r -> {
+            Thread t = new Thread(r, "file-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<Report>> futures = new ArrayList<>();
+            for (String serial : serials) {
+                futures.add(pool.submit(() -> syncDevice(serial, entries, localHashes, limiter)));
+            }
+            List<Report> reports = new ArrayList<>();
+            for (int i = 0; i < serials.size(); i++) {
+                try {
+                    reports.add(futures.get(i).get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    reports.add(Report.failed(serials.get(i), "Interrupted"));
+                } catch (ExecutionException e) {
+                    reports.add(Report.failed(serials.get(i), String.valueOf(e.getCause())));
+                }
+            }
+            return reports;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private Report syncDevice(String serial, List<Entry> entries, Map<Path, String> localHashes, ByteRateLimiter limiter) {
+        long started = System.currentTimeMillis();
+        Report report = new Report(serial);
+        Map<String, Long> remoteSizes = remoteSizes(serial, entries);
+
+        List<Entry> sameSize = new ArrayList<>();
+        List<Entry> toPush = new ArrayList<>();
+        for (Entry entry : entries) {
+            report.checked++;
+            long localSize;
+            try {
+                localSize = Files.size(entry.local);
+            } catch (IOException e) {
+                report.errors.add(entry.local + ": " + e.getMessage());
+                continue;
+            }
+            Long remoteSize = remoteSizes.get(entry.remote);
+            if (remoteSize != null && remoteSize == localSize) {
+                sameSize.add(entry);
+            } else {
+                toPush.add(entry);
+            }
+        }
+
+        Map<String, String> remoteHashes = remoteHashes(serial, sameSize);
+        for (Entry entry : sameSize) {
+            String local = localHashes.computeIfAbsent(entry.local, FileSyncService::md5);
+            if (local != null && local.equals(remoteHashes.get(entry.remote))) {
+                report.skipped++;
+            } else {
+                toPush.add(entry);
+            }
+        }
+
+        for (Entry entry : toPush) {
+            long size;
+            try {
+                size = Files.size(entry.local);
+            } catch (IOException e) {
+                report.errors.add(entry.local + ": " + e.getMessage());
+                continue;
+            }
+            long pushStarted = System.currentTimeMillis();
+            boolean ok = adb.pushAsync(serial, entry.local, entry.remote, entry.mode, pushTimeout(size),
+                    limiter == null ? null : limiter::acquire).exceptionally(t -> false).join();
+            if (ok) {
+                report.pushed++;
+                report.bytesPushed += size;
+                report.pushMs += System.currentTimeMillis() - pushStarted;
+            } else {
+                report.errors.add("Push failed: " + entry.remote);
+            }
+        }
+        report.elapsedMs = System.currentTimeMillis() - started;
+        return report;
+    }
+
+    /**
+     * Room for a 1 MB/s link, or for this device's share of the bandwidth cap if that is slower.
+     */
+    private Duration pushTimeout(long size) {
+        long ms = size / 1000;
+        if (maxBytesPerSecond > 0) {
+            ms = Math.max(ms, size * 1000 / maxBytesPerSecond * maxConcurrentDevices);
+        }
+        return Duration.ofSeconds(30).plusMillis(ms);
+    }
+
+    private Map<String, Long> remoteSizes(String serial, List<Entry> entries) {
+        Map<String, Long> sizes = new HashMap<>();
+        for (List<String> batch : remoteBatches(entries)) {
+            List<String> cmd = new ArrayList<>(List.of("stat", "-c", "%s %n"));
+            cmd.addAll(batch);
+            String output = adb.shellOutput(serial, cmd.toArray(new String[0]));
+            if (output == null) continue;
+            for (String line : output.split("\n")) {
+                int space = line.indexOf(' ');
+                if (space <= 0) continue;
+                try {
+                    sizes.put(line.substring(space + 1).trim(), Long.parseLong(line.substring(0, space).trim()));
+                } catch (NumberFormatException ignored) {
+                    // stat error for a missing file
+                }
+            }
+        }
+        return sizes;
+    }
+
+    /**
+     * Remote md5sums, run on their own exec connection under a timeout scaled to the bytes
+     * hashed, so multi-GB files neither time out nor hold up the device's shell session.
+     */
+    private Map<String, String> remoteHashes(String serial, List<Entry> entries) {
+        Map<String, String> hashes = new HashMap<>();
+        for (int i = 0; i < entries.size(); i += FILES_PER_COMMAND) {
+            List<Entry> batch = entries.subList(i, Math.min(entries.size(), i + FILES_PER_COMMAND));
+            List<String> cmd = new ArrayList<>(List.of("md5sum"));
+            long bytes = 0;
+            for (Entry entry : batch) {
+                cmd.add(entry.remote);
+                try {
+                    bytes += Files.size(entry.local);
+                } catch (IOException ignored) {
+                    // Counted as empty; the push step reports the unreadable file
+                }
+            }
+            String output = adb.execOutput(serial, hashTimeout(bytes), cmd.toArray(new String[0]));
+            if (output == null) continue;
+            for (String line : output.split("\n")) {
+                // "<hash>  <path>"
+                int space = line.indexOf(' ');
+                if (space == 32) {
+                    hashes.put(line.substring(space).trim(), line.substring(0, space));
+                }
+            }
+        }
+        return hashes;
+    }
+
+    private static Duration hashTimeout(long bytes) {
+        return Duration.ofSeconds(30).plusMillis(bytes * 1000 / HASH_BYTES_PER_SECOND);
+    }
+
+    private static List<List<String>> remoteBatches(List<Entry> entries) {
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i += FILES_PER_COMMAND) {
+            batches.add(entries.subList(i, Math.min(entries.size(), i + FILES_PER_COMMAND)).stream()
+                    .map(e -> e.remote).toList());
+        }
+        return batches;
+    }
+
+    private static String md5(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Shared byte budget: each caller reserves its bytes in turn and sleeps until its slot.
+     */
+    private static final class ByteRateLimiter {
+        private final long bytesPerSecond;
+        private long nextFreeNanos = System.nanoTime();
+
+        ByteRateLimiter(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        void acquire(int bytes) {
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long start = Math.max(now, nextFreeNanos);
+                nextFreeNanos = start + bytes * 1_000_000_000L / bytesPerSecond;
+                waitNanos = start - now;
+            }
+            if (waitNanos > 0) {
+                try {
+                    Thread.sleep(waitNanos / 1_000_000, (int) (waitNanos % 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * What one device sync did.
+     */
+    public static final class Report {
+        public final String serial;
+        public int checked;
+        public int pushed;
+        public int skipped;
+        public long bytesPushed;
+        /** Time spent pushing; throughput is measured over this. */
+        public long pushMs;
+        public long elapsedMs;
+        public final List<String> errors = new ArrayList<>();
+
+        Report(String serial) {
+            this.serial = serial;
+        }
+
+        static Report failed(String serial, String error) {
+            Report report = new Report(serial);
+            report.errors.add(error);
+            return report;
+        }
+
+        public boolean success() {
+            return errors.isEmpty();
+        }
+
+        public double bytesPerSecond() {
+            return pushMs > 0 ? bytesPushed * 1000.0 / pushMs : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("FileSyncService.Report{%s: pushed=%d, skipped=%d, checked=%d, bytes=%d, %.1f KB/s, elapsedMs=%d, errors=%s}",
+                    serial, pushed, skipped, checked, bytesPushed, bytesPerSecond() / 1024, elapsedMs, errors);
+        }
+    }
+}
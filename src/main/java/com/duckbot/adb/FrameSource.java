@@ -0,0 +1,23 @@
+package com.duckbot.adb;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Supplies the most recent screen frame of one device.
+ */
+public interface FrameSource extends AutoCloseable {
+
+    /**
+     * @return a copy of the newest frame, which stays valid as newer frames arrive, or null
+     *         if none has been received yet
+     */
+    BufferedImage latest();
+
+    /**
+     * @return epoch millis of the newest frame, or 0 if none has been received yet
+     */
+    long latestTimestamp();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,171 @@
+package com.duckbot.adb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A burst of taps, swipes, key events and short sleeps compiled into one device-side
+ * shell script, so the whole sequence costs a single adb round trip.
+ *
+ * Each command is followed by an echo marker; the time between markers arriving gives
+ * the per-command timing reported in {@link Result}.
+ *
+ * <pre>
+ * InputBatch batch = new InputBatch()
+ *         .tap(100, 200).sleep(150)
+ *         .tap(300, 200).sleep(150)
+ *         .key(4);
+ * InputBatch.Result result = adb.runBatch(serial, batch);
+ * </pre>
+ */
+public final class InputBatch {
+
+    private static final String MARKER = "__DUCKBOT_STEP_";
+
+    private final List<String> commands = new ArrayList<>();
+    private long expectedDurationMs;
+
+    public InputBatch tap(int x, int y) {
+        return add("input tap " + x + " " + y, 0);
+    }
+
+    public InputBatch swipe(int x1, int y1, int x2, int y2, int durationMs) {
+        return add("input swipe " + x1 + " " + y1 + " " + x2 + " " + y2 + " " + durationMs, durationMs);
+    }
+
+    /**
+     * Send a key event by code (e.g. 4 = BACK, 3 = HOME).
+     */
+    public InputBatch key(int keyCode) {
+        return add("input keyevent " + keyCode, 0);
+    }
+
+    /**
+     * Send a key event by name, e.g. "BACK" or "KEYCODE_ENTER".
+     */
+    public InputBatch key(String keyName) {
+        String name = keyName.toUpperCase(Locale.ROOT);
+        if (!name.matches("[A-Z0-9_]+")) {
+            throw new IllegalArgumentException("Invalid key name: " + keyName);
+        }
+        return add("input keyevent " + name, 0);
+    }
+
+    /**
+     * Pause on the device between commands.
+     */
+    public InputBatch sleep(long millis) {
+        if (millis <= 0) {
+            return this;
+        }
+        return add(String.format(Locale.ROOT, "sleep %.3f", millis / 1000.0), millis);
+    }
+
+    public int size() {
+        return commands.size();
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    public List<String> commands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    /**
+     * Sum of the sleeps and swipe durations, used to stretch the call deadline.
+     */
+    public long expectedDurationMs() {
+        return expectedDurationMs;
+    }
+
+    /**
+     * The device-side script: each command followed by its step marker.
+     */
+    String compile() {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < commands.size(); i++) {
+            if (i > 0) script.append("; ");
+            script.append(commands.get(i)).append("; echo ").append(MARKER).append(i);
+        }
+        return script.toString();
+    }
+
+    Timer startTimer() {
+        return new Timer(commands.size());
+    }
+
+    private InputBatch add(String command, long durationMs) {
+        commands.add(command);
+        expectedDurationMs += durationMs;
+        return this;
+    }
+
+    /**
+     * Records when each step marker arrives.
+     */
+    static final class Timer {
+        private final long started = System.nanoTime();
+        private final long[] finishedAt;
+        private int completed;
+
+        Timer(int steps) {
+            this.finishedAt = new long[steps];
+        }
+
+        void onLine(String line) {
+            if (!line.startsWith(MARKER) || completed >= finishedAt.length) {
+                return;
+            }
+            try {
+                int step = Integer.parseInt(line.substring(MARKER.length()).trim());
+                if (step == completed) {
+                    finishedAt[completed++] = System.nanoTime();
+                }
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        Result result() {
+            List<Long> durations = new ArrayList<>(finishedAt.length);
+            long previous = started;
+            for (int i = 0; i < finishedAt.length; i++) {
+                if (i < completed) {
+                    durations.add((finishedAt[i] - previous) / 1_000_000);
+                    previous = finishedAt[i];
+                } else {
+                    durations.add(-1L);
+                }
+            }
+            return new Result(completed == finishedAt.length, durations, (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    /**
+     * Outcome of a batch run. Durations are per command in milliseconds, measured on the host
+     * from marker arrival; -1 marks commands that never completed.
+     */
+    public static final class Result {
+        public final boolean success;
+        public final List<Long> durationsMs;
+        public final long totalMs;
+
+        public Result(boolean success, List<Long> durationsMs, long totalMs) {
+            this.success = success;
+            this.durationsMs = List.copyOf(durationsMs);
+            this.totalMs = totalMs;
+        }
+
+        static Result failed(int steps) {
+            return new Result(false, Collections.nCopies(steps, -1L), 0);
+        }
+
+        @Override
+        public String toString() {
+            return "InputBatch.Result{success=" + success + ", durationsMs=" + durationsMs + ", totalMs=" + totalMs + '}';
+        }
+    }
+}
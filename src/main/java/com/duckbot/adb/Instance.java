@@ -6,6 +6,17 @@ package com.duckbot.adb;
 public final class Instance {
 
     public String name;
+    /** ldconsole index, or -1 when unknown. */
+    public int index = -1;
+    /** Android has finished starting, per ldconsole list2. */
     public boolean running;
     public String display;
-}
\ No newline at end of file
+    public long topWindowHandle;
+    public long bindWindowHandle;
+    /** Player process id, or -1 when not running. */
+    public int pid = -1;
+    public int vboxPid = -1;
+    public int width;
+    public int height;
+    public int dpi;
+}
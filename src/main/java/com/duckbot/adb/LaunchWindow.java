@@ -0,0 +1,101 @@
+package com.duckbot.adb;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Adaptive limit on how many instances boot at once.
+ *
+ * Additive increase, multiplicative decrease: each quick, successful boot widens the window
+ * by one; a failed boot, a boot much slower than the running average, or host CPU above the
+ * high-water mark halves it. New launches are also held back while the CPU is saturated and
+ * spaced by at least the stagger delay.
+ *
+ * One window is shared by every launch path of a manager, so concurrent bulk launches
+ * (warm pool, health restarts, the UI) are limited together.
+ */
+final class LaunchWindow {
+
+    private static final double CPU_HIGH = 0.85;
+    private static final double CPU_LOW = 0.60;
+    private static final double SLOW_BOOT_FACTOR = 1.5;
+    private static final long CPU_WAIT_MS = 500;
+
+    private int max;
+    private long staggerMs;
+    private double window;
+    private int inFlight;
+    private long lastStart;
+    private double averageBootMs = -1;
+
+    LaunchWindow(int max, long staggerMs) {
+        this.max = Math.max(1, max);
+        this.staggerMs = Math.max(0, staggerMs);
+        this.window = Math.min(2, this.max);
+    }
+
+    /**
+     * Change the limits; the learned window is kept, capped at the new maximum.
+     */
+    synchronized void setLimits(int max, long staggerMs) {
+        this.max = Math.max(1, max);
+        this.staggerMs = Math.max(0, staggerMs);
+        this.window = Math.min(window, this.max);
+        notifyAll();
+    }
+
+    synchronized void acquire() throws InterruptedException {
+        while (true) {
+            long now = System.currentTimeMillis();
+            long staggerLeft = lastStart + staggerMs - now;
+            if (inFlight >= (int) window) {
+                wait();
+            } else if (staggerLeft > 0) {
+                wait(staggerLeft);
+            } else if (inFlight > 0 && cpuLoad() > CPU_HIGH) {
+                wait(CPU_WAIT_MS);
+            } else {
+                inFlight++;
+                lastStart = now;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Return a slot and adapt the window to how the boot went.
+     *
+     * @param bootMs time to boot completed, or -1 if the instance never booted
+     */
+    synchronized void release(long bootMs) {
+        inFlight--;
+        double cpu = cpuLoad();
+        boolean slow = bootMs >= 0 && averageBootMs > 0 && bootMs > averageBootMs * SLOW_BOOT_FACTOR;
+        if (bootMs < 0 || slow || cpu > CPU_HIGH) {
+            window = Math.max(1, window / 2);
+        } else if (cpu < CPU_LOW) {
+            window = Math.min(max, window + 1);
+        }
+        if (bootMs >= 0) {
+            averageBootMs = averageBootMs < 0 ? bootMs : averageBootMs * 0.7 + bootMs * 0.3;
+        }
+        notifyAll();
+    }
+
+    synchronized int size() {
+        return (int) window;
+    }
+
+    /**
+     * System CPU load in [0, 1], or -1 when the platform does not report it.
+     */
+    static double cpuLoad() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean sun) {
+            double load = sun.getCpuLoad();
+            if (load >= 0) return load;
+        }
+        double average = os.getSystemLoadAverage();
+        return average < 0 ? -1 : Math.min(1.0, average / os.getAvailableProcessors());
+    }
+}
@@ -6,8 +6,10 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -16,44 +18,93 @@ import java.util.Set;
  */
 public final class LdConsoleHelper {
 
+    private static final String[] CONSOLE_NAMES = {"ldconsole.exe", "dnconsole.exe", "ldconsole"};
+
     private LdConsoleHelper() {}
 
     public static List<String> detectInstancesFromConsolePaths(List<String> ldRoots) {
         Set<String> instances = new LinkedHashSet<>();
-        for (String root : ldRoots) {
-            if (root == null || root.isBlank()) continue;
-            File base = new File(root);
-            if (!base.exists()) continue;
+        for (File console : findConsoles(ldRoots)) {
+            instances.addAll(runList2(console));
+        }
+        return new ArrayList<>(instances);
+    }
 
-            // Check base folder
-            File ldconsole = new File(base, "ldconsole.exe");
-            File dnconsole = new File(base, "dnconsole.exe");
-            if (ldconsole.exists()) instances.addAll(runList2(ldconsole));
-            if (dnconsole.exists()) instances.addAll(runList2(dnconsole));
+    /**
+     * Full {@code list2} rows for every console found under the roots.
+     */
+    public static List<Instance> detectInstanceDetails(List<String> ldRoots) {
+        return readInstances(findConsoles(ldRoots));
+    }
 
-            // Check LDPlayer9 subfolder (common structure: C:\LDPlayer\LDPlayer9\...)
-            File ld9sub = new File(base, "LDPlayer9");
-            if (ld9sub.exists()) {
-                File ld9console = new File(ld9sub, "ldconsole.exe");
-                File dn9console = new File(ld9sub, "dnconsole.exe");
-                if (ld9console.exists()) instances.addAll(runList2(ld9console));
-                if (dn9console.exists()) instances.addAll(runList2(dn9console));
+    /**
+     * Run {@code list2} on each console and parse its rows; the first console to list a name wins.
+     */
+    public static List<Instance> readInstances(List<File> consoles) {
+        Map<String, Instance> instances = new LinkedHashMap<>();
+        for (File console : consoles) {
+            for (String line : runList2Lines(console)) {
+                Instance inst = parseList2Row(line);
+                if (inst != null) instances.putIfAbsent(inst.name, inst);
             }
+        }
+        return new ArrayList<>(instances.values());
+    }
+
+    /**
+     * Parse one {@code list2} CSV row:
+     * index,title,topWindowHandle,bindWindowHandle,androidStarted,pid,vboxPid,width,height,dpi.
+     * Returns null for lines that are not such a row.
+     */
+    static Instance parseList2Row(String line) {
+        String[] parts = line.split(",");
+        if (parts.length < 2 || parts[1].trim().isEmpty()) return null;
+        try {
+            Instance inst = new Instance();
+            inst.index = Integer.parseInt(parts[0].trim());
+            inst.name = parts[1].trim();
+            inst.topWindowHandle = parts.length > 2 ? Long.parseLong(parts[2].trim()) : 0;
+            inst.bindWindowHandle = parts.length > 3 ? Long.parseLong(parts[3].trim()) : 0;
+            inst.running = parts.length > 4 && "1".equals(parts[4].trim());
+            inst.pid = parts.length > 5 ? Integer.parseInt(parts[5].trim()) : -1;
+            inst.vboxPid = parts.length > 6 ? Integer.parseInt(parts[6].trim()) : -1;
+            inst.width = parts.length > 7 ? Integer.parseInt(parts[7].trim()) : 0;
+            inst.height = parts.length > 8 ? Integer.parseInt(parts[8].trim()) : 0;
+            inst.dpi = parts.length > 9 ? Integer.parseInt(parts[9].trim()) : 0;
+            return inst;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 
-            // Also check parent folder if user configured subfolder
-            File parent = base.getParentFile();
-            if (parent != null) {
-                File p1 = new File(parent, "ldconsole.exe");
-                File p2 = new File(parent, "dnconsole.exe");
-                if (p1.exists()) instances.addAll(runList2(p1));
-                if (p2.exists()) instances.addAll(runList2(p2));
+    /**
+     * Console executables under the roots, one per directory (ldconsole and dnconsole are the
+     * same tool, ldconsole preferred). Checks each root, its LDPlayer9 subfolder and its parent.
+     * An extension-less {@code ldconsole} is accepted too, so a stand-in script can be used off Windows.
+     */
+    public static List<File> findConsoles(List<String> ldRoots) {
+        Set<File> consoles = new LinkedHashSet<>();
+        for (String root : ldRoots) {
+            if (root == null || root.isBlank()) continue;
+            File base = new File(root);
+            if (!base.exists()) continue;
+            File[] dirs = {base, new File(base, "LDPlayer9"), base.getParentFile()};
+            for (File dir : dirs) {
+                if (dir == null) continue;
+                for (String name : CONSOLE_NAMES) {
+                    File console = new File(dir, name);
+                    if (console.isFile()) {
+                        consoles.add(console.getAbsoluteFile());
+                        break;
+                    }
+                }
             }
         }
-        return new ArrayList<>(instances);
+        return new ArrayList<>(consoles);
     }
 
-    private static List<String> runList2(File consoleExe) {
-        List<String> result = new ArrayList<>();
+    private static List<String> runList2Lines(File consoleExe) {
+        List<String> lines = new ArrayList<>();
         try {
             ProcessBuilder pb = new ProcessBuilder(consoleExe.getAbsolutePath(), "list2");
             pb.redirectErrorStream(true);
@@ -61,23 +112,31 @@ public final class LdConsoleHelper {
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream(), Charset.forName("UTF-8")))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
-                    // Typical output lines contain names like LDPlayer-1 or custom names
-                    // We pick the token after "name:" if present, else whole line heuristics
-                    String name = parseInstanceName(line);
-                    if (name != null && !name.isBlank()) {
-                        result.add(name.trim());
-                    }
+                    lines.add(line);
                 }
             }
             p.waitFor();
         } catch (IOException | InterruptedException ignored) {
-            // Silently ignore; we'll fallback to directory heuristics
+            // Console not runnable
+        }
+        return lines;
+    }
+
+    private static List<String> runList2(File consoleExe) {
+        List<String> result = new ArrayList<>();
+        for (String line : runList2Lines(consoleExe)) {
+            // Typical output lines contain names like LDPlayer-1 or custom names
+            // We pick the token after "name:" if present, else whole line heuristics
+            String name = parseInstanceName(line);
+            if (name != null && !name.isBlank()) {
+                result.add(name.trim());
+            }
         }
         return result;
     }
 
     private static String parseInstanceName(String line) {
-        // LDPlayer console outputs CSV: index,name,topWindowHandle,boundWindowHandle,isInFocus,x,y,width,height,dpi
+        // LDPlayer console outputs CSV: index,name,topWindowHandle,bindWindowHandle,androidStarted,pid,vboxPid,width,height,dpi
         // Example: 6,GoldTownsRun,0,0,0,-1,-1,960,540,240
         String[] parts = line.split(",");
         if (parts.length >= 2 && !parts[1].trim().isEmpty()) {
@@ -105,39 +164,27 @@ public final class LdConsoleHelper {
      * Returns output lines if successful, null if console not found or command failed.
      */
     public static List<String> runLdConsoleCommand(List<String> ldRoots, String... args) {
-        for (String root : ldRoots) {
-            if (root == null || root.isBlank()) continue;
-            File base = new File(root);
-            File ldconsole = new File(base, "ldconsole.exe");
-            File dnconsole = new File(base, "dnconsole.exe");
-            File ld9console = new File(base, "LDPlayer9/ldconsole.exe");
-            File dn9console = new File(base, "LDPlayer9/dnconsole.exe");
-            
-            File[] consoles = {ldconsole, dnconsole, ld9console, dn9console};
-            for (File console : consoles) {
-                if (console.exists()) {
-                    try {
-                        List<String> cmd = new ArrayList<>();
-                        cmd.add(console.getAbsolutePath());
-                        for (String arg : args) cmd.add(arg);
-                        ProcessBuilder pb = new ProcessBuilder(cmd);
-                        pb.redirectErrorStream(true);
-                        Process p = pb.start();
-                        List<String> output = new ArrayList<>();
-                        try (BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream(), Charset.forName("UTF-8")))) {
-                            String line;
-                            while ((line = reader.readLine()) != null) {
-                                output.add(line);
-                            }
-                        }
-                        int exitCode = p.waitFor();
-                        if (exitCode == 0) {
-                            return output;
-                        }
-                    } catch (IOException | InterruptedException ignored) {
-                        // Try next console
+        for (File console : findConsoles(ldRoots)) {
+            try {
+                List<String> cmd = new ArrayList<>();
+                cmd.add(console.getAbsolutePath());
+                for (String arg : args) cmd.add(arg);
+                ProcessBuilder pb = new ProcessBuilder(cmd);
+                pb.redirectErrorStream(true);
+                Process p = pb.start();
+                List<String> output = new ArrayList<>();
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(p.getInputStream(), Charset.forName("UTF-8")))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        output.add(line);
                     }
                 }
+                int exitCode = p.waitFor();
+                if (exitCode == 0) {
+                    return output;
+                }
+            } catch (IOException | InterruptedException ignored) {
+                // Try next console
             }
         }
         return null; // No console found or command failed
@@ -1,34 +1,97 @@
 package com.duckbot.adb;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * LDPlayer manager using ldconsole for real instance operations.
+ *
+ * Instance serials are cached by name. One {@code list2} run resolves the whole fleet
+ * (LDPlayer instance N listens on adb port 5555 + 2N), entries expire after a TTL, and an
+ * entry is dropped early when the adb server reports its serial offline or gone.
+ *
+ * Bulk launches run under one adaptive window per manager (see {@link LaunchWindow}), shared
+ * by every caller, and wait for each instance to report boot completed before its slot is freed.
  */
 public class LdPlayerManager {
 
-    private final List<String> ldRoots;
+    private static final long SERIAL_TTL_MS = 60_000;
+    /** Serials not yet seen by adb (instance stopped or booting) are re-checked sooner. */
+    private static final long UNCONFIRMED_TTL_MS = 5_000;
+    private static final long STATE_CHECK_MS = 2_000;
+    private static final long BOOT_POLL_MS = 2_000;
+
+    private static final ExecutorService BULK = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ldplayer-bulk");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile List<String> ldRoots;
+    private final AdbClient adb;
+    private final Map<String, CachedSerial> serials = new ConcurrentHashMap<>();
+    private volatile Map<String, String> deviceStates = Map.of();
+    private volatile long statesCheckedAt;
+    private volatile int maxConcurrentLaunches = 4;
+    private final LaunchWindow launchWindow = new LaunchWindow(4, 3_000);
+    private volatile Duration bootTimeout = Duration.ofSeconds(120);
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private volatile Map<String, Double> instanceRates = Map.of();
+    private volatile int rateBurst = 10;
 
     public LdPlayerManager(String... roots) {
+        this(new AdbClient(), roots);
+    }
+
+    public LdPlayerManager(AdbClient adb, String... roots) {
+        this.adb = adb;
+        this.ldRoots = Arrays.asList(roots);
+    }
+
+    public AdbClient adb() {
+        return adb;
+    }
+
+    /**
+     * Point the manager at other LDPlayer install folders, e.g. after the settings changed.
+     * Cached serials are dropped; everything holding the manager keeps working with the new paths.
+     */
+    public void setRoots(String... roots) {
         this.ldRoots = Arrays.asList(roots);
+        invalidateAll();
     }
 
     public List<Instance> listInstances() {
-        List<String> names = LdConsoleHelper.detectInstancesFromConsolePaths(ldRoots);
-        List<Instance> result = new ArrayList<>();
-        for (String name : names) {
-            Instance inst = new Instance();
-            inst.name = name;
-            inst.running = true; // Assume detected = running
-            inst.display = AdbClient.resolveInstanceSerial(name, ldRoots);
-            result.add(inst);
+        List<Instance> result = resolveAll();
+        if (result.isEmpty()) {
+            // Console output without CSV rows; names only
+            for (String name : LdConsoleHelper.detectInstancesFromConsolePaths(ldRoots)) {
+                Instance inst = new Instance();
+                inst.name = name;
+                result.add(inst);
+            }
+        }
+        for (Instance inst : result) {
+            inst.display = resolveSerial(inst.name);
+            if (inst.index < 0) {
+                inst.running = "device".equals(deviceStates.get(inst.display));
+            }
         }
         return result;
     }
 
     public boolean launch(String instance) {
+        invalidate(instance);
         try {
             List<String> result = LdConsoleHelper.runLdConsoleCommand(ldRoots, "launch", "--name", instance);
             return result != null && !result.isEmpty();
@@ -38,6 +101,7 @@ public class LdPlayerManager {
     }
 
     public boolean quit(String instance) {
+        invalidate(instance);
         try {
             List<String> result = LdConsoleHelper.runLdConsoleCommand(ldRoots, "quit", "--name", instance);
             return result != null;
@@ -55,7 +119,334 @@ public class LdPlayerManager {
         }
     }
 
+    /**
+     * Start an app on a running instance.
+     */
+    public boolean runApp(String instance, String packageName) {
+        try {
+            List<String> result = LdConsoleHelper.runLdConsoleCommand(ldRoots, "runapp", "--name", instance, "--packagename", packageName);
+            return result != null;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Limits for bulk operations: at most {@code maxConcurrent} instances booting at once
+     * (the adaptive window stays at or below this), launches spaced by {@code staggerMs},
+     * and {@code bootTimeout} for each instance to reach boot completed.
+     */
+    public void setBulkLimits(int maxConcurrent, long staggerMs, Duration bootTimeout) {
+        this.maxConcurrentLaunches = Math.max(1, maxConcurrent);
+        launchWindow.setLimits(maxConcurrent, staggerMs);
+        this.bootTimeout = bootTimeout;
+    }
+
+    /**
+     * Launch the instances under the adaptive window, waiting for each to boot. Concurrent
+     * calls share the window, so together they never boot more instances at once than it allows.
+     *
+     * @return one result per instance, in the given order
+     */
+    public List<LifecycleResult> launchAll(List<String> instances) {
+        LaunchWindow window = launchWindow;
+        List<Future<LifecycleResult>> futures = new ArrayList<>();
+        for (String instance : instances) {
+            try {
+                window.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            futures.add(BULK.submit(() -> {
+                long bootMs = -1;
+                try {
+                    LifecycleResult result = launchAndWait(instance);
+                    bootMs = result.bootMs;
+                    return result;
+                } finally {
+                    window.release(bootMs);
+                }
+            }));
+        }
+        return collect(instances, futures, "launch");
+    }
+
+    /**
+     * Quit the instances, {@code maxConcurrent} at a time.
+     */
+    public List<LifecycleResult> quitAll(List<String> instances) {
+        Semaphore slots = new Semaphore(maxConcurrentLaunches);
+        List<Future<LifecycleResult>> futures = new ArrayList<>();
+        for (String instance : instances) {
+            futures.add(BULK.submit(() -> {
+                slots.acquire();
+                try {
+                    long started = System.currentTimeMillis();
+                    boolean ok = quit(instance);
+                    return new LifecycleResult(instance, "quit", ok, ok ? "Stopped" : "Quit failed",
+                            System.currentTimeMillis() - started, -1);
+                } finally {
+                    slots.release();
+                }
+            }));
+        }
+        return collect(instances, futures, "quit");
+    }
+
+    /**
+     * Quit all the instances, then launch them again under the adaptive window.
+     */
+    public List<LifecycleResult> restartAll(List<String> instances) {
+        List<LifecycleResult> quits = quitAll(instances);
+        List<LifecycleResult> launches = launchAll(instances);
+        List<LifecycleResult> results = new ArrayList<>();
+        for (int i = 0; i < instances.size(); i++) {
+            LifecycleResult quit = quits.get(i);
+            LifecycleResult launch = i < launches.size() ? launches.get(i) : null;
+            if (launch == null) {
+                results.add(new LifecycleResult(instances.get(i), "restart", false, "Not launched", quit.elapsedMs, -1));
+            } else {
+                results.add(new LifecycleResult(instances.get(i), "restart", launch.success,
+                        quit.success ? launch.message : "Quit failed; " + launch.message,
+                        quit.elapsedMs + launch.elapsedMs, launch.bootMs));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Clone a prepared, stopped golden instance with {@code ldconsole copy}, then apply the
+     * settings to each clone. At most {@code settings.maxParallelCopies} copies run at once.
+     * If the golden instance is running or missing, every clone fails without copying.
+     * Change listeners are notified once all clones are done.
+     *
+     * @return one result per new name, in the given order
+     */
+    public List<LifecycleResult> cloneInstance(String golden, List<String> newNames, CloneSettings settings) {
+        List<Instance> instances = LdConsoleHelper.detectInstanceDetails(ldRoots);
+        Instance source = instances.stream().filter(i -> i.name.equals(golden)).findFirst().orElse(null);
+        // Copying a running instance's disk gives inconsistent clones
+        String refused = source == null ? "Golden instance " + golden + " not found"
+                : source.running || source.pid > 0 ? "Golden instance " + golden + " is running; stop it first"
+                : null;
+        if (refused != null) {
+            return newNames.stream().map(name -> new LifecycleResult(name, "clone", false, refused, 0, -1)).toList();
+        }
+        List<String> existing = instances.stream().map(i -> i.name).toList();
+        List<String> modifyArgs = settings.modifyArgs();
+        Semaphore copySlots = new Semaphore(Math.max(1, settings.maxParallelCopies));
+        List<Future<LifecycleResult>> futures = new ArrayList<>();
+        for (String name : newNames) {
+            futures.add(BULK.submit(() -> {
+                long started = System.currentTimeMillis();
+                if (existing.contains(name)) {
+                    return new LifecycleResult(name, "clone", false, "Instance already exists", 0, -1);
+                }
+                copySlots.acquire();
+                List<String> copied;
+                try {
+                    copied = LdConsoleHelper.runLdConsoleCommand(ldRoots, "copy", "--name", name, "--from", golden);
+                } finally {
+                    copySlots.release();
+                }
+                if (copied == null) {
+                    return new LifecycleResult(name, "clone", false, "Copy from " + golden + " failed",
+                            System.currentTimeMillis() - started, -1);
+                }
+                if (!modifyArgs.isEmpty()) {
+                    List<String> args = new ArrayList<>(List.of("modify", "--name", name));
+                    args.addAll(modifyArgs);
+                    if (LdConsoleHelper.runLdConsoleCommand(ldRoots, args.toArray(new String[0])) == null) {
+                        return new LifecycleResult(name, "clone", false, "Copied, but applying settings failed",
+                                System.currentTimeMillis() - started, -1);
+                    }
+                }
+                return new LifecycleResult(name, "clone", true, "Cloned from " + golden,
+                        System.currentTimeMillis() - started, -1);
+            }));
+        }
+        List<LifecycleResult> results = collect(newNames, futures, "clone");
+        fireChanged();
+        return results;
+    }
+
+    /**
+     * Create an empty instance with {@code ldconsole add}.
+     */
+    public boolean createInstance(String name) {
+        List<String> result = LdConsoleHelper.runLdConsoleCommand(ldRoots, "add", "--name", name);
+        if (result != null) {
+            fireChanged();
+        }
+        return result != null;
+    }
+
+    /**
+     * Called after this manager adds instances, e.g. to refresh a discovery service.
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    private void fireChanged() {
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (Exception ignored) {
+                // Listener failures do not affect the operation
+            }
+        }
+    }
+
+    private LifecycleResult launchAndWait(String instance) {
+        long started = System.currentTimeMillis();
+        invalidate(instance);
+        if (LdConsoleHelper.runLdConsoleCommand(ldRoots, "launch", "--name", instance) == null) {
+            return new LifecycleResult(instance, "launch", false, "Console launch failed", 0, -1);
+        }
+        long deadline = started + bootTimeout.toMillis();
+        while (System.currentTimeMillis() < deadline) {
+            String booted = adb.shellOutput(resolveSerial(instance), "getprop", "sys.boot_completed");
+            if (booted != null && "1".equals(booted.trim())) {
+                long elapsed = System.currentTimeMillis() - started;
+                return new LifecycleResult(instance, "launch", true, "Booted", elapsed, elapsed);
+            }
+            try {
+                Thread.sleep(BOOT_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return new LifecycleResult(instance, "launch", false, "Boot not completed in time",
+                System.currentTimeMillis() - started, -1);
+    }
+
+    private static List<LifecycleResult> collect(List<String> instances, List<Future<LifecycleResult>> futures, String action) {
+        List<LifecycleResult> results = new ArrayList<>();
+        for (int i = 0; i < instances.size(); i++) {
+            if (i >= futures.size()) {
+                results.add(new LifecycleResult(instances.get(i), action, false, "Interrupted", 0, -1));
+                continue;
+            }
+            try {
+                results.add(futures.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(new LifecycleResult(instances.get(i), action, false, "Interrupted", 0, -1));
+            } catch (ExecutionException e) {
+                results.add(new LifecycleResult(instances.get(i), action, false, String.valueOf(e.getCause()), 0, -1));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Per-instance adb command rates, applied to an instance's serial whenever it is resolved.
+     */
+    public void setInstanceRateLimits(Map<String, Double> commandsPerSecond, int burst) {
+        this.instanceRates = commandsPerSecond == null ? Map.of() : Map.copyOf(commandsPerSecond);
+        this.rateBurst = Math.max(1, burst);
+        serials.forEach(this::applyRateLimit);
+    }
+
+    private void applyRateLimit(String instance, CachedSerial cached) {
+        Double rate = instanceRates.get(instance);
+        if (rate != null && cached.serial != null) {
+            adb.setRateLimit(cached.serial, rate, rateBurst);
+        }
+    }
+
+    private void cacheSerial(String instance, CachedSerial cached) {
+        serials.put(instance, cached);
+        applyRateLimit(instance, cached);
+    }
+
+    /**
+     * ADB serial for an instance, from the cache when possible.
+     */
     public String resolveSerial(String instance) {
-        return AdbClient.resolveInstanceSerial(instance, ldRoots);
+        CachedSerial cached = serials.get(instance);
+        if (isUsable(cached)) {
+            return cached.serial;
+        }
+        resolveAll();
+        cached = serials.get(instance);
+        if (cached != null) {
+            return cached.serial;
+        }
+        // Not listed with an index by list2; ask the console for this one
+        String serial = AdbClient.resolveInstanceSerial(instance, ldRoots);
+        cacheSerial(instance, new CachedSerial(serial, false, System.currentTimeMillis() + UNCONFIRMED_TTL_MS));
+        return serial;
     }
-}
\ No newline at end of file
+
+    /**
+     * Resolve every instance from one list2 run and one adb device listing.
+     *
+     * @return the list2 rows, in console order
+     */
+    public synchronized List<Instance> resolveAll() {
+        List<Instance> instances = LdConsoleHelper.detectInstanceDetails(ldRoots);
+        updateSerials(instances);
+        return instances;
+    }
+
+    /**
+     * Cache serials for instances already read from list2 (e.g. a discovery snapshot),
+     * checking them against one adb device listing.
+     */
+    public void updateSerials(List<Instance> instances) {
+        Map<String, String> states = refreshStates(true);
+        long now = System.currentTimeMillis();
+        for (Instance inst : instances) {
+            if (inst.index < 0) continue;
+            String tcp = "127.0.0.1:" + (5555 + 2 * inst.index);
+            String emulator = "emulator-" + (5554 + 2 * inst.index);
+            String serial;
+            if ("device".equals(states.get(tcp))) {
+                serial = tcp;
+            } else if ("device".equals(states.get(emulator))) {
+                serial = emulator;
+            } else {
+                serial = states.containsKey(emulator) && !states.containsKey(tcp) ? emulator : tcp;
+            }
+            boolean confirmed = "device".equals(states.get(serial));
+            cacheSerial(inst.name, new CachedSerial(serial, confirmed,
+                    now + (confirmed ? SERIAL_TTL_MS : UNCONFIRMED_TTL_MS)));
+        }
+    }
+
+    public void invalidate(String instance) {
+        serials.remove(instance);
+    }
+
+    public void invalidateAll() {
+        serials.clear();
+        statesCheckedAt = 0;
+    }
+
+    private boolean isUsable(CachedSerial cached) {
+        if (cached == null || System.currentTimeMillis() >= cached.expiresAt) {
+            return false;
+        }
+        if (!cached.confirmed) {
+            return true;
+        }
+        // A confirmed serial that adb now reports offline or no longer lists is stale
+        String state = refreshStates(false).get(cached.serial);
+        return "device".equals(state);
+    }
+
+    private Map<String, String> refreshStates(boolean force) {
+        long now = System.currentTimeMillis();
+        if (force || now - statesCheckedAt >= STATE_CHECK_MS) {
+            deviceStates = adb.deviceStates();
+            statesCheckedAt = now;
+        }
+        return deviceStates;
+    }
+
+    private record CachedSerial(String serial, boolean confirmed, long expiresAt) {}
+}
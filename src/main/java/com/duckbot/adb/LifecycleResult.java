@@ -0,0 +1,30 @@
+package com.duckbot.adb;
+
+/**
+ * Outcome of one instance in a bulk launch, quit or restart.
+ */
+public final class LifecycleResult {
+
+    public final String instance;
+    public final String action;
+    public final boolean success;
+    public final String message;
+    public final long elapsedMs;
+    /** Time from launch to boot completed, or -1 when not launched or never booted. */
+    public final long bootMs;
+
+    public LifecycleResult(String instance, String action, boolean success, String message, long elapsedMs, long bootMs) {
+        this.instance = instance;
+        this.action = action;
+        this.success = success;
+        this.message = message;
+        this.elapsedMs = elapsedMs;
+        this.bootMs = bootMs;
+    }
+
+    @Override
+    public String toString() {
+        return "LifecycleResult{" + action + " " + instance + ", success=" + success + ", message='" + message + '\''
+                + ", elapsedMs=" + elapsedMs + ", bootMs=" + bootMs + '}';
+    }
+}
@@ -0,0 +1,319 @@
+package com.duckbot.adb;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Follows a device's logcat and turns matching lines into events.
+ *
+ * Lines are matched on the reader thread against filters whose patterns were compiled
+ * once, so only matches are buffered. When every filter names a tag, the tags are also
+ * passed to logcat so the device drops everything else. Matches wait in a bounded queue
+ * for the dispatcher thread; when listeners fall behind the oldest events are dropped
+ * (see {@link #dropped()}) instead of the reader blocking or memory growing.
+ *
+ * Only lines logged after the stream was opened are reported. logcat is started with
+ * {@code -T} at the device's current time, and a restart resumes from the last line read,
+ * skipping the lines that were already seen at that time. A restart neither loses nor repeats
+ * events, whatever the tag filters. Like {@link ScreenrecordFrameSource}, the logcat process is
+ * restarted with backoff when the stream ends.
+ */
+public final class LogcatStream implements AutoCloseable {
+
+    private static final Pattern THREADTIME = Pattern.compile(
+            "^(\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d+)\\s+(\\d+)\\s+(\\d+)\\s+([VDIWEFA])\\s+(.*?)\\s*: (.*)$");
+    private static final String LEVELS = "VDIWEFA";
+    private static final int MAX_LINE = 4096;
+    private static final long MIN_RESTART_DELAY_MS = 250;
+    private static final long MAX_RESTART_DELAY_MS = 10000;
+    private static final long HEALTHY_RUN_MS = 5000;
+
+    private final AdbClient adb;
+    private final String serial;
+    private final List<Filter> filters;
+    private final int capacity;
+    private final ArrayDeque<Event> queue;
+    private final List<Consumer<Event>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread reader;
+    private final Thread dispatcher;
+
+    private volatile InputStream stream;
+    private volatile boolean closed;
+    /** Device time of the newest line read and how many lines had exactly that time; reader thread only. */
+    private String lastTime;
+    private int lastTimeLines;
+
+    public LogcatStream(AdbClient adb, String serial, List<Filter> filters) {
+        this(adb, serial, filters, 256);
+    }
+
+    /**
+     * @param capacity matched events held for the listeners before the oldest are dropped
+     */
+    public LogcatStream(AdbClient adb, String serial, List<Filter> filters, int capacity) {
+        this.adb = adb;
+        this.serial = serial;
+        this.filters = List.copyOf(filters);
+        this.capacity = Math.max(1, capacity);
+        this.queue = new ArrayDeque<>(this.capacity);
+        this.reader = new Thread(this::readLoop, "logcat-" + serial);
+        this.reader.setDaemon(true);
+        this.dispatcher = new Thread(this::dispatchLoop, "logcat-dispatch-" + serial);
+        this.dispatcher.setDaemon(true);
+        this.reader.start();
+        this.dispatcher.start();
+    }
+
+    public String serial() {
+        return serial;
+    }
+
+    /**
+     * Listeners run on the dispatcher thread, in order, and should return quickly.
+     */
+    public void addListener(Consumer<Event> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Event> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Events dropped so far because the queue was full.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        reader.interrupt();
+        dispatcher.interrupt();
+        closeStream();
+    }
+
+    /**
+     * The logcat command: threadtime format, lines from {@code since} on (device time as
+     * logcat prints it), and the tags when all filters have one.
+     */
+    String command(String since) {
+        StringBuilder cmd = new StringBuilder("logcat -v threadtime -T ").append(AdbClient.toShellCommand(since));
+        Set<String> specs = new LinkedHashSet<>();
+        for (Filter filter : filters) {
+            if (filter.tag == null) {
+                return cmd.toString();
+            }
+            specs.add(filter.tag + ":" + filter.minLevel);
+        }
+        for (String spec : specs) {
+            cmd.append(' ').append(spec);
+        }
+        return cmd.append(" *:S").toString();
+    }
+
+    private void readLoop() {
+        long delay = MIN_RESTART_DELAY_MS;
+        while (!closed) {
+            long started = System.currentTimeMillis();
+            try {
+                read();
+            } catch (Exception ignored) {
+                // Restart below
+            } finally {
+                closeStream();
+            }
+            if (closed) {
+                return;
+            }
+            delay = System.currentTimeMillis() - started > HEALTHY_RUN_MS
+                    ? MIN_RESTART_DELAY_MS
+                    : Math.min(delay * 2, MAX_RESTART_DELAY_MS);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void read() throws IOException {
+        String since = lastTime != null ? lastTime : deviceTime();
+        // -T includes lines at exactly that time; the ones already read come first
+        int seen = lastTime != null ? lastTimeLines : 0;
+        lastTime = since;
+        lastTimeLines = 0;
+        stream = adb.execStream(serial, command(since));
+        BufferedReader lines = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+        String line;
+        while (!closed && (line = lines.readLine()) != null) {
+            Event event = parse(line.length() > MAX_LINE ? line.substring(0, MAX_LINE) : line);
+            if (event == null || event.time.compareTo(since) < 0) {
+                continue;
+            }
+            if (event.time.equals(lastTime)) {
+                lastTimeLines++;
+            } else {
+                lastTime = event.time;
+                lastTimeLines = 1;
+            }
+            if (seen > 0 && event.time.equals(since)) {
+                seen--;
+                continue;
+            }
+            for (Filter filter : filters) {
+                if (filter.matches(event)) {
+                    offer(event.withFilter(filter.id));
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * The device's current time in logcat's format, to the second.
+     */
+    private String deviceTime() throws IOException {
+        String output = adb.shellOutput(serial, "date", "+%m-%d %H:%M:%S.000");
+        String time = output == null ? "" : output.trim();
+        if (!time.matches("\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.000")) {
+            throw new IOException("Could not read the device time of " + serial);
+        }
+        return time;
+    }
+
+    private void offer(Event event) {
+        synchronized (queue) {
+            if (queue.size() >= capacity) {
+                queue.pollFirst();
+                dropped.incrementAndGet();
+            }
+            queue.addLast(event);
+            queue.notifyAll();
+        }
+    }
+
+    private void dispatchLoop() {
+        while (!closed) {
+            Event event;
+            synchronized (queue) {
+                while (queue.isEmpty()) {
+                    try {
+                        queue.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                event = queue.pollFirst();
+            }
+            for (Consumer<Event> listener : listeners) {
+                try {
+                    listener.accept(event);
+                } catch (Exception ignored) {
+                    // A failing listener must not stop the stream
+                }
+            }
+        }
+    }
+
+    private void closeStream() {
+        InputStream s = stream;
+        stream = null;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Parse one {@code -v threadtime} line, or null for headers and continuation lines.
+     */
+    static Event parse(String line) {
+        Matcher m = THREADTIME.matcher(line);
+        if (!m.matches()) {
+            return null;
+        }
+        return new Event(m.group(1), Integer.parseInt(m.group(2)), Integer.parseInt(m.group(3)),
+                m.group(4).charAt(0), m.group(5), m.group(6), null);
+    }
+
+    /**
+     * Which lines to report: an optional exact tag, a minimum level and an optional message regex.
+     */
+    public static final class Filter {
+        public final String id;
+        /** Exact tag, or null for any tag. */
+        public final String tag;
+        public final char minLevel;
+        /** Compiled once; found anywhere in the message. Null matches every message. */
+        public final Pattern message;
+
+        public Filter(String id, String tag, String messageRegex) {
+            this(id, tag, 'V', messageRegex);
+        }
+
+        public Filter(String id, String tag, char minLevel, String messageRegex) {
+            this.id = id;
+            this.tag = tag == null || tag.isBlank() ? null : tag.trim();
+            this.minLevel = LEVELS.indexOf(Character.toUpperCase(minLevel)) >= 0 ? Character.toUpperCase(minLevel) : 'V';
+            this.message = messageRegex == null || messageRegex.isBlank() ? null : Pattern.compile(messageRegex);
+        }
+
+        boolean matches(Event event) {
+            return (tag == null || tag.equals(event.tag))
+                    && LEVELS.indexOf(event.level) >= LEVELS.indexOf(minLevel)
+                    && (message == null || message.matcher(event.message).find());
+        }
+    }
+
+    /**
+     * One logcat line that matched a filter.
+     */
+    public static final class Event {
+        /** Device time as printed by logcat, e.g. "10-18 12:00:01.234". */
+        public final String time;
+        public final int pid;
+        public final int tid;
+        public final char level;
+        public final String tag;
+        public final String message;
+        /** Id of the filter that matched. */
+        public final String filterId;
+        public final long receivedAt = System.currentTimeMillis();
+
+        Event(String time, int pid, int tid, char level, String tag, String message, String filterId) {
+            this.time = time;
+            this.pid = pid;
+            this.tid = tid;
+            this.level = level;
+            this.tag = tag;
+            this.message = message;
+            this.filterId = filterId;
+        }
+
+        Event withFilter(String id) {
+            return new Event(time, pid, tid, level, tag, message, id);
+        }
+
+        @Override
+        public String toString() {
+            return time + " " + level + "/" + tag + "(" + pid + "): " + message;
+        }
+    }
+}
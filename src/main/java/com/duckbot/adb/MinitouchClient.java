@@ -0,0 +1,215 @@
+package com.duckbot.adb;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Client for the minitouch text protocol, normally reached through an adb-forwarded port.
+ *
+ * On connect the server sends a banner ({@code v}, {@code ^ maxContacts maxX maxY maxPressure},
+ * {@code $ pid}). Touches are then sent as {@code d}/{@code m}/{@code u} lines per contact and
+ * applied on {@code c}; {@code w} makes the server wait, so a whole gesture can be written at once.
+ * Coordinates passed in are screen pixels and are scaled to the touch device's range; with a
+ * {@link #setRotation rotation} set they are taken in the rotated screen and turned back to
+ * the panel's natural orientation first.
+ */
+public final class MinitouchClient implements Closeable {
+
+    private static final int CONNECT_TIMEOUT_MS = 2000;
+    private static final int MOVE_INTERVAL_MS = 16;
+
+    private final Socket socket;
+    private final OutputStream out;
+    private int version;
+    private int maxContacts = 1;
+    private int maxX;
+    private int maxY;
+    private int maxPressure;
+    private int screenWidth;
+    private int screenHeight;
+    private int rotation;
+
+    private MinitouchClient(Socket socket) throws IOException {
+        this.socket = socket;
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    /**
+     * Connect to a minitouch server and read its banner.
+     *
+     * @param screenWidth  screen width in pixels in the natural orientation, or 0 to send coordinates unscaled
+     * @param screenHeight screen height in pixels in the natural orientation, or 0 to send coordinates unscaled
+     */
+    public static MinitouchClient connect(String host, int port, int screenWidth, int screenHeight) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            socket.setSoTimeout(CONNECT_TIMEOUT_MS);
+            MinitouchClient client = new MinitouchClient(socket);
+            client.readBanner();
+            socket.setSoTimeout(0);
+            client.screenWidth = screenWidth;
+            client.screenHeight = screenHeight;
+            return client;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private void readBanner() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] parts = line.trim().split("\\s+");
+            switch (parts[0]) {
+                case "v" -> version = Integer.parseInt(parts[1]);
+                case "^" -> {
+                    maxContacts = Integer.parseInt(parts[1]);
+                    maxX = Integer.parseInt(parts[2]);
+                    maxY = Integer.parseInt(parts[3]);
+                    maxPressure = Integer.parseInt(parts[4]);
+                }
+                case "$" -> {
+                    // pid is the last banner line
+                    return;
+                }
+                default -> {
+                    // Unknown banner line; ignore
+                }
+            }
+        }
+        throw new IOException("minitouch closed the connection before sending its banner");
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public int maxContacts() {
+        return maxContacts;
+    }
+
+    /**
+     * Current display rotation, 0-3 as in {@code Surface.ROTATION_*} (1 is the usual landscape).
+     */
+    public void setRotation(int rotation) {
+        this.rotation = rotation & 3;
+    }
+
+    public MinitouchClient down(int contact, int x, int y) throws IOException {
+        checkContact(contact);
+        return send("d " + contact + " " + point(x, y) + " " + pressure() + "\n");
+    }
+
+    public MinitouchClient move(int contact, int x, int y) throws IOException {
+        checkContact(contact);
+        return send("m " + contact + " " + point(x, y) + " " + pressure() + "\n");
+    }
+
+    public MinitouchClient up(int contact) throws IOException {
+        checkContact(contact);
+        return send("u " + contact + "\n");
+    }
+
+    public MinitouchClient commit() throws IOException {
+        return send("c\n");
+    }
+
+    public MinitouchClient waitMs(int millis) throws IOException {
+        return send("w " + millis + "\n");
+    }
+
+    /**
+     * Write everything queued so far to the server.
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    public void tap(int x, int y) throws IOException {
+        down(0, x, y).commit().up(0).commit().flush();
+    }
+
+    /**
+     * Drag one contact from (x1, y1) to (x2, y2). Returns once the gesture is written; the
+     * server paces the moves itself, so it finishes {@code durationMs} later.
+     */
+    public void swipe(int x1, int y1, int x2, int y2, int durationMs) throws IOException {
+        int steps = Math.max(1, durationMs / MOVE_INTERVAL_MS);
+        int interval = Math.max(1, durationMs / steps);
+        down(0, x1, y1).commit();
+        for (int i = 1; i <= steps; i++) {
+            waitMs(interval);
+            move(0, x1 + (x2 - x1) * i / steps, y1 + (y2 - y1) * i / steps).commit();
+        }
+        up(0).commit().flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    public boolean isClosed() {
+        return socket.isClosed();
+    }
+
+    private MinitouchClient send(String command) throws IOException {
+        out.write(command.getBytes(StandardCharsets.US_ASCII));
+        return this;
+    }
+
+    private void checkContact(int contact) {
+        if (contact < 0 || contact >= maxContacts) {
+            throw new IllegalArgumentException("Contact " + contact + " out of range (max " + maxContacts + ")");
+        }
+    }
+
+    /**
+     * Screen pixel to touch device coordinates, undoing the display rotation.
+     */
+    private String point(int x, int y) {
+        if (screenWidth <= 0 || screenHeight <= 0 || maxX <= 0 || maxY <= 0) {
+            return x + " " + y;
+        }
+        boolean sideways = (rotation & 1) == 1;
+        double fx = (double) x / (sideways ? screenHeight : screenWidth);
+        double fy = (double) y / (sideways ? screenWidth : screenHeight);
+        double nx;
+        double ny;
+        switch (rotation) {
+            case 1 -> {
+                nx = 1 - fy;
+                ny = fx;
+            }
+            case 2 -> {
+                nx = 1 - fx;
+                ny = 1 - fy;
+            }
+            case 3 -> {
+                nx = fy;
+                ny = 1 - fx;
+            }
+            default -> {
+                nx = fx;
+                ny = fy;
+            }
+        }
+        long dx = Math.max(0, Math.min(maxX, Math.round(nx * maxX)));
+        long dy = Math.max(0, Math.min(maxY, Math.round(ny * maxY)));
+        return dx + " " + dy;
+    }
+
+    private int pressure() {
+        return maxPressure > 0 ? Math.min(50, maxPressure) : 0;
+    }
+}
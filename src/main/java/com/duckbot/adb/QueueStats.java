@@ -0,0 +1,28 @@
+package com.duckbot.adb;
+
+/**
+ * Queueing metrics of one priority lane on one device, from {@link AdbClient#queueStats}.
+ */
+public final class QueueStats {
+    public final AdbClient.Lane lane;
+    public final long calls;
+    /** Calls waiting for admission right now. */
+    public final int waiting;
+    /** Smoothed time calls waited for a slot and a token. */
+    public final double avgDelayMs;
+    public final long maxDelayMs;
+
+    public QueueStats(AdbClient.Lane lane, long calls, int waiting, double avgDelayMs, long maxDelayMs) {
+        this.lane = lane;
+        this.calls = calls;
+        this.waiting = waiting;
+        this.avgDelayMs = avgDelayMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QueueStats{%s: calls=%d, waiting=%d, avgDelayMs=%.1f, maxDelayMs=%d}",
+                lane, calls, waiting, avgDelayMs, maxDelayMs);
+    }
+}
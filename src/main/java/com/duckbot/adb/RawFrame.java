@@ -0,0 +1,137 @@
+package com.duckbot.adb;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferUShort;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Uncompressed framebuffer as written by {@code screencap} without {@code -p}.
+ *
+ * The stream starts with little-endian ints width, height, format and, on Android 9+,
+ * a colorspace, followed by the pixels. Which header variant we got is decided by how
+ * many bytes follow the first 12. A frame can be passed back into {@link #read} to reuse
+ * its pixel buffer for the next capture.
+ */
+public final class RawFrame {
+
+    public static final int FORMAT_RGBA_8888 = 1;
+    public static final int FORMAT_RGBX_8888 = 2;
+    public static final int FORMAT_RGB_888 = 3;
+    public static final int FORMAT_RGB_565 = 4;
+    public static final int FORMAT_BGRA_8888 = 5;
+
+    private static final int BASE_HEADER = 12;
+    private static final int COLORSPACE_FIELD = 4;
+
+    public int width;
+    public int height;
+    public int format;
+    /** Colorspace from the 16-byte header, or -1 when the device sent the legacy 12-byte header. */
+    public int colorSpace = -1;
+    /** Pixel bytes start at {@link #offset}; the array may be larger than the frame. */
+    public byte[] data = new byte[0];
+    public int offset;
+
+    public RawFrame() {
+    }
+
+    /**
+     * Read one frame from the stream, reusing {@code reuse}'s buffer when it is large enough.
+     */
+    public static RawFrame read(InputStream in, RawFrame reuse) throws IOException {
+        RawFrame frame = reuse != null ? reuse : new RawFrame();
+        byte[] header = new byte[BASE_HEADER];
+        readFully(in, header, 0, BASE_HEADER);
+        frame.width = intLE(header, 0);
+        frame.height = intLE(header, 4);
+        frame.format = intLE(header, 8);
+        int bpp = bytesPerPixel(frame.format);
+        if (frame.width <= 0 || frame.height <= 0 || bpp == 0) {
+            throw new IOException("Unsupported screencap header: " + frame.width + "x" + frame.height + " format " + frame.format);
+        }
+        long payload = (long) frame.width * frame.height * bpp;
+        if (payload + COLORSPACE_FIELD > Integer.MAX_VALUE) {
+            throw new IOException("Frame too large: " + frame.width + "x" + frame.height);
+        }
+        int capacity = (int) payload + COLORSPACE_FIELD;
+        if (frame.data.length < capacity) {
+            frame.data = new byte[capacity];
+        }
+        int read = readUpTo(in, frame.data, 0, capacity);
+        if (read == capacity) {
+            frame.colorSpace = intLE(frame.data, 0);
+            frame.offset = COLORSPACE_FIELD;
+        } else if (read == payload) {
+            frame.colorSpace = -1;
+            frame.offset = 0;
+        } else {
+            throw new IOException("Truncated frame: expected " + payload + " pixel bytes, got " + read);
+        }
+        return frame;
+    }
+
+    public int bytesPerPixel() {
+        return bytesPerPixel(format);
+    }
+
+    /**
+     * Copy the pixels into a {@code TYPE_3BYTE_BGR} image (565 frames into {@code TYPE_USHORT_565_RGB}),
+     * a standard layout that Java2D draws without per-pixel color model calls and that
+     * {@link com.duckbot.ocr.Frame} copies into a Mat as is. The image does not share this
+     * frame's buffer, so the frame can be reused for the next capture.
+     */
+    public BufferedImage toImage() {
+        if (format == FORMAT_RGB_565) {
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_USHORT_565_RGB);
+            short[] dst = ((DataBufferUShort) image.getRaster().getDataBuffer()).getData();
+            for (int i = 0, p = offset; i < dst.length; i++, p += 2) {
+                dst[i] = (short) ((data[p] & 0xFF) | (data[p + 1] & 0xFF) << 8);
+            }
+            return image;
+        }
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] dst = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int bpp = bytesPerPixel();
+        // Source offsets of blue and red within a pixel; green is always 1
+        int blue = format == FORMAT_BGRA_8888 ? 0 : 2;
+        int red = 2 - blue;
+        for (int d = 0, p = offset; d < dst.length; d += 3, p += bpp) {
+            dst[d] = data[p + blue];
+            dst[d + 1] = data[p + 1];
+            dst[d + 2] = data[p + red];
+        }
+        return image;
+    }
+
+    static int bytesPerPixel(int format) {
+        return switch (format) {
+            case FORMAT_RGBA_8888, FORMAT_RGBX_8888, FORMAT_BGRA_8888 -> 4;
+            case FORMAT_RGB_888 -> 3;
+            case FORMAT_RGB_565 -> 2;
+            default -> 0;
+        };
+    }
+
+    private static int intLE(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+
+    private static void readFully(InputStream in, byte[] buf, int off, int len) throws IOException {
+        if (readUpTo(in, buf, off, len) < len) {
+            throw new EOFException("Screencap stream ended early");
+        }
+    }
+
+    private static int readUpTo(InputStream in, byte[] buf, int off, int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            int n = in.read(buf, off + total, len - total);
+            if (n < 0) break;
+            total += n;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,155 @@
+package com.duckbot.adb;
+
+import java.awt.image.BufferedImage;
+import java.time.Duration;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decides when a device is ready to be scripted, checked by {@link AdbClient#awaitReady}.
+ *
+ * Signals are checked cheapest first and each one is only re-checked until it passes:
+ * {@code sys.boot_completed}, then the focused window's package from {@code dumpsys window},
+ * then an optional predicate on a screenshot. Between rounds the poll delay grows
+ * exponentially up to a cap, and the whole wait is bounded by a hard deadline.
+ *
+ * <pre>
+ * ReadinessProbe.Result r = adb.awaitReady(serial, new ReadinessProbe()
+ *         .foregroundPackage("com.example.game")
+ *         .deadline(Duration.ofMinutes(2)));
+ * </pre>
+ */
+public final class ReadinessProbe {
+
+    private static final Pattern FOCUS = Pattern.compile("mCurrentFocus=Window\\{\\S+ \\S+ ([\\w.]+)/");
+    private static final Pattern FOCUSED_APP = Pattern.compile("mFocusedApp=.*? ([\\w.]+)/");
+
+    public enum Stage { BOOT, FOREGROUND, SCREEN, READY }
+
+    private boolean bootCompleted = true;
+    private String foregroundPackage;
+    private Predicate<BufferedImage> screen;
+    private Duration deadline = Duration.ofMinutes(3);
+    private long initialDelayMs = 250;
+    private long maxDelayMs = 4000;
+
+    /**
+     * Whether to wait for {@code sys.boot_completed=1} (on by default).
+     */
+    public ReadinessProbe bootCompleted(boolean wait) {
+        this.bootCompleted = wait;
+        return this;
+    }
+
+    /**
+     * Wait until this package owns the focused window.
+     */
+    public ReadinessProbe foregroundPackage(String packageName) {
+        this.foregroundPackage = packageName == null || packageName.isBlank() ? null : packageName;
+        return this;
+    }
+
+    /**
+     * Wait until a screenshot satisfies the predicate, e.g. a template match on the home screen.
+     */
+    public ReadinessProbe screen(Predicate<BufferedImage> predicate) {
+        this.screen = predicate;
+        return this;
+    }
+
+    public ReadinessProbe deadline(Duration deadline) {
+        this.deadline = deadline;
+        return this;
+    }
+
+    public ReadinessProbe backoff(long initialDelayMs, long maxDelayMs) {
+        this.initialDelayMs = Math.max(1, initialDelayMs);
+        this.maxDelayMs = Math.max(this.initialDelayMs, maxDelayMs);
+        return this;
+    }
+
+    Result run(AdbClient adb, String serial) throws InterruptedException {
+        long started = System.currentTimeMillis();
+        long end = started + deadline.toMillis();
+        long delay = initialDelayMs;
+        int attempts = 0;
+        Stage stage = Stage.BOOT;
+        String foreground = null;
+        while (true) {
+            attempts++;
+            if (stage == Stage.BOOT) {
+                if (!bootCompleted || "1".equals(trim(adb.shellOutput(serial, "getprop", "sys.boot_completed")))) {
+                    stage = Stage.FOREGROUND;
+                }
+            }
+            if (stage == Stage.FOREGROUND) {
+                if (foregroundPackage == null) {
+                    stage = Stage.SCREEN;
+                } else {
+                    foreground = focusedPackage(adb, serial);
+                    if (foregroundPackage.equals(foreground)) {
+                        stage = Stage.SCREEN;
+                    }
+                }
+            }
+            if (stage == Stage.SCREEN) {
+                if (screen == null || screen.test(adb.screencap(serial))) {
+                    stage = Stage.READY;
+                }
+            }
+            long now = System.currentTimeMillis();
+            if (stage == Stage.READY || now >= end) {
+                return new Result(stage == Stage.READY, stage, foreground, attempts, now - started);
+            }
+            Thread.sleep(Math.min(delay, end - now));
+            delay = Math.min(delay * 2, maxDelayMs);
+        }
+    }
+
+    /**
+     * Package of the focused window, or null when it cannot be read.
+     */
+    static String focusedPackage(AdbClient adb, String serial) {
+        String output = adb.shellOutput(serial, "sh", "-c", "dumpsys window | grep -E 'mCurrentFocus|mFocusedApp'");
+        if (output == null) {
+            return null;
+        }
+        Matcher m = FOCUS.matcher(output);
+        if (m.find()) {
+            return m.group(1);
+        }
+        m = FOCUSED_APP.matcher(output);
+        return m.find() ? m.group(1) : null;
+    }
+
+    private static String trim(String s) {
+        return s == null ? null : s.trim();
+    }
+
+    /**
+     * Outcome of a readiness wait. When not ready, {@link #stage} is the signal that never passed.
+     */
+    public static final class Result {
+        public final boolean ready;
+        public final Stage stage;
+        /** Last focused package seen, if the foreground was checked. */
+        public final String foreground;
+        public final int attempts;
+        public final long elapsedMs;
+
+        Result(boolean ready, Stage stage, String foreground, int attempts, long elapsedMs) {
+            this.ready = ready;
+            this.stage = stage;
+            this.foreground = foreground;
+            this.attempts = attempts;
+            this.elapsedMs = elapsedMs;
+        }
+
+        @Override
+        public String toString() {
+            return "ReadinessProbe.Result{ready=" + ready + ", stage=" + stage + ", foreground=" + foreground
+                    + ", attempts=" + attempts + ", elapsedMs=" + elapsedMs + '}';
+        }
+    }
+}
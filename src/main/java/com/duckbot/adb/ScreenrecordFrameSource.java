@@ -0,0 +1,149 @@
+package com.duckbot.adb;
+
+import org.bytedeco.ffmpeg.global.avutil;
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.Java2DFrameConverter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streams a device screen by running {@code screenrecord --output-format=h264 -} over
+ * adb exec-out and decoding it with FFmpeg. Only the latest decoded frame is kept, so
+ * readers get it without a capture round trip. Frames are decoded into two reused images,
+ * swapped on each frame, and readers get their own copy only when they ask for one.
+ *
+ * screenrecord stops after its 3-minute time limit (or when the device drops the stream);
+ * the source restarts it, backing off if it keeps failing straight away.
+ */
+public final class ScreenrecordFrameSource implements FrameSource {
+
+    private static final int TIME_LIMIT_SECONDS = 180;
+    private static final long MIN_RESTART_DELAY_MS = 250;
+    private static final long MAX_RESTART_DELAY_MS = 10000;
+    private static final long HEALTHY_RUN_MS = 5000;
+
+    private final AdbClient adb;
+    private final String serial;
+    private final int bitRate;
+    private final Thread worker;
+
+    /** Back and front image; the decoder fills the back one, then makes it the front. */
+    private final BufferedImage[] buffers = new BufferedImage[2];
+    private int front = -1;
+    private volatile long latestTimestamp;
+    private volatile InputStream stream;
+    private volatile boolean closed;
+
+    public ScreenrecordFrameSource(AdbClient adb, String serial) {
+        this(adb, serial, 4_000_000);
+    }
+
+    public ScreenrecordFrameSource(AdbClient adb, String serial, int bitRate) {
+        this.adb = adb;
+        this.serial = serial;
+        this.bitRate = bitRate;
+        this.worker = new Thread(this::loop, "screenrecord-" + serial);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override
+    public BufferedImage latest() {
+        synchronized (buffers) {
+            return front < 0 ? null : Java2DFrameConverter.cloneBufferedImage(buffers[front]);
+        }
+    }
+
+    @Override
+    public long latestTimestamp() {
+        return latestTimestamp;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+        closeStream();
+    }
+
+    private void loop() {
+        long delay = MIN_RESTART_DELAY_MS;
+        while (!closed) {
+            long started = System.currentTimeMillis();
+            try {
+                decode();
+            } catch (Exception ignored) {
+                // Restart below
+            } finally {
+                closeStream();
+            }
+            if (closed) {
+                return;
+            }
+            // A run that lasted a while ended on the time limit; restart right away
+            delay = System.currentTimeMillis() - started > HEALTHY_RUN_MS
+                    ? MIN_RESTART_DELAY_MS
+                    : Math.min(delay * 2, MAX_RESTART_DELAY_MS);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void decode() throws IOException {
+        stream = adb.execStream(serial, "screenrecord --output-format=h264 --bit-rate " + bitRate
+                + " --time-limit " + TIME_LIMIT_SECONDS + " -");
+        // maximumSize 0: no seek buffer, otherwise the grabber keeps the whole stream in memory
+        try (FFmpegFrameGrabber grabber = new FFmpegFrameGrabber(stream, 0);
+             Java2DFrameConverter converter = new Java2DFrameConverter()) {
+            grabber.setFormat("h264");
+            grabber.setPixelFormat(avutil.AV_PIX_FMT_BGR24);
+            grabber.setOption("flags", "low_delay");
+            grabber.setOption("probesize", "32768");
+            grabber.start();
+            Frame frame;
+            while (!closed && (frame = grabber.grabImage()) != null) {
+                // The converter reuses its image, so copy it into the back buffer
+                int back = front < 0 ? 0 : 1 - front;
+                buffers[back] = copyInto(buffers[back], converter.getBufferedImage(frame));
+                synchronized (buffers) {
+                    front = back;
+                }
+                latestTimestamp = System.currentTimeMillis();
+            }
+            grabber.stop();
+        }
+    }
+
+    private static BufferedImage copyInto(BufferedImage target, BufferedImage source) {
+        if (target == null || target.getType() != source.getType()
+                || target.getWidth() != source.getWidth() || target.getHeight() != source.getHeight()) {
+            return Java2DFrameConverter.cloneBufferedImage(source);
+        }
+        if (source.getRaster().getDataBuffer() instanceof DataBufferByte from
+                && target.getRaster().getDataBuffer() instanceof DataBufferByte to
+                && from.getData().length == to.getData().length) {
+            System.arraycopy(from.getData(), 0, to.getData(), 0, to.getData().length);
+        } else {
+            source.copyData(target.getRaster());
+        }
+        return target;
+    }
+
+    private void closeStream() {
+        InputStream s = stream;
+        stream = null;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.duckbot.adb;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Long-lived shell on one device. Commands are queued and written to a single open
+ * {@code sh} stdin, each followed by a marker line carrying its exit status so the session
+ * knows when the device finished it. Commands that pile up while a write is in flight go
+ * out together in one round trip. A dead session is reopened on the next batch.
+ *
+ * A command that exits non-zero fails with {@link ExitException}. Only an
+ * {@link UnavailableException} means the command never reached the device; after any other
+ * failure it may have run, so callers must not blindly retry it.
+ */
+public final class ShellSession implements Closeable {
+
+    private static final String MARKER = "__DUCKBOT_ACK_";
+    private static final int MAX_BATCH = 32;
+
+    private final String serial;
+    private final String adbPath;
+    private final AdbSocketTransport transport;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+
+    private volatile Connection connection;
+    private long sequence;
+    private volatile boolean closed;
+
+    /**
+     * @param transport socket transport to open the session over, or null to use an adb process
+     */
+    public ShellSession(String serial, String adbPath, AdbSocketTransport transport) {
+        this.serial = serial;
+        this.adbPath = adbPath;
+        this.transport = transport;
+        this.worker = new Thread(this::loop, "adb-shell-" + serial);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Queue a command and return a future completed with its output once the device acks it.
+     */
+    public CompletableFuture<String> submit(String command) {
+        return submit(command, null);
+    }
+
+    /**
+     * Queue a command whose output lines are also handed to {@code lineListener} as they arrive.
+     */
+    public CompletableFuture<String> submit(String command, Consumer<String> lineListener) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IOException("Shell session closed: " + serial));
+            return future;
+        }
+        queue.add(new Pending(command, lineListener, future));
+        return future;
+    }
+
+    /**
+     * Run a command and wait for its output. A timeout or interrupt tears the session down so
+     * the next command starts from a fresh shell instead of queuing behind a hung one.
+     *
+     * @param timeoutMs how long the caller can still wait, including time queued behind other commands
+     */
+    public String run(String command, long timeoutMs) throws IOException {
+        return run(command, null, timeoutMs);
+    }
+
+    public String run(String command, Consumer<String> lineListener, long timeoutMs) throws IOException {
+        CompletableFuture<String> future = submit(command, lineListener);
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            disconnect();
+            throw new IOException("Shell command timed out on " + serial + ": " + command, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException io ? io : new IOException(cause);
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            disconnect();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + serial, e);
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+        disconnect();
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(new IOException("Shell session closed: " + serial));
+        }
+    }
+
+    private void loop() {
+        List<Pending> batch = new ArrayList<>();
+        while (!closed) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, MAX_BATCH - 1);
+            batch.removeIf(p -> p.future.isDone());
+            if (!batch.isEmpty()) {
+                try {
+                    execute(batch);
+                } catch (IOException e) {
+                    disconnect();
+                    for (Pending p : batch) {
+                        p.future.completeExceptionally(e);
+                    }
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void execute(List<Pending> batch) throws IOException {
+        Connection conn;
+        try {
+            conn = ensureConnected();
+        } catch (IOException e) {
+            throw new UnavailableException("Could not open a shell on " + serial, e);
+        }
+        StringBuilder script = new StringBuilder();
+        long first = sequence;
+        for (Pending p : batch) {
+            script.append(p.command).append('\n');
+            // The leading newline ends output that lacks one, so the marker always starts a line
+            script.append("printf '\\n%s %d\\n' ").append(MARKER).append(sequence++).append(" $?\n");
+        }
+        conn.stdin.write(script.toString().getBytes(StandardCharsets.UTF_8));
+        conn.stdin.flush();
+
+        long expected = first;
+        List<String> lines = new ArrayList<>();
+        int index = 0;
+        while (index < batch.size()) {
+            String line = conn.stdout.readLine();
+            if (line == null) {
+                throw new IOException("Shell session ended on " + serial);
+            }
+            line = line.replace("\r", "");
+            Pending current = batch.get(index);
+            String prefix = MARKER + expected + " ";
+            if (line.startsWith(prefix)) {
+                // Joining without a final newline drops the marker's padding
+                String output = String.join("\n", lines);
+                int status = parseStatus(line.substring(prefix.length()));
+                if (status == 0) {
+                    current.future.complete(output);
+                } else {
+                    current.future.completeExceptionally(new ExitException(current.command, status, output));
+                }
+                lines.clear();
+                index++;
+                expected++;
+            } else {
+                Consumer<String> listener = current.lineListener;
+                if (listener != null) {
+                    // An empty line may be the marker's padding; hand it out once another line follows
+                    if (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+                        listener.accept("");
+                    }
+                    if (!line.isEmpty()) {
+                        listener.accept(line);
+                    }
+                }
+                lines.add(line);
+            }
+        }
+    }
+
+    private static int parseStatus(String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private Connection ensureConnected() throws IOException {
+        Connection conn = connection;
+        if (conn != null) {
+            return conn;
+        }
+        if (transport != null && transport.isAvailable()) {
+            try {
+                Socket socket = transport.openService(serial, "exec:sh");
+                conn = new Connection(socket, null, socket.getOutputStream(),
+                        new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)));
+            } catch (IOException ignored) {
+                // Fall back to an adb process below
+            }
+        }
+        if (conn == null) {
+            ProcessBuilder pb = new ProcessBuilder(adbPath, "-s", serial, "shell");
+            pb.redirectErrorStream(true);
+            Process process = pb.start();
+            conn = new Connection(null, process, process.getOutputStream(),
+                    new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)));
+        }
+        connection = conn;
+        // exec: only forwards stdout; fold stderr in so error text lands in the command output
+        conn.stdin.write("exec 2>&1\n".getBytes(StandardCharsets.UTF_8));
+        conn.stdin.flush();
+        return conn;
+    }
+
+    /**
+     * Drop the current connection. Closing the stream also unblocks a worker stuck reading it.
+     */
+    private void disconnect() {
+        Connection conn = connection;
+        connection = null;
+        if (conn != null) {
+            conn.close();
+        }
+    }
+
+    private record Connection(Socket socket, Process process, OutputStream stdin, BufferedReader stdout) {
+        void close() {
+            try {
+                if (socket != null) socket.close();
+            } catch (IOException ignored) {
+            }
+            if (process != null) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * The session could not be opened, so the command was never sent and can be run another way.
+     */
+    public static final class UnavailableException extends IOException {
+        public UnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * The command ran and exited with a non-zero status.
+     */
+    public static final class ExitException extends IOException {
+        public final int status;
+        public final String output;
+
+        public ExitException(String command, int status, String output) {
+            super("Exit status " + status + ": " + command);
+            this.status = status;
+            this.output = output;
+        }
+    }
+
+    private record Pending(String command, Consumer<String> lineListener, CompletableFuture<String> future) {
+    }
+}
@@ -0,0 +1,255 @@
+package com.duckbot.adb;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * View tree from {@code uiautomator dump}, parsed with StAX into flat nodes indexed by
+ * resource-id, text and class, so one dump answers many lookups.
+ *
+ * <pre>
+ * UiHierarchy.Node ok = tree.find(new UiHierarchy.Query().text("OK").clickable());
+ * </pre>
+ */
+public final class UiHierarchy {
+
+    private static final XMLInputFactory XML = XMLInputFactory.newFactory();
+    private static final Pattern BOUNDS = Pattern.compile("\\[(-?\\d+),(-?\\d+)]\\[(-?\\d+),(-?\\d+)]");
+
+    static {
+        XML.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final List<Node> nodes;
+    private final Map<String, List<Node>> byResourceId = new HashMap<>();
+    private final Map<String, List<Node>> byText = new HashMap<>();
+    private final Map<String, List<Node>> byClass = new HashMap<>();
+
+    private UiHierarchy(List<Node> nodes) {
+        this.nodes = Collections.unmodifiableList(nodes);
+        for (Node node : nodes) {
+            index(byResourceId, node.resourceId, node);
+            if (node.shortId != null && !node.shortId.equals(node.resourceId)) {
+                index(byResourceId, node.shortId, node);
+            }
+            index(byText, node.text, node);
+            index(byClass, node.className, node);
+        }
+    }
+
+    private static void index(Map<String, List<Node>> map, String key, Node node) {
+        if (key != null && !key.isEmpty()) {
+            map.computeIfAbsent(key, k -> new ArrayList<>()).add(node);
+        }
+    }
+
+    public static UiHierarchy parse(String xml) throws XMLStreamException {
+        return parse(new StringReader(xml));
+    }
+
+    public static UiHierarchy parse(Reader xml) throws XMLStreamException {
+        List<Node> nodes = new ArrayList<>();
+        Deque<Node> open = new ArrayDeque<>();
+        XMLStreamReader reader = XML.createXMLStreamReader(xml);
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT && "node".equals(reader.getLocalName())) {
+                    Node parent = open.peek();
+                    Node node = new Node(nodes.size(), parent == null ? -1 : parent.index, reader);
+                    if (parent != null) {
+                        parent.children.add(node.index);
+                    }
+                    nodes.add(node);
+                    open.push(node);
+                } else if (event == XMLStreamConstants.END_ELEMENT && "node".equals(reader.getLocalName())) {
+                    open.pop();
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new UiHierarchy(nodes);
+    }
+
+    /**
+     * All nodes in document order; a node's {@link Node#index} is its position here.
+     */
+    public List<Node> nodes() {
+        return nodes;
+    }
+
+    /**
+     * First node matching the query, in document order, or null.
+     */
+    public Node find(Query query) {
+        List<Node> all = findAll(query);
+        return all.isEmpty() ? null : all.get(0);
+    }
+
+    public List<Node> findAll(Query query) {
+        // Start from the narrowest index the query allows
+        List<Node> candidates = nodes;
+        if (query.resourceId != null) {
+            candidates = byResourceId.getOrDefault(query.resourceId, List.of());
+        } else if (query.text != null) {
+            candidates = byText.getOrDefault(query.text, List.of());
+        } else if (query.className != null) {
+            candidates = byClass.getOrDefault(query.className, List.of());
+        }
+        List<Node> result = new ArrayList<>();
+        for (Node node : candidates) {
+            if (query.matches(node)) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * What to look for; unset fields match anything.
+     */
+    public static final class Query {
+        String resourceId;
+        String text;
+        String textContains;
+        String className;
+        String contentDesc;
+        boolean clickableOnly;
+
+        /** Full id ("com.game:id/ok") or just the part after "id/". */
+        public Query resourceId(String id) {
+            this.resourceId = blankToNull(id);
+            return this;
+        }
+
+        public Query text(String text) {
+            this.text = blankToNull(text);
+            return this;
+        }
+
+        public Query textContains(String part) {
+            this.textContains = blankToNull(part);
+            return this;
+        }
+
+        public Query className(String className) {
+            this.className = blankToNull(className);
+            return this;
+        }
+
+        public Query contentDesc(String desc) {
+            this.contentDesc = blankToNull(desc);
+            return this;
+        }
+
+        public Query clickable() {
+            this.clickableOnly = true;
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return resourceId == null && text == null && textContains == null && className == null && contentDesc == null;
+        }
+
+        boolean matches(Node node) {
+            return (resourceId == null || resourceId.equals(node.resourceId) || resourceId.equals(node.shortId))
+                    && (text == null || text.equals(node.text))
+                    && (textContains == null || (node.text != null && node.text.contains(textContains)))
+                    && (className == null || className.equals(node.className))
+                    && (contentDesc == null || contentDesc.equals(node.contentDesc))
+                    && (!clickableOnly || node.clickable);
+        }
+
+        private static String blankToNull(String s) {
+            return s == null || s.isBlank() ? null : s;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("Query{");
+            if (resourceId != null) sb.append("id=").append(resourceId).append(' ');
+            if (text != null) sb.append("text='").append(text).append("' ");
+            if (textContains != null) sb.append("text~'").append(textContains).append("' ");
+            if (className != null) sb.append("class=").append(className).append(' ');
+            if (contentDesc != null) sb.append("desc='").append(contentDesc).append("' ");
+            if (clickableOnly) sb.append("clickable");
+            return sb.toString().trim() + '}';
+        }
+    }
+
+    /**
+     * One view. Bounds are screen pixels: left, top, right, bottom.
+     */
+    public static final class Node {
+        public final int index;
+        public final int parent;
+        public final List<Integer> children = new ArrayList<>(2);
+        public final String resourceId;
+        /** The id without its "package:id/" prefix. */
+        public final String shortId;
+        public final String text;
+        public final String contentDesc;
+        public final String className;
+        public final String packageName;
+        public final boolean clickable;
+        public final boolean enabled;
+        public final int left;
+        public final int top;
+        public final int right;
+        public final int bottom;
+
+        Node(int index, int parent, XMLStreamReader reader) {
+            this.index = index;
+            this.parent = parent;
+            this.resourceId = attr(reader, "resource-id");
+            int slash = resourceId == null ? -1 : resourceId.indexOf(":id/");
+            this.shortId = slash < 0 ? resourceId : resourceId.substring(slash + 4);
+            this.text = attr(reader, "text");
+            this.contentDesc = attr(reader, "content-desc");
+            this.className = attr(reader, "class");
+            this.packageName = attr(reader, "package");
+            this.clickable = "true".equals(attr(reader, "clickable"));
+            this.enabled = !"false".equals(attr(reader, "enabled"));
+            Matcher m = BOUNDS.matcher(String.valueOf(attr(reader, "bounds")));
+            boolean hasBounds = m.matches();
+            this.left = hasBounds ? Integer.parseInt(m.group(1)) : 0;
+            this.top = hasBounds ? Integer.parseInt(m.group(2)) : 0;
+            this.right = hasBounds ? Integer.parseInt(m.group(3)) : 0;
+            this.bottom = hasBounds ? Integer.parseInt(m.group(4)) : 0;
+        }
+
+        private static String attr(XMLStreamReader reader, String name) {
+            String value = reader.getAttributeValue(null, name);
+            return value == null || value.isEmpty() ? null : value;
+        }
+
+        public int centerX() {
+            return (left + right) / 2;
+        }
+
+        public int centerY() {
+            return (top + bottom) / 2;
+        }
+
+        @Override
+        public String toString() {
+            return "Node{" + className + (shortId != null ? " #" + shortId : "") + (text != null ? " '" + text + "'" : "")
+                    + " [" + left + "," + top + "][" + right + "," + bottom + "]}";
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.duckbot.app;
 
-import com.duckbot.adb.LdConsoleHelper;
 import com.duckbot.core.Config;
 import com.duckbot.core.RunStatus;
 import com.duckbot.services.*;
@@ -46,6 +45,12 @@ public final class DuckBotApp extends Application {
     private Config config;
     private com.duckbot.services.BotService botService;
     private com.duckbot.services.RunnerService runnerService;
+    /** One client for the whole app, so scripts and previews share per-device lanes and limits. */
+    private final com.duckbot.adb.AdbClient adb = new com.duckbot.adb.AdbClient();
+    private com.duckbot.adb.LdPlayerManager ldPlayerManager;
+    private List<String> ldPlayerRoots;
+    private PollingInstanceDiscoveryService discovery;
+    private List<String> discoveryRoots;
 
     @Override
     public void start(Stage stage) {
@@ -53,12 +58,32 @@ public final class DuckBotApp extends Application {
         JsonStore store = new JsonStore();
         configService = new FileConfigService(store);
         config = configService.load();
+        if (config.ocr != null) {
+            com.duckbot.ocr.TemplateCache.shared().setMaxBytes(config.ocr.templateCacheMb * 1024L * 1024L);
+            com.duckbot.ocr.ImageMatcher.setParallelism(config.ocr.matchThreads);
+        }
         botService = new com.duckbot.services.impl.FileBotService(store);
         
         // Initialize services
         com.duckbot.services.LogService logService = new com.duckbot.services.impl.FileLogService();
         com.duckbot.services.InstanceRegistry registry = new com.duckbot.services.impl.InMemoryInstanceRegistry();
-        runnerService = new com.duckbot.services.impl.DefaultRunnerService(logService, registry);
+        com.duckbot.services.WarmPoolService warmPool = config.warmPool != null && config.warmPool.enabled
+                ? new LdWarmPoolService(ldPlayer(), discovery(), config.warmPool)
+                : null;
+        com.duckbot.services.DeviceHealthMonitor health = config.health != null && config.health.enabled
+                ? new com.duckbot.services.impl.AdbDeviceHealthMonitor(ldPlayer(), config.health)
+                : null;
+        com.duckbot.services.impl.DefaultRunnerService runner = new com.duckbot.services.impl.DefaultRunnerService(
+                logService, registry, warmPool, health, adb, instance -> ldPlayer().resolveSerial(instance));
+        if (config.adb != null) {
+            runner.setFrameStreaming(config.adb.streamFrames, config.adb.maxFrameAgeMs);
+        }
+        com.duckbot.games.GamePopupManager popups = new com.duckbot.games.GamePopupManager();
+        for (com.duckbot.games.GameRegistry.GameDefinition game : com.duckbot.games.GameRegistry.getAllGames()) {
+            popups.loadGamePopups(game, DataPaths.root());
+        }
+        runner.setPopupWatcher(popups);
+        runnerService = runner;
 
         AuthProvider provider = createAuthProvider(store, config);
         authService = new AuthService(provider);
@@ -69,6 +94,48 @@ public final class DuckBotApp extends Application {
         showLogin(stage);
     }
 
+    /**
+     * Shared LDPlayer manager so instance serials stay cached. When the paths change it is
+     * re-pointed rather than rebuilt, so the warm pool, health monitor and runner holding it follow.
+     */
+    private synchronized com.duckbot.adb.LdPlayerManager ldPlayer() {
+        List<String> roots = Arrays.asList(config.ldplayer5Path, config.ldplayer9Path);
+        if (ldPlayerManager == null) {
+            ldPlayerManager = new com.duckbot.adb.LdPlayerManager(adb, roots.toArray(new String[0]));
+            ldPlayerRoots = roots;
+        } else if (!roots.equals(ldPlayerRoots)) {
+            ldPlayerManager.setRoots(roots.toArray(new String[0]));
+            ldPlayerRoots = roots;
+        }
+        if (config.launch != null) {
+            ldPlayerManager.setBulkLimits(config.launch.maxConcurrent, config.launch.staggerMs,
+                    java.time.Duration.ofSeconds(config.launch.bootTimeoutSeconds));
+        }
+        if (config.adb != null) {
+            ldPlayerManager.adb().setDefaultRateLimit(config.adb.commandsPerSecond, config.adb.burst);
+            ldPlayerManager.setInstanceRateLimits(config.adb.instanceRates, config.adb.burst);
+        }
+        return ldPlayerManager;
+    }
+
+    /**
+     * Background instance discovery for the configured paths; re-pointed like {@link #ldPlayer()}
+     * when the paths change.
+     */
+    private synchronized com.duckbot.services.InstanceDiscoveryService discovery() {
+        List<String> roots = Arrays.asList(config.ldplayer5Path, config.ldplayer9Path);
+        if (discovery == null) {
+            discovery = new PollingInstanceDiscoveryService(roots);
+            discovery.addListener(event -> ldPlayer().invalidate(event.instance.name));
+            ldPlayer().addChangeListener(discovery::refresh);
+            discoveryRoots = roots;
+        } else if (!roots.equals(discoveryRoots)) {
+            discovery.setRoots(roots);
+            discoveryRoots = roots;
+        }
+        return discovery;
+    }
+
     private AuthProvider createAuthProvider(JsonStore store, Config config) {
         if ("cloud".equalsIgnoreCase(config.authMode)) {
             return new CloudAuthProvider(config.apiBaseUrl);
@@ -237,8 +304,8 @@ public final class DuckBotApp extends Application {
         ComboBox<String> instanceBox = new ComboBox<>();
         Button refreshInstances = new Button("Refresh Instances");
         refreshInstances.setOnAction(e -> {
-            List<String> roots = Arrays.asList(config.ldplayer5Path, config.ldplayer9Path);
-            List<String> names = LdConsoleHelper.detectInstancesFromConsolePaths(roots);
+            ldPlayer().invalidateAll();
+            List<String> names = discovery().refresh().stream().map(i -> i.name).toList();
             instanceBox.setItems(FXCollections.observableArrayList(names));
             if (!names.isEmpty()) instanceBox.getSelectionModel().select(0);
         });
@@ -324,11 +391,10 @@ public final class DuckBotApp extends Application {
             if (inst == null || inst.isBlank()) { showError("Select an instance to capture from"); return; }
             try {
                 // Resolve instance name to ADB serial
-                List<String> roots = Arrays.asList(config.ldplayer5Path, config.ldplayer9Path);
-                String serial = com.duckbot.adb.AdbClient.resolveInstanceSerial(inst, roots);
+                String serial = ldPlayer().resolveSerial(inst);
                 
-                com.duckbot.adb.AdbClient adb = new com.duckbot.adb.AdbClient();
-                BufferedImage img = adb.screencap(serial);
+                // Shared client, lowest lane: never delays a script running on the instance
+                BufferedImage img = ldPlayer().adb().screencap(serial, com.duckbot.adb.AdbClient.Lane.PREVIEW);
                 lastShot[0] = img;
                 Image fx = SwingFXUtils.toFXImage(img, null);
                 view.setImage(fx);
@@ -400,8 +466,8 @@ public final class DuckBotApp extends Application {
         ComboBox<String> instanceBox = new ComboBox<>();
         Button refreshBtn = new Button("Refresh");
         refreshBtn.setOnAction(e -> {
-            List<String> roots = Arrays.asList(config.ldplayer5Path, config.ldplayer9Path);
-            List<String> names = LdConsoleHelper.detectInstancesFromConsolePaths(roots);
+            ldPlayer().invalidateAll();
+            List<String> names = discovery().refresh().stream().map(i -> i.name).toList();
             instanceBox.setItems(FXCollections.observableArrayList(names));
             if (!names.isEmpty()) instanceBox.getSelectionModel().select(0);
         });
@@ -443,10 +509,8 @@ public final class DuckBotApp extends Application {
                 return;
             }
             try {
-                List<String> roots = Arrays.asList(config.ldplayer5Path, config.ldplayer9Path);
-                String serial = com.duckbot.adb.AdbClient.resolveInstanceSerial(inst, roots);
-                com.duckbot.adb.AdbClient adb = new com.duckbot.adb.AdbClient();
-                screenshot[0] = adb.screencap(serial);
+                String serial = ldPlayer().resolveSerial(inst);
+                screenshot[0] = ldPlayer().adb().screencap(serial, com.duckbot.adb.AdbClient.Lane.PREVIEW);
                 Image fx = SwingFXUtils.toFXImage(screenshot[0], null);
                 imageView.setImage(fx);
                 coordLabel2.setText("Click on image to select coordinate");
@@ -761,6 +825,15 @@ public final class DuckBotApp extends Application {
                     es.props.put("y", "200");
                     es.props.put("delay", "500");
                 }
+                case "tap element" -> {
+                    es.props.put("resourceId", "");
+                    es.props.put("text", "OK");
+                    es.props.put("className", "");
+                    es.props.put("contentDesc", "");
+                    es.props.put("index", "0");
+                    es.props.put("timeoutMs", "5000");
+                    es.props.put("delay", "500");
+                }
                 case "swipe" -> {
                     es.props.put("x1", "300");
                     es.props.put("y1", "800");
@@ -776,12 +849,29 @@ public final class DuckBotApp extends Application {
                 case "wait" -> {
                     es.props.put("delay", "1000");
                 }
+                case "wait ready" -> {
+                    es.props.put("packageName", "");
+                    es.props.put("imagePath", "");
+                    es.props.put("confidence", "0.9");
+                    es.props.put("timeoutMs", "120000");
+                    es.props.put("onTimeout", "FAIL");
+                }
+                case "wait log" -> {
+                    es.props.put("tag", "");
+                    es.props.put("pattern", "");
+                    es.props.put("timeoutMs", "30000");
+                    es.props.put("outVar", "");
+                    es.props.put("onTimeout", "FAIL");
+                }
                 case "input text" -> {
                     es.props.put("text", "Sample text");
                 }
                 case "if image" -> {
                     es.props.put("imagePath", "data/images/game/popup.png");
                     es.props.put("confidence", "0.9");
+                    es.props.put("region", "");
+                    es.props.put("margin", "0");
+                    es.props.put("pyramidLevels", "0");
                 }
                 case "loop" -> {
                     es.props.put("count", "5");
@@ -876,6 +966,15 @@ public final class DuckBotApp extends Application {
                     row = addCoordinateField(stepPropForm, row, "Y:", es, "y", 0, 3000, 10, stepList, idx);
                     row = addSpinnerField(stepPropForm, row, "Delay (ms):", es, "delay", 0, 10000, 100);
                 }
+                case "tap element" -> {
+                    row = addTextField(stepPropForm, row, "Resource ID:", es, "resourceId");
+                    row = addTextField(stepPropForm, row, "Text:", es, "text");
+                    row = addTextField(stepPropForm, row, "Class (optional):", es, "className");
+                    row = addTextField(stepPropForm, row, "Content Desc (optional):", es, "contentDesc");
+                    row = addSpinnerField(stepPropForm, row, "Match Index:", es, "index", 0, 50, 1);
+                    row = addSpinnerField(stepPropForm, row, "Timeout (ms):", es, "timeoutMs", 0, 120000, 1000);
+                    row = addSpinnerField(stepPropForm, row, "Delay (ms):", es, "delay", 0, 10000, 100);
+                }
                 case "swipe" -> {
                     row = addCoordinateField(stepPropForm, row, "X1:", es, "x1", 0, 2000, 10, stepList, idx);
                     row = addCoordinateField(stepPropForm, row, "Y1:", es, "y1", 0, 3000, 10, stepList, idx);
@@ -892,6 +991,22 @@ public final class DuckBotApp extends Application {
                 case "wait" -> {
                     row = addSpinnerField(stepPropForm, row, "Delay (ms):", es, "delay", 100, 60000, 100);
                 }
+                case "wait ready" -> {
+                    row = addTextField(stepPropForm, row, "Game Package:", es, "packageName");
+                    row = addTextField(stepPropForm, row, "Ready Image (optional):", es, "imagePath");
+                    row = addSpinnerField(stepPropForm, row, "Confidence:", es, "confidence", 0.1, 1.0, 0.05);
+                    row = addSpinnerField(stepPropForm, row, "Timeout (ms):", es, "timeoutMs", 5000, 600000, 5000);
+                    row = addComboField(stepPropForm, row, "On Timeout:", es, "onTimeout",
+                        new String[]{"FAIL", "CONTINUE"});
+                }
+                case "wait log" -> {
+                    row = addTextField(stepPropForm, row, "Logcat Tag (optional):", es, "tag");
+                    row = addTextField(stepPropForm, row, "Message Regex:", es, "pattern");
+                    row = addSpinnerField(stepPropForm, row, "Timeout (ms):", es, "timeoutMs", 1000, 600000, 1000);
+                    row = addTextField(stepPropForm, row, "Store Message In (optional):", es, "outVar");
+                    row = addComboField(stepPropForm, row, "On Timeout:", es, "onTimeout",
+                        new String[]{"FAIL", "CONTINUE"});
+                }
                 case "input text" -> {
                     row = addTextField(stepPropForm, row, "Text:", es, "text");
                 }
@@ -912,6 +1027,9 @@ public final class DuckBotApp extends Application {
                     stepPropForm.add(browseImg, 2, row - 1);
                     row = addSpinnerField(stepPropForm, row, "Confidence:", es, "confidence", 0.1, 1.0, 0.05);
                     row = addSpinnerField(stepPropForm, row, "Timeout (ms):", es, "timeout", 1000, 30000, 1000);
+                    row = addTextField(stepPropForm, row, "Search Region (x,y,w,h, optional):", es, "region");
+                    row = addSpinnerField(stepPropForm, row, "Region Margin:", es, "margin", 0, 500, 8);
+                    row = addSpinnerField(stepPropForm, row, "Pyramid Levels (0 = exact):", es, "pyramidLevels", 0, 3, 1);
                 }
                 case "loop" -> {
                     row = addSpinnerField(stepPropForm, row, "Count:", es, "count", 1, 1000, 1);
@@ -1293,10 +1411,8 @@ public final class DuckBotApp extends Application {
         table.getSelectionModel().selectedItemProperty().addListener((obs, old, sel) -> {
             if (sel == null) return;
             try {
-                List<String> roots = Arrays.asList(config.ldplayer5Path, config.ldplayer9Path);
-                String serial = com.duckbot.adb.AdbClient.resolveInstanceSerial(sel.instanceName, roots);
-                com.duckbot.adb.AdbClient adb = new com.duckbot.adb.AdbClient();
-                BufferedImage img = adb.screencap(serial);
+                String serial = ldPlayer().resolveSerial(sel.instanceName);
+                BufferedImage img = ldPlayer().adb().screencap(serial, com.duckbot.adb.AdbClient.Lane.PREVIEW);
                 Image fx = SwingFXUtils.toFXImage(img, null);
                 preview.setImage(fx);
             } catch (Exception ignored) {}
@@ -1360,6 +1476,9 @@ public final class DuckBotApp extends Application {
             config.theme = themeBox.getSelectionModel().getSelectedItem();
             config.authMode = authMode.getSelectionModel().getSelectedItem();
             configService.save(config);
+            // Re-point the shared manager and discovery now, not on their next use
+            ldPlayer();
+            discovery();
             showInfo("Settings saved. Restart to apply authentication changes.");
         });
         botSettings.setOnAction(e -> showBotSettings());
@@ -1423,15 +1542,50 @@ public final class DuckBotApp extends Application {
         instancesList.setPrefHeight(240);
         Button refreshBtn = new Button("Refresh Emulator List");
         refreshBtn.setOnAction(e -> {
-            List<String> roots = Arrays.asList(config.ldplayer5Path, config.ldplayer9Path);
-            List<String> names = LdConsoleHelper.detectInstancesFromConsolePaths(roots);
+            ldPlayer().invalidateAll();
+            List<String> names = discovery().refresh().stream().map(i -> i.name).toList();
             ObservableList<String> items = FXCollections.observableArrayList(names);
             if (items.isEmpty()) {
                 items.add("No instances detected. Check LDPlayer paths.");
             }
             instancesList.setItems(items);
         });
-        HBox createBox = new HBox(8, new Label("Create"), new Spinner<Integer>(1, 20, 1), new Label("new emulator instances"), new Button("Create"));
+        Spinner<Integer> cloneCount = new Spinner<>(1, 20, 1);
+        Button createBtn = new Button("Create");
+        Label cloneStatus = new Label();
+        createBtn.setOnAction(e -> {
+            String golden = instancesList.getSelectionModel().getSelectedItem();
+            if (golden == null || discovery().find(golden).isEmpty()) {
+                showError("Select a stopped instance to clone from");
+                return;
+            }
+            if (discovery().find(golden).get().running) {
+                showError("Stop " + golden + " before cloning it");
+                return;
+            }
+            List<String> taken = discovery().snapshot().stream().map(i -> i.name).toList();
+            List<String> names = new java.util.ArrayList<>();
+            for (int n = 1; names.size() < cloneCount.getValue(); n++) {
+                if (!taken.contains(golden + "-" + n)) names.add(golden + "-" + n);
+            }
+            createBtn.setDisable(true);
+            cloneStatus.setText("Cloning " + names.size() + " instance(s) from " + golden + "...");
+            Thread cloner = new Thread(() -> {
+                List<com.duckbot.adb.LifecycleResult> results =
+                        ldPlayer().cloneInstance(golden, names, new com.duckbot.adb.CloneSettings());
+                long ok = results.stream().filter(r -> r.success).count();
+                javafx.application.Platform.runLater(() -> {
+                    createBtn.setDisable(false);
+                    cloneStatus.setText(ok == 0 && !results.isEmpty()
+                            ? "Clone failed: " + results.get(0).message
+                            : "Cloned " + ok + " of " + results.size() + " instance(s)");
+                    refreshBtn.fire();
+                });
+            }, "clone-instances");
+            cloner.setDaemon(true);
+            cloner.start();
+        });
+        HBox createBox = new HBox(8, new Label("Create"), cloneCount, new Label("new emulator instances"), createBtn, cloneStatus);
         VBox emuBox = new VBox(10, new Label("Manage Emulators"), instancesList, refreshBtn, createBox);
         emuBox.setPadding(new Insets(12));
         Tab emulatorsTab = new Tab("Emulators", emuBox);
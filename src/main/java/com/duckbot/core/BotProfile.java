@@ -18,6 +18,8 @@ public final class BotProfile {
     public List<BotInstanceBinding> instances = new ArrayList<>();
     public List<BotScriptRef> scripts = new ArrayList<>();
     public boolean runParallel;
+    /** Drive all instances with one script run in lockstep instead of one run per instance. */
+    public boolean broadcast;
     public long instanceCooldownMs = 1_000L;
     public Map<String, Object> overrides = new HashMap<>();
 
@@ -33,6 +35,7 @@ public final class BotProfile {
                 ", instances=" + instances +
                 ", scripts=" + scripts +
                 ", runParallel=" + runParallel +
+                ", broadcast=" + broadcast +
                 ", instanceCooldownMs=" + instanceCooldownMs +
                 ", overrides=" + overrides +
                 '}';
@@ -43,6 +46,7 @@ public final class BotProfile {
         if (this == o) return true;
         if (!(o instanceof BotProfile that)) return false;
         return runParallel == that.runParallel
+                && broadcast == that.broadcast
                 && instanceCooldownMs == that.instanceCooldownMs
                 && Objects.equals(id, that.id)
                 && Objects.equals(name, that.name)
@@ -54,6 +58,6 @@ public final class BotProfile {
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, name, game, instances, scripts, runParallel, instanceCooldownMs, overrides);
+        return Objects.hash(id, name, game, instances, scripts, runParallel, broadcast, instanceCooldownMs, overrides);
     }
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package com.duckbot.core;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -13,21 +17,146 @@ public final class Config {
     public String ldplayer9Path = "C:/LDPlayer9";
     public String theme = "black-blue";
     public OcrConfig ocr = new OcrConfig();
+    public LaunchConfig launch = new LaunchConfig();
+    public WarmPoolConfig warmPool = new WarmPoolConfig();
+    public HealthConfig health = new HealthConfig();
+    public AdbConfig adb = new AdbConfig();
 
     public static final class OcrConfig {
         public String tesseractPath = "";
         public String lang = "eng";
+        /** Native memory budget of decoded template images shared by all matchers. */
+        public int templateCacheMb = 256;
+        /** Threads matching templates in parallel; 0 uses half the cores. */
+        public int matchThreads = 0;
 
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
             if (!(o instanceof OcrConfig ocrConfig)) return false;
-            return Objects.equals(tesseractPath, ocrConfig.tesseractPath) && Objects.equals(lang, ocrConfig.lang);
+            return templateCacheMb == ocrConfig.templateCacheMb && matchThreads == ocrConfig.matchThreads
+                    && Objects.equals(tesseractPath, ocrConfig.tesseractPath) && Objects.equals(lang, ocrConfig.lang);
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(tesseractPath, lang);
+            return Objects.hash(tesseractPath, lang, templateCacheMb, matchThreads);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Limits for bulk instance launches.
+     */
+    public static final class LaunchConfig {
+        public int maxConcurrent = 4;
+        public long staggerMs = 3000;
+        public int bootTimeoutSeconds = 120;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof LaunchConfig that)) return false;
+            return maxConcurrent == that.maxConcurrent && staggerMs == that.staggerMs && bootTimeoutSeconds == that.bootTimeoutSeconds;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(maxConcurrent, staggerMs, bootTimeoutSeconds);
+        }
+    }
+
+    /**
+     * Pre-booted instance pool. Warm instances are capped at memoryBudgetMb / instanceMemoryMb.
+     */
+    public static final class WarmPoolConfig {
+        public boolean enabled = false;
+        /** Instances the pool may boot as spares. */
+        public List<String> instances = new ArrayList<>();
+        public int spares = 1;
+        public int lookaheadSeconds = 300;
+        public int idleGraceSeconds = 300;
+        public int memoryBudgetMb = 16384;
+        public int instanceMemoryMb = 2048;
+        /** Package to start after boot so spares are game-loaded; blank to skip. */
+        public String gamePackage = "";
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof WarmPoolConfig that)) return false;
+            return enabled == that.enabled && spares == that.spares && lookaheadSeconds == that.lookaheadSeconds
+                    && idleGraceSeconds == that.idleGraceSeconds && memoryBudgetMb == that.memoryBudgetMb
+                    && instanceMemoryMb == that.instanceMemoryMb && Objects.equals(instances, that.instances)
+                    && Objects.equals(gamePackage, that.gamePackage);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(enabled, instances, spares, lookaheadSeconds, idleGraceSeconds, memoryBudgetMb, instanceMemoryMb, gamePackage);
+        }
+    }
+
+    /**
+     * Watchdog for devices running scripts. A device is unhealthy when its screen has not
+     * changed for stuckMinutes or maxConsecutiveFailures probes in a row failed.
+     */
+    public static final class HealthConfig {
+        public boolean enabled = false;
+        public int checkIntervalSeconds = 15;
+        public int probeTimeoutSeconds = 10;
+        public int stuckMinutes = 5;
+        public int maxConsecutiveFailures = 3;
+        /** Time a recovery step gets before the next one is tried. */
+        public int recoveryGraceSeconds = 120;
+        /** A device that fails again within this long after recovering is flapping; its grace doubles. */
+        public int flapWindowMinutes = 15;
+        public int maxBackoffMinutes = 30;
+        /** Game restarted by the first recovery step; blank to start with an instance restart. */
+        public String gamePackage = "";
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof HealthConfig that)) return false;
+            return enabled == that.enabled && checkIntervalSeconds == that.checkIntervalSeconds
+                    && probeTimeoutSeconds == that.probeTimeoutSeconds && stuckMinutes == that.stuckMinutes
+                    && maxConsecutiveFailures == that.maxConsecutiveFailures
+                    && recoveryGraceSeconds == that.recoveryGraceSeconds && flapWindowMinutes == that.flapWindowMinutes
+                    && maxBackoffMinutes == that.maxBackoffMinutes && Objects.equals(gamePackage, that.gamePackage);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(enabled, checkIntervalSeconds, probeTimeoutSeconds, stuckMinutes, maxConsecutiveFailures,
+                    recoveryGraceSeconds, flapWindowMinutes, maxBackoffMinutes, gamePackage);
+        }
+    }
+
+    /**
+     * Pacing of adb commands per device; 0 commands per second disables it.
+     */
+    public static final class AdbConfig {
+        public double commandsPerSecond = 20;
+        public int burst = 10;
+        /** Per-instance overrides of commandsPerSecond, keyed by instance name. */
+        public Map<String, Double> instanceRates = new HashMap<>();
+        /** Stream each running script's screen with screenrecord instead of a screencap per check. */
+        public boolean streamFrames = false;
+        /** Oldest streamed frame a check may use before falling back to screencap. */
+        public int maxFrameAgeMs = 1000;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof AdbConfig that)) return false;
+            return Double.compare(commandsPerSecond, that.commandsPerSecond) == 0 && burst == that.burst
+                    && Objects.equals(instanceRates, that.instanceRates)
+                    && streamFrames == that.streamFrames && maxFrameAgeMs == that.maxFrameAgeMs;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(commandsPerSecond, burst, instanceRates, streamFrames, maxFrameAgeMs);
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package com.duckbot.games;
 
+import com.duckbot.adb.AdbClient;
+import com.duckbot.adb.LogcatStream;
+import com.duckbot.ocr.Frame;
+import com.duckbot.ocr.ImageMatcher;
+import com.duckbot.ocr.MatchResult;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Manages game-specific popup definitions.
@@ -32,13 +38,25 @@ import java.util.*;
  *       "imagePath": "confirm_dialog.png",
  *       "description": "Confirmation dialog with yes/no buttons",
  *       "multipleMatches": true
+ *     },
+ *     {
+ *       "id": "network_error",
+ *       "type": "error",
+ *       "game": "ants",
+ *       "description": "Connection lost dialog, reported in logcat before it is drawn",
+ *       "logcatTag": "Unity",
+ *       "logcatPattern": "(?i)network (error|unreachable)"
  *     }
  *   ]
  * }
+ *
+ * Popups with a {@code logcatPattern} can be detected from logcat with {@link #watchLogcat}
+ * instead of by polling screenshots; the others by template with {@link #detect}.
  */
 public class GamePopupManager {
 
     private final Gson gson = new Gson();
+    private final ImageMatcher matcher = new ImageMatcher();
     private final Map<String, List<PopupDefinition>> popupDefinitions = new HashMap<>();
 
     /**
@@ -88,6 +106,90 @@ public class GamePopupManager {
         popupDefinitions.computeIfAbsent(gameId, k -> new ArrayList<>()).add(popup);
     }
 
+    /**
+     * Logcat filters for the game's popups that define a logcat pattern; each filter id is the popup id.
+     */
+    public List<LogcatStream.Filter> getLogcatFilters(String gameId) {
+        List<LogcatStream.Filter> filters = new ArrayList<>();
+        for (PopupDefinition popup : getGamePopups(gameId)) {
+            if (popup.logcatPattern == null || popup.logcatPattern.isBlank()) continue;
+            try {
+                filters.add(new LogcatStream.Filter(popup.id, popup.logcatTag, popup.logcatPattern));
+            } catch (Exception e) {
+                System.err.println("Invalid logcat pattern for popup " + popup.id + ": " + e.getMessage());
+            }
+        }
+        return filters;
+    }
+
+    /**
+     * Follow a device's logcat and report each game popup whose logcat pattern appears.
+     *
+     * @return the stream (close it when done), or null if no popup of the game has a logcat pattern
+     */
+    public LogcatStream watchLogcat(AdbClient adb, String serial, String gameId, Consumer<PopupDefinition> onPopup) {
+        List<LogcatStream.Filter> filters = getLogcatFilters(gameId);
+        if (filters.isEmpty()) {
+            return null;
+        }
+        LogcatStream stream = new LogcatStream(adb, serial, filters);
+        stream.addListener(event -> {
+            PopupDefinition popup = getPopupDefinition(gameId, event.filterId);
+            if (popup != null) {
+                onPopup.accept(popup);
+            }
+        });
+        return stream;
+    }
+
+    /**
+     * Popups of the game whose template is visible in the frame, highest priority first.
+     * All templates are matched in parallel against the frame's one converted Mat; popups
+     * with a known position are only searched around it, the rest coarse-to-fine on the
+     * frame's shared pyramid.
+     *
+     * @param popupDir directory relative image paths are resolved against
+     */
+    public List<PopupDefinition> detect(String gameId, Path popupDir, Frame frame, double confidence) {
+        return scan(gameId, popupDir, frame, confidence, false);
+    }
+
+    /**
+     * The highest-priority visible popup, or null. Stops matching lower-priority templates
+     * as soon as a higher one is found.
+     */
+    public PopupDefinition detectFirst(String gameId, Path popupDir, Frame frame, double confidence) {
+        List<PopupDefinition> visible = scan(gameId, popupDir, frame, confidence, true);
+        return visible.isEmpty() ? null : visible.get(0);
+    }
+
+    private List<PopupDefinition> scan(String gameId, Path popupDir, Frame frame, double confidence, boolean earlyExit) {
+        List<PopupDefinition> visible = new ArrayList<>();
+        if (frame == null) {
+            return visible;
+        }
+        List<PopupDefinition> popups = new ArrayList<>();
+        List<ImageMatcher.Target> targets = new ArrayList<>();
+        for (PopupDefinition popup : getGamePopups(gameId)) {
+            if (popup.imagePath == null || popup.imagePath.isBlank()) continue;
+            Path image = popupDir == null ? Path.of(popup.imagePath) : popupDir.resolve(popup.imagePath);
+            java.awt.Rectangle region = popup.searchRegion();
+            // Whole-screen searches go coarse-to-fine; regions are small enough to search exactly
+            int levels = region == null ? ImageMatcher.SCAN_LEVELS : 0;
+            popups.add(popup);
+            targets.add(new ImageMatcher.Target(image.toString(), region, levels, confidence, popup.priority));
+        }
+        List<MatchResult> results = matcher.matchAll(frame, targets, earlyExit);
+        for (int i = 0; i < popups.size(); i++) {
+            MatchResult match = results.get(i);
+            if (match != null && match.found(confidence)) {
+                visible.add(popups.get(i));
+            }
+        }
+        visible.sort(Comparator.comparingInt((PopupDefinition p) -> p.priority).reversed());
+        return visible;
+    }
+
     /**
      * Save popup definitions to file
      */
@@ -121,6 +223,11 @@ public class GamePopupManager {
         public boolean multipleMatches;    // If true, can appear in multiple locations
         public String action;              // Optional: action to take (tap, swipe, etc.)
         public Map<String, Object> metadata; // Game-specific metadata
+        public String logcatTag;           // Optional: logcat tag the popup is reported under
+        public String logcatPattern;       // Optional: regex on the logcat message that signals the popup
+        public Map<String, Integer> region; // Optional: search area x, y, width, height
+        public Integer searchMargin;       // Optional: pixels around the search area (default 32)
+        public int priority;               // Optional: higher wins when several popups are visible
 
         public PopupDefinition() {
             this.metadata = new HashMap<>();
@@ -135,6 +242,30 @@ public class GamePopupManager {
             this.metadata = new HashMap<>();
         }
 
+        /**
+         * Where to look for the popup: {@code region} if set, else the element centred on its
+         * fixed {@code coordinates} with its {@code size}, grown by the margin. Null means the
+         * whole screen, also for popups that can appear in several places.
+         */
+        public java.awt.Rectangle searchRegion() {
+            java.awt.Rectangle area;
+            if (region != null && region.containsKey("width") && region.containsKey("height")) {
+                area = new java.awt.Rectangle(region.getOrDefault("x", 0), region.getOrDefault("y", 0),
+                        region.get("width"), region.get("height"));
+            } else if (!multipleMatches && coordinates != null && size != null
+                    && coordinates.containsKey("x") && coordinates.containsKey("y")
+                    && size.containsKey("width") && size.containsKey("height")) {
+                int w = size.get("width");
+                int h = size.get("height");
+                area = new java.awt.Rectangle(coordinates.get("x") - w / 2, coordinates.get("y") - h / 2, w, h);
+            } else {
+                return null;
+            }
+            int margin = searchMargin != null ? searchMargin : 32;
+            area.grow(margin, margin);
+            return area;
+        }
+
         @Override
         public String toString() {
             return id + " (" + type + ") - " + description;
@@ -0,0 +1,162 @@
+package com.duckbot.ocr;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC4;
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2GRAY;
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGRA2BGR;
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_RGB2BGR;
+import static org.bytedeco.opencv.global.opencv_imgproc.cvtColor;
+import static org.bytedeco.opencv.global.opencv_imgproc.pyrDown;
+
+/**
+ * One captured screen, converted to OpenCV form at most once per color space (and pyramid
+ * level) so every image check of a step shares the same pixels. The Mats belong to the frame: use them
+ * read-only and do not release them; {@link #close()} does.
+ */
+public final class Frame implements AutoCloseable {
+
+    private final BufferedImage image;
+    private Mat bgr;
+    private Mat gray;
+    /** Halved BGR copies for pyramid matching; index 0 is unused. */
+    private final Mat[] levels = new Mat[TemplateCache.MAX_LEVELS + 1];
+    private boolean closed;
+
+    public Frame(BufferedImage image) {
+        this.image = image;
+    }
+
+    public BufferedImage image() {
+        return image;
+    }
+
+    public int width() {
+        return image.getWidth();
+    }
+
+    public int height() {
+        return image.getHeight();
+    }
+
+    /**
+     * 8-bit BGR pixels, converted on first use.
+     */
+    public synchronized Mat bgr() {
+        if (bgr == null && !closed) {
+            bgr = toBgr(image);
+        }
+        return bgr;
+    }
+
+    /**
+     * 8-bit grayscale pixels, converted from {@link #bgr()} on first use.
+     */
+    public synchronized Mat gray() {
+        if (gray == null && !closed) {
+            Mat source = bgr();
+            if (source != null) {
+                gray = new Mat();
+                cvtColor(source, gray, COLOR_BGR2GRAY);
+            }
+        }
+        return gray;
+    }
+
+    /**
+     * BGR pixels halved {@code level} times (0 is {@link #bgr()}), built once per frame so
+     * every template of a scan shares them.
+     */
+    public synchronized Mat bgr(int level) {
+        if (level <= 0) {
+            return bgr();
+        }
+        int l = Math.min(level, TemplateCache.MAX_LEVELS);
+        if (levels[l] == null && !closed) {
+            Mat larger = bgr(l - 1);
+            if (larger != null) {
+                Mat down = new Mat();
+                pyrDown(larger, down);
+                levels[l] = down;
+            }
+        }
+        return levels[l];
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (int i = 1; i < levels.length; i++) {
+            if (levels[i] != null) {
+                levels[i].release();
+                levels[i] = null;
+            }
+        }
+        if (bgr != null) {
+            bgr.release();
+            bgr = null;
+        }
+        if (gray != null) {
+            gray.release();
+            gray = null;
+        }
+    }
+
+    /**
+     * Copy the image's pixel buffer straight into a Mat for the layouts captures produce
+     * (packed ints, 3-byte BGR or RGB) and redraw anything else.
+     */
+    private static Mat toBgr(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        Raster raster = image.getRaster();
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && raster.getDataBuffer() instanceof DataBufferInt ints
+                && raster.getSampleModel().getWidth() == w && raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0) {
+            // 0xAARRGGBB ints are B, G, R, A bytes in little-endian memory
+            Mat bgra = new Mat(h, w, CV_8UC4);
+            ByteBuffer buffer = bgra.createBuffer();
+            buffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().put(ints.getData(), ints.getOffset(), w * h);
+            return convert(bgra, COLOR_BGRA2BGR);
+        }
+        if (raster.getDataBuffer() instanceof DataBufferByte bytes
+                && raster.getSampleModel() instanceof PixelInterleavedSampleModel model
+                && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0) {
+            int[] offsets = model.getBandOffsets();
+            if (model.getPixelStride() == 3 && offsets.length == 3 && model.getScanlineStride() == w * 3) {
+                boolean rgb = offsets[0] == 0 && offsets[1] == 1 && offsets[2] == 2;
+                boolean bgrOrder = offsets[0] == 2 && offsets[1] == 1 && offsets[2] == 0;
+                int start = bytes.getOffset();
+                if ((rgb || bgrOrder) && bytes.getData().length - start >= w * h * 3) {
+                    Mat packed = new Mat(h, w, CV_8UC3);
+                    packed.data().put(bytes.getData(), start, w * h * 3);
+                    return rgb ? convert(packed, COLOR_RGB2BGR) : packed;
+                }
+            }
+        }
+        BufferedImage converted = new BufferedImage(w, h, BufferedImage.TYPE_3BYTE_BGR);
+        converted.getGraphics().drawImage(image, 0, 0, null);
+        byte[] pixels = ((DataBufferByte) converted.getRaster().getDataBuffer()).getData();
+        Mat mat = new Mat(h, w, CV_8UC3);
+        mat.data().put(pixels);
+        return mat;
+    }
+
+    private static Mat convert(Mat source, int code) {
+        Mat result = new Mat();
+        cvtColor(source, result, code);
+        source.release();
+        return result;
+    }
+}
@@ -3,18 +3,59 @@ package com.duckbot.ocr;
 import org.bytedeco.opencv.opencv_core.*;
 import org.bytedeco.javacpp.DoublePointer;
 import static org.bytedeco.opencv.global.opencv_core.*;
-import static org.bytedeco.opencv.global.opencv_imgcodecs.*;
 import static org.bytedeco.opencv.global.opencv_imgproc.*;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
-import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Image matcher backed by OpenCV template matching.
  */
 public class ImageMatcher {
 
+    /** Pyramid levels for whole-screen scans: match at 1/4 scale first. */
+    public static final int SCAN_LEVELS = 2;
+    /** Coarse candidates refined at full size. */
+    private static final int PYRAMID_CANDIDATES = 5;
+    /** Coarse scores run lower than full-size ones, so candidates only need this much. */
+    private static final double PYRAMID_THRESHOLD = 0.5;
+    /** Smallest template side still matched at a coarse level. */
+    private static final int PYRAMID_MIN_TEMPLATE = 12;
+
+    private static final Object POOL_LOCK = new Object();
+    private static ForkJoinPool pool;
+    private static int poolThreads;
+
+    /**
+     * One template of a {@link #matchAll} batch.
+     */
+    public static final class Target {
+        public final String imagePath;
+        /** Search area, or null for the whole frame. */
+        public final Rectangle region;
+        public final int levels;
+        public final double confidence;
+        /** Higher runs first; with early exit, a hit skips every target ranked below it. */
+        public final int priority;
+
+        public Target(String imagePath, Rectangle region, int levels, double confidence, int priority) {
+            this.imagePath = imagePath;
+            this.region = region;
+            this.levels = levels;
+            this.confidence = confidence;
+            this.priority = priority;
+        }
+    }
+
     public ImageMatcher() {
         // No-op constructor for backward compatibility
     }
@@ -24,91 +65,329 @@ public class ImageMatcher {
     }
 
     public double match(BufferedImage screenshot, String imagePath) {
-        if (screenshot == null || imagePath == null || imagePath.isEmpty()) {
+        if (screenshot == null) {
             return 0.0d;
         }
+        try (Frame frame = new Frame(screenshot)) {
+            return match(frame, imagePath);
+        }
+    }
 
-        File templateFile = new File(imagePath);
-        if (!templateFile.exists()) {
-            return 0.0;
+    /**
+     * Best match score of the template anywhere in the frame; the frame's BGR Mat is
+     * converted once and reused by later calls on the same frame.
+     */
+    public double match(Frame frame, String imagePath) {
+        return find(frame, imagePath, null).score;
+    }
+
+    public double match(Frame frame, String imagePath, Rectangle region) {
+        return find(frame, imagePath, region).score;
+    }
+
+    /**
+     * Best match of the template inside {@code region} (null for the whole frame). The region
+     * is clipped to the frame and grown to at least the template's size, and matching runs on
+     * a view of the frame's Mat, so its cost scales with the region's area.
+     */
+    public MatchResult find(Frame frame, String imagePath, Rectangle region) {
+        return find(frame, imagePath, region, 0);
+    }
+
+    /**
+     * Like {@link #find(Frame, String, Rectangle)}, but with {@code levels} above 0 the frame
+     * and template are first matched at 1/2^levels scale. The best few coarse candidates are
+     * then refined at full size in small windows, which finds the same match as the exact
+     * search at a fraction of the cost. Levels are reduced for small templates, whose detail
+     * would not survive downscaling.
+     */
+    public MatchResult find(Frame frame, String imagePath, Rectangle region, int levels) {
+        if (frame == null || imagePath == null || imagePath.isEmpty()) {
+            return MatchResult.NONE;
         }
 
-        try {
-            // Convert BufferedImage to OpenCV Mat
-            Mat source = bufferedImageToMat(screenshot);
-            if (source == null || source.empty()) {
-                return 0.0;
+        // Decoded template, shared with every other matcher; closed even if matching throws
+        try (TemplateCache.Handle cached = TemplateCache.shared().acquire(imagePath)) {
+            if (cached == null) {
+                return MatchResult.NONE;
             }
+            Mat template = cached.mat();
 
-            // Load template image
-            Mat template = imread(imagePath, IMREAD_COLOR);
-            if (template == null || template.empty()) {
-                source.release();
-                return 0.0;
+            // Shared with other checks on this frame; not ours to release
+            Mat source = frame.bgr();
+            if (source == null || source.empty()) {
+                return MatchResult.NONE;
             }
 
             // Ensure both images are same type
             if (source.channels() != template.channels()) {
-                source.release();
-                template.release();
-                return 0.0;
+                return MatchResult.NONE;
             }
 
-            // Create result matrix
-            int resultCols = source.cols() - template.cols() + 1;
-            int resultRows = source.rows() - template.rows() + 1;
-            if (resultCols <= 0 || resultRows <= 0) {
-                source.release();
-                template.release();
-                return 0.0;
+            Rectangle area = searchArea(region, source.cols(), source.rows(), template.cols(), template.rows());
+            if (area == null) {
+                return MatchResult.NONE;
+            }
+            int level = Math.min(levels, TemplateCache.MAX_LEVELS);
+            while (level > 0 && Math.min(template.cols(), template.rows()) >> level < PYRAMID_MIN_TEMPLATE) {
+                level--;
+            }
+            if (level == 0) {
+                return best(source, template, area);
             }
 
-            Mat result = new Mat(resultRows, resultCols, CV_32FC1);
+            // Coarse pass over the whole area at the pyramid level
+            int scale = 1 << level;
+            Mat coarse = frame.bgr(level);
+            Mat coarseTemplate = cached.mat(level);
+            Rectangle coarseArea = searchArea(new Rectangle(area.x / scale, area.y / scale,
+                            (area.width + scale - 1) / scale, (area.height + scale - 1) / scale),
+                    coarse.cols(), coarse.rows(), coarseTemplate.cols(), coarseTemplate.rows());
+            if (coarseArea == null) {
+                return best(source, template, area);
+            }
+            List<int[]> candidates = candidates(coarse, coarseTemplate, coarseArea);
 
-            // Perform template matching with normalized correlation
-            matchTemplate(source, template, result, TM_CCOEFF_NORMED);
+            // Fine pass around each candidate; downscaling shifts peaks by up to a coarse pixel or two
+            int pad = 2 * scale;
+            MatchResult result = MatchResult.NONE;
+            for (int[] candidate : candidates) {
+                Rectangle window = new Rectangle(candidate[0] * scale - pad, candidate[1] * scale - pad,
+                        template.cols() + 2 * pad, template.rows() + 2 * pad).intersection(area);
+                Rectangle fine = searchArea(window, source.cols(), source.rows(), template.cols(), template.rows());
+                MatchResult match = fine == null ? MatchResult.NONE : best(source, template, fine);
+                if (result.x < 0 || match.score > result.score) {
+                    result = match;
+                }
+            }
+            return result;
+        } catch (Exception e) {
+            return MatchResult.NONE;
+        }
+    }
 
-            // Find best match location
-            DoublePointer minVal = new DoublePointer(1);
-            DoublePointer maxVal = new DoublePointer(1);
-            Point minLoc = new Point();
-            Point maxLoc = new Point();
-            minMaxLoc(result, minVal, maxVal, minLoc, maxLoc, null);
+    /**
+     * Match many templates against one frame on the shared match pool. The frame's Mats
+     * are prepared once up front and shared by all correlations. With {@code earlyExit},
+     * targets start in priority order and a hit skips those ranked below it that have
+     * not started; targets of the same or higher priority still run, so the best-ranked
+     * hit is never missed.
+     *
+     * @return one result per target, in the targets' order; null for skipped targets
+     */
+    public List<MatchResult> matchAll(Frame frame, List<Target> targets, boolean earlyExit) {
+        MatchResult[] results = new MatchResult[targets.size()];
+        if (frame == null || targets.isEmpty()) {
+            Arrays.fill(results, MatchResult.NONE);
+            return Arrays.asList(results);
+        }
+        int maxLevel = 0;
+        for (Target target : targets) {
+            maxLevel = Math.max(maxLevel, Math.min(target.levels, TemplateCache.MAX_LEVELS));
+        }
+        if (frame.bgr(maxLevel) == null) {
+            Arrays.fill(results, MatchResult.NONE);
+            return Arrays.asList(results);
+        }
 
-            double confidence = maxVal.get();
+        Integer[] order = new Integer[targets.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(targets.get(b).priority, targets.get(a).priority));
+        AtomicInteger bestHit = new AtomicInteger(Integer.MIN_VALUE);
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(order.length);
+        ForkJoinPool workers = pool();
+        for (int i : order) {
+            Target target = targets.get(i);
+            Runnable task = () -> {
+                if (earlyExit && target.priority < bestHit.get()) {
+                    return;
+                }
+                MatchResult match = find(frame, target.imagePath, target.region, target.levels);
+                results[i] = match;
+                if (earlyExit && match.found(target.confidence)) {
+                    bestHit.accumulateAndGet(target.priority, Math::max);
+                }
+            };
+            try {
+                tasks.add(workers.submit(task));
+            } catch (RejectedExecutionException e) {
+                // The pool was just resized; match on this thread instead
+                task.run();
+            }
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.join();
+            } catch (Exception e) {
+                // find() reports failures as NONE; anything else leaves the slot empty
+            }
+        }
+        return Arrays.asList(results);
+    }
 
-            // Cleanup
-            source.release();
-            template.release();
-            result.release();
-            minVal.close();
-            maxVal.close();
+    /**
+     * Size the match pool, taking effect at the next batch. OpenCV's own threads per call are
+     * then set so that pool threads times OpenCV threads stays within the cores, since both
+     * would otherwise claim every core.
+     *
+     * @param threads pool threads, or 0 for half the cores
+     */
+    public static void setParallelism(int threads) {
+        ForkJoinPool old;
+        synchronized (POOL_LOCK) {
+            poolThreads = threads;
+            old = pool;
+            pool = null;
+        }
+        if (old != null) {
+            old.shutdown();
+        }
+    }
 
-            return confidence;
-        } catch (Exception e) {
-            return 0.0;
+    private static ForkJoinPool pool() {
+        synchronized (POOL_LOCK) {
+            if (pool == null) {
+                int cores = Runtime.getRuntime().availableProcessors();
+                int size = poolThreads > 0 ? poolThreads : Math.max(1, cores / 2);
+                setNumThreads(Math.max(1, cores / size));
+                pool = newPool(size);
+            }
+            return pool;
+        }
+    }
+
+    private static ForkJoinPool newPool(int size) {
+        AtomicInteger count = new AtomicInteger();
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("template-match-" + count.incrementAndGet());
+            return t;
+        };
+        // maximumPoolSize = parallelism: joins never add compensation threads beyond the bound
+        return new ForkJoinPool(size, factory, null, false, 0, size, 1, null, 60, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Best match of the template in {@code area} of the source, in source coordinates.
+     */
+    private static MatchResult best(Mat source, Mat template, Rectangle area) {
+        Rect roi = new Rect(area.x, area.y, area.width, area.height);
+        Mat view = new Mat(source, roi);
+
+        // Create result matrix
+        int resultCols = area.width - template.cols() + 1;
+        int resultRows = area.height - template.rows() + 1;
+        Mat result = new Mat(resultRows, resultCols, CV_32FC1);
+
+        // Perform template matching with normalized correlation
+        matchTemplate(view, template, result, TM_CCOEFF_NORMED);
+
+        // Find best match location
+        DoublePointer minVal = new DoublePointer(1);
+        DoublePointer maxVal = new DoublePointer(1);
+        Point minLoc = new Point();
+        Point maxLoc = new Point();
+        minMaxLoc(result, minVal, maxVal, minLoc, maxLoc, null);
+
+        MatchResult match = new MatchResult(maxVal.get(), area.x + maxLoc.x(), area.y + maxLoc.y(),
+                template.cols(), template.rows());
+
+        // Cleanup; the view shares the frame's pixels, releasing it frees nothing else
+        view.release();
+        roi.close();
+        result.release();
+        minVal.close();
+        maxVal.close();
+        minLoc.close();
+        maxLoc.close();
+        return match;
+    }
+
+    /**
+     * Top-left corners (source coordinates) of the best distinct peaks in {@code area}: always
+     * the best one, then up to {@link #PYRAMID_CANDIDATES} in total that reach
+     * {@link #PYRAMID_THRESHOLD}. Each peak's template-sized neighbourhood is blanked before
+     * looking for the next.
+     */
+    private static List<int[]> candidates(Mat source, Mat template, Rectangle area) {
+        Rect roi = new Rect(area.x, area.y, area.width, area.height);
+        Mat view = new Mat(source, roi);
+        Mat result = new Mat(area.height - template.rows() + 1, area.width - template.cols() + 1, CV_32FC1);
+        matchTemplate(view, template, result, TM_CCOEFF_NORMED);
+
+        List<int[]> peaks = new ArrayList<>();
+        DoublePointer minVal = new DoublePointer(1);
+        DoublePointer maxVal = new DoublePointer(1);
+        Point minLoc = new Point();
+        Point maxLoc = new Point();
+        Scalar blank = new Scalar(-1.0);
+        for (int i = 0; i < PYRAMID_CANDIDATES; i++) {
+            minMaxLoc(result, minVal, maxVal, minLoc, maxLoc, null);
+            if (i > 0 && maxVal.get() < PYRAMID_THRESHOLD) {
+                break;
+            }
+            peaks.add(new int[]{area.x + maxLoc.x(), area.y + maxLoc.y()});
+            Rect seen = new Rect(maxLoc.x() - template.cols() / 2, maxLoc.y() - template.rows() / 2,
+                    template.cols(), template.rows());
+            rectangle(result, seen, blank, FILLED, LINE_8, 0);
+            seen.close();
         }
+
+        view.release();
+        roi.close();
+        result.release();
+        minVal.close();
+        maxVal.close();
+        minLoc.close();
+        maxLoc.close();
+        blank.close();
+        return peaks;
     }
 
     /**
-     * Convert BufferedImage to OpenCV Mat.
+     * Region clipped to the frame and grown around its centre to fit the template, or null
+     * if the template is larger than the frame.
      */
-    private Mat bufferedImageToMat(BufferedImage image) {
-        if (image == null) {
+    static Rectangle searchArea(Rectangle region, int frameWidth, int frameHeight, int templateWidth, int templateHeight) {
+        if (templateWidth > frameWidth || templateHeight > frameHeight) {
             return null;
         }
+        if (region == null || region.isEmpty()) {
+            return new Rectangle(0, 0, frameWidth, frameHeight);
+        }
+        Rectangle area = region.intersection(new Rectangle(0, 0, frameWidth, frameHeight));
+        if (area.isEmpty()) {
+            area = new Rectangle(Math.max(0, Math.min(region.x, frameWidth - 1)),
+                    Math.max(0, Math.min(region.y, frameHeight - 1)), 0, 0);
+        }
+        int width = Math.max(area.width, templateWidth);
+        int height = Math.max(area.height, templateHeight);
+        int x = Math.max(0, Math.min(area.x - (width - area.width) / 2, frameWidth - width));
+        int y = Math.max(0, Math.min(area.y - (height - area.height) / 2, frameHeight - height));
+        return new Rectangle(x, y, width, height);
+    }
 
+    /**
+     * Parse an "x,y,width,height" region grown by {@code margin} on every side; null when
+     * blank or malformed, meaning the whole frame.
+     */
+    public static Rectangle parseRegion(String region, int margin) {
+        if (region == null || region.isBlank()) {
+            return null;
+        }
+        String[] parts = region.split(",");
+        if (parts.length != 4) {
+            return null;
+        }
         try {
-            // Convert to TYPE_3BYTE_BGR if needed
-            BufferedImage convertedImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
-            convertedImage.getGraphics().drawImage(image, 0, 0, null);
-
-            byte[] pixels = ((DataBufferByte) convertedImage.getRaster().getDataBuffer()).getData();
-            Mat mat = new Mat(convertedImage.getHeight(), convertedImage.getWidth(), CV_8UC3);
-            mat.data().put(pixels);
-            return mat;
-        } catch (Exception e) {
+            Rectangle r = new Rectangle(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()),
+                    Integer.parseInt(parts[2].trim()), Integer.parseInt(parts[3].trim()));
+            r.grow(margin, margin);
+            return r;
+        } catch (NumberFormatException e) {
             return null;
         }
     }
-}
\ No newline at end of file
+}
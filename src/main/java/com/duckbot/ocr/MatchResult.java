@@ -0,0 +1,42 @@
+package com.duckbot.ocr;
+
+/**
+ * Best template match in a frame. Coordinates are full-frame pixels of the match's top-left
+ * corner, also when the search was limited to a region.
+ */
+public final class MatchResult {
+
+    public static final MatchResult NONE = new MatchResult(0.0, -1, -1, 0, 0);
+
+    public final double score;
+    public final int x;
+    public final int y;
+    public final int width;
+    public final int height;
+
+    public MatchResult(double score, int x, int y, int width, int height) {
+        this.score = score;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    public boolean found(double confidence) {
+        return x >= 0 && score >= confidence;
+    }
+
+    public int centerX() {
+        return x + width / 2;
+    }
+
+    public int centerY() {
+        return y + height / 2;
+    }
+
+    @Override
+    public String toString() {
+        return x < 0 ? "MatchResult{none}"
+                : String.format("MatchResult{score=%.3f, at=[%d,%d][%d,%d]}", score, x, y, x + width, y + height);
+    }
+}
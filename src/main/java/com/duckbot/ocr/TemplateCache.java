@@ -0,0 +1,266 @@
+package com.duckbot.ocr;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+import static org.bytedeco.opencv.global.opencv_imgproc.pyrDown;
+
+/**
+ * Process-wide cache of decoded template images, so a popup scan over dozens of templates
+ * does not re-read and re-decode every PNG on each tick.
+ *
+ * Entries are keyed by path, dropped when the file's modification time or size changes, and
+ * evicted least recently used once their native bytes exceed the budget. A template in use
+ * is reference counted: eviction only unlinks it, and its Mat is released when the last
+ * {@link Handle} is closed.
+ *
+ * <pre>
+ * try (TemplateCache.Handle t = TemplateCache.shared().acquire(path)) {
+ *     if (t != null) matchTemplate(source, t.mat(), result, TM_CCOEFF_NORMED);
+ * }
+ * </pre>
+ */
+public final class TemplateCache {
+
+    /** Deepest pyramid level kept per template. */
+    public static final int MAX_LEVELS = 3;
+
+    private static final TemplateCache SHARED = new TemplateCache(256L * 1024 * 1024);
+
+    private static final class Entry {
+        final String path;
+        final long modified;
+        final long fileSize;
+        final Mat mat;
+        final long bytes;
+        /** Downscaled copies for pyramid matching; index 0 is unused. */
+        final Mat[] levels = new Mat[MAX_LEVELS + 1];
+        /** Open handles, plus one while the entry is in the cache. */
+        int refs = 1;
+
+        Entry(String path, long modified, long fileSize, Mat mat) {
+            this.path = path;
+            this.modified = modified;
+            this.fileSize = fileSize;
+            this.mat = mat;
+            // Pyramid levels add at most a third on top of the full-size template
+            long full = mat.total() * mat.elemSize();
+            this.bytes = full + full / 3;
+        }
+
+        synchronized Mat level(int level) {
+            if (level <= 0) {
+                return mat;
+            }
+            if (levels[level] == null) {
+                Mat down = new Mat();
+                pyrDown(level(level - 1), down);
+                levels[level] = down;
+            }
+            return levels[level];
+        }
+
+        synchronized void release() {
+            mat.release();
+            for (int i = 1; i < levels.length; i++) {
+                if (levels[i] != null) {
+                    levels[i].release();
+                    levels[i] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * A borrowed template; the Mat stays valid until {@link #close()}. Do not modify it.
+     */
+    public final class Handle implements AutoCloseable {
+        private Entry entry;
+
+        private Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        public Mat mat() {
+            return entry.mat;
+        }
+
+        /**
+         * The template halved {@code level} times (0 is full size), built once per entry.
+         */
+        public Mat mat(int level) {
+            return entry.level(Math.min(level, MAX_LEVELS));
+        }
+
+        @Override
+        public void close() {
+            if (entry != null) {
+                unref(entry);
+                entry = null;
+            }
+        }
+    }
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long maxBytes;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public TemplateCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static TemplateCache shared() {
+        return SHARED;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trim(null);
+    }
+
+    /**
+     * Decoded BGR template for the path, loading it on a miss or when the file has changed.
+     *
+     * @return a handle to close after use, or null if the file is missing or not an image
+     */
+    public Handle acquire(String path) {
+        if (path == null || path.isEmpty()) {
+            return null;
+        }
+        File file = new File(path);
+        long modified = file.lastModified();
+        long fileSize = file.length();
+        if (modified == 0L) {
+            invalidate(path);
+            return null;
+        }
+        synchronized (this) {
+            Entry entry = entries.get(path);
+            if (entry != null && entry.modified == modified && entry.fileSize == fileSize) {
+                hits++;
+                entry.refs++;
+                return new Handle(entry);
+            }
+            misses++;
+        }
+        // Decode outside the lock; concurrent misses on one path may both decode, one copy wins
+        Mat mat = imread(path, IMREAD_COLOR);
+        if (mat == null || mat.empty()) {
+            if (mat != null) {
+                mat.release();
+            }
+            return null;
+        }
+        Entry loaded = new Entry(path, modified, fileSize, mat);
+        List<Entry> released = new ArrayList<>();
+        Entry result;
+        synchronized (this) {
+            Entry current = entries.get(path);
+            if (current != null && current.modified == modified && current.fileSize == fileSize) {
+                released.add(loaded);
+                result = current;
+            } else {
+                if (current != null) {
+                    unlink(current, released);
+                }
+                entries.put(path, loaded);
+                bytes += loaded.bytes;
+                result = loaded;
+                trim(released);
+            }
+            result.refs++;
+        }
+        for (Entry e : released) {
+            e.release();
+        }
+        return new Handle(result);
+    }
+
+    /**
+     * Drop the path's entry; in-use handles stay valid until closed.
+     */
+    public void invalidate(String path) {
+        List<Entry> released = new ArrayList<>();
+        synchronized (this) {
+            Entry entry = entries.get(path);
+            if (entry != null) {
+                unlink(entry, released);
+            }
+        }
+        released.forEach(e -> e.release());
+    }
+
+    public void clear() {
+        List<Entry> released = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : new ArrayList<>(entries.values())) {
+                unlink(entry, released);
+            }
+        }
+        released.forEach(e -> e.release());
+    }
+
+    /**
+     * Counters for diagnostics: entries, bytes, maxBytes, hits, misses, evictions.
+     */
+    public synchronized Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("entries", (long) entries.size());
+        stats.put("bytes", bytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("evictions", evictions);
+        return stats;
+    }
+
+    /**
+     * Evict least recently used entries until within budget, always keeping the newest one.
+     * With a null list the evicted Mats are released here, under the lock.
+     */
+    private void trim(List<Entry> released) {
+        List<Entry> out = released != null ? released : new ArrayList<>();
+        Iterator<Entry> it = entries.values().iterator();
+        while (bytes > maxBytes && entries.size() > 1 && it.hasNext()) {
+            Entry eldest = it.next();
+            it.remove();
+            bytes -= eldest.bytes;
+            evictions++;
+            if (--eldest.refs == 0) {
+                out.add(eldest);
+            }
+        }
+        if (released == null) {
+            out.forEach(e -> e.release());
+        }
+    }
+
+    private void unlink(Entry entry, List<Entry> released) {
+        entries.remove(entry.path);
+        bytes -= entry.bytes;
+        if (--entry.refs == 0) {
+            released.add(entry);
+        }
+    }
+
+    private void unref(Entry entry) {
+        boolean release;
+        synchronized (this) {
+            release = --entry.refs == 0;
+        }
+        if (release) {
+            entry.release();
+        }
+    }
+}
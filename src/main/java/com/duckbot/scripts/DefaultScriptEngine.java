@@ -1,27 +1,77 @@
 package com.duckbot.scripts;
 
+import com.duckbot.adb.AdbClient;
+import com.duckbot.adb.ScreenrecordFrameSource;
+import com.duckbot.scripts.steps.IfImageStep;
+import com.duckbot.scripts.steps.LoopStep;
+import com.duckbot.scripts.steps.WaitStep;
 import com.duckbot.services.LogService;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
 
 /**
  * Default implementation that runs scripts on a cached thread pool.
+ *
+ * A spec with several {@link ScriptRunSpec#instanceNames} is a broadcast run: one thread walks
+ * the script for the whole group. Each step fans out to all devices on a shared bounded pool
+ * and waits for all of them, waits sleep once for the group, and the group only splits where
+ * an IF_IMAGE branches, each side continuing in lockstep and rejoining after the branch.
+ * A device that fails or exits drops out; the others carry on. {@link #drop} takes a device
+ * out explicitly, e.g. once its reservation is about to be released.
  */
 public final class DefaultScriptEngine implements ScriptEngine {
 
     private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ExecutorService fanOut = Executors.newFixedThreadPool(
+            Math.max(8, Runtime.getRuntime().availableProcessors() * 2), r -> {
+                Thread t = new Thread(r, "script-fan-out");
+                t.setDaemon(true);
+                return t;
+            });
     private final Map<String, RunControl> runs = new ConcurrentHashMap<>();
     private final LogService log;
+    private final AdbClient adb;
+    private final Function<String, String> serials;
+    private volatile boolean streamFrames;
+    private volatile long maxFrameAgeMs = 1000;
 
     public DefaultScriptEngine(LogService log) {
+        this(log, null, null);
+    }
+
+    /**
+     * @param adb     client given to steps, which capture from each run's instance with it; null for none
+     * @param serials instance name to ADB serial, or null when instances are named by their serial
+     */
+    public DefaultScriptEngine(LogService log, AdbClient adb, Function<String, String> serials) {
         this.log = Objects.requireNonNull(log);
+        this.adb = adb;
+        this.serials = serials;
+    }
+
+    /**
+     * Stream each run's screen with screenrecord so image checks read the latest decoded frame;
+     * frames older than {@code maxFrameAgeMs} fall back to screencap. Applies to runs started afterwards.
+     */
+    public void setFrameStreaming(boolean enabled, long maxFrameAgeMs) {
+        this.streamFrames = enabled;
+        this.maxFrameAgeMs = Math.max(0, maxFrameAgeMs);
     }
 
     @Override
@@ -33,35 +83,221 @@ public final class DefaultScriptEngine implements ScriptEngine {
         if (previous != null) {
             throw new IllegalStateException("Run already exists: " + spec.runId);
         }
-        control.future = executor.submit(() -> executeScript(spec, control));
+        control.adb = adb;
+        boolean broadcast = spec.instanceNames != null && spec.instanceNames.size() > 1;
+        control.future = executor.submit(() -> {
+            if (broadcast) {
+                executeBroadcast(spec, control);
+            } else {
+                executeScript(spec, control);
+            }
+        });
     }
 
-    private void executeScript(ScriptRunSpec spec, RunControl control) {
+    private ScriptContext newContext(ScriptRunSpec spec, RunControl control, String instanceName) {
         ScriptContext ctx = new ScriptContext();
         ctx.runId = spec.runId;
         ctx.botId = spec.botId;
-        ctx.instanceName = spec.instanceName;
+        ctx.instanceName = instanceName;
+        ctx.serial = serial(instanceName);
         ctx.vars = spec.variables == null ? new HashMap<>() : new HashMap<>(spec.variables);
         ctx.adb = control.adb;
         ctx.log = log;
         ctx.screencap = control.screencap;
+        if (ctx.screencap == null && control.adb != null) {
+            ctx.screencap = () -> control.adb.screencap(ctx.serial);
+        }
+        if (streamFrames && control.adb != null && ctx.serial != null) {
+            ctx.frames = new ScreenrecordFrameSource(control.adb, ctx.serial);
+            ctx.maxFrameAgeMs = maxFrameAgeMs;
+        }
+        return ctx;
+    }
+
+    private static void release(ScriptContext ctx) {
+        ctx.nextTick();
+        if (ctx.frames != null) {
+            ctx.frames.close();
+        }
+    }
+
+    private String serial(String instanceName) {
+        if (serials == null || instanceName == null) {
+            return instanceName;
+        }
+        try {
+            String serial = serials.apply(instanceName);
+            return serial != null ? serial : instanceName;
+        } catch (RuntimeException e) {
+            log.warn("Could not resolve serial for {}: {}", instanceName, e.getMessage());
+            return instanceName;
+        }
+    }
+
+    private void executeScript(ScriptRunSpec spec, RunControl control) {
+        ScriptContext ctx = newContext(spec, control, spec.instanceName);
         try {
             for (Step step : spec.script.steps) {
                 if (control.stopRequested.get()) {
                     log.warn("Run {} interrupted", spec.runId);
                     break;
                 }
-                step.execute(ctx);
+                ctx.runStep(step);
             }
         } catch (ScriptExitException exit) {
             log.info("Run {} exited: {}", spec.runId, exit.getMessage());
         } catch (Exception ex) {
             log.error("Run {} failed: {}", spec.runId, ex.getMessage());
         } finally {
+            release(ctx);
+            runs.remove(spec.runId);
+        }
+    }
+
+    private void executeBroadcast(ScriptRunSpec spec, RunControl control) {
+        List<ScriptContext> group = new ArrayList<>();
+        for (String name : spec.instanceNames) {
+            group.add(newContext(spec, control, name));
+        }
+        log.info("Run {} broadcasting to {} instances", spec.runId, group.size());
+        try {
+            List<ScriptContext> finished = runLockstep(spec.script.steps, group, control);
+            log.info("Run {} finished on {}/{} instances", spec.runId, finished.size(), group.size());
+        } catch (InterruptedException e) {
+            log.warn("Run {} interrupted", spec.runId);
+        } catch (Exception ex) {
+            log.error("Run {} failed: {}", spec.runId, ex.getMessage());
+        } finally {
+            group.forEach(DefaultScriptEngine::release);
             runs.remove(spec.runId);
         }
     }
 
+    /**
+     * Run the steps on every device of the cohort, step by step.
+     *
+     * @return the devices still running afterwards, in cohort order
+     */
+    private List<ScriptContext> runLockstep(List<Step> steps, List<ScriptContext> cohort, RunControl control)
+            throws InterruptedException {
+        for (Step step : steps) {
+            cohort = control.active(cohort);
+            if (cohort.isEmpty()) {
+                break;
+            }
+            if (control.stopRequested.get() || Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            if (step instanceof WaitStep wait) {
+                if (wait.delay > 0) {
+                    Thread.sleep(wait.delay);
+                }
+                cohort.forEach(ScriptContext::nextTick);
+            } else if (step instanceof LoopStep loop) {
+                for (int i = 0; i < loop.count && !cohort.isEmpty(); i++) {
+                    cohort = runLockstep(loop.steps, cohort, control);
+                }
+            } else if (step instanceof IfImageStep branch) {
+                cohort = runBranch(branch, cohort, control);
+            } else {
+                cohort = new ArrayList<>(fanOut(cohort, control, ctx -> {
+                    ctx.runStep(step);
+                    return Boolean.TRUE;
+                }).keySet());
+            }
+        }
+        return control.active(cohort);
+    }
+
+    /**
+     * Evaluate the condition on each device, run both sides concurrently, and rejoin in cohort order.
+     */
+    private List<ScriptContext> runBranch(IfImageStep branch, List<ScriptContext> cohort, RunControl control)
+            throws InterruptedException {
+        Map<ScriptContext, Boolean> conditions = fanOut(cohort, control, branch::test);
+        List<ScriptContext> thenCohort = new ArrayList<>();
+        List<ScriptContext> elseCohort = new ArrayList<>();
+        conditions.forEach((ctx, matched) -> (matched ? thenCohort : elseCohort).add(ctx));
+
+        Future<List<ScriptContext>> elseRun = null;
+        List<ScriptContext> elseLeft = elseCohort;
+        if (!elseCohort.isEmpty() && !branch.elseSteps.isEmpty()) {
+            if (thenCohort.isEmpty() || branch.thenSteps.isEmpty()) {
+                elseLeft = runLockstep(branch.elseSteps, elseCohort, control);
+            } else {
+                elseRun = executor.submit(() -> runLockstep(branch.elseSteps, elseCohort, control));
+            }
+        }
+        List<ScriptContext> thenLeft;
+        try {
+            thenLeft = runLockstep(branch.thenSteps, thenCohort, control);
+            if (elseRun != null) {
+                elseLeft = elseRun.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Branch failed", e.getCause());
+        } finally {
+            // Also when the then side was stopped or failed, so the else side never runs on alone
+            if (elseRun != null) {
+                elseRun.cancel(true);
+            }
+        }
+        Set<ScriptContext> left = Collections.newSetFromMap(new IdentityHashMap<>());
+        left.addAll(thenLeft);
+        left.addAll(elseLeft);
+        return cohort.stream().filter(left::contains).toList();
+    }
+
+    /**
+     * Run the call for every device on the fan-out pool and wait for all of them.
+     *
+     * @return results of the devices that neither failed, exited nor were dropped, in cohort order
+     */
+    private <T> Map<ScriptContext, T> fanOut(List<ScriptContext> cohort, RunControl control, DeviceCall<T> call)
+            throws InterruptedException {
+        List<Future<T>> futures = new ArrayList<>();
+        for (ScriptContext ctx : cohort) {
+            Future<T> future = fanOut.submit(() -> call.run(ctx));
+            control.inFlight.put(ctx.instanceName, future);
+            if (control.dropped.contains(ctx.instanceName)) {
+                // Dropped while being submitted; drop() may have missed this future
+                future.cancel(true);
+            }
+            futures.add(future);
+        }
+        Map<ScriptContext, T> survivors = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < cohort.size(); i++) {
+                ScriptContext ctx = cohort.get(i);
+                try {
+                    T result = futures.get(i).get();
+                    if (!control.dropped.contains(ctx.instanceName)) {
+                        survivors.put(ctx, result);
+                    }
+                } catch (CancellationException e) {
+                    log.info("Run {} dropped {}", ctx.runId, ctx.instanceName);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof ScriptExitException exit) {
+                        log.info("Run {} exited on {}: {}", ctx.runId, ctx.instanceName, exit.getMessage());
+                    } else {
+                        log.error("Run {} failed on {}: {}", ctx.runId, ctx.instanceName, String.valueOf(e.getCause()));
+                    }
+                }
+            }
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+            for (int i = 0; i < cohort.size(); i++) {
+                control.inFlight.remove(cohort.get(i).instanceName, futures.get(i));
+            }
+        }
+        return survivors;
+    }
+
+    @FunctionalInterface
+    private interface DeviceCall<T> {
+        T run(ScriptContext ctx) throws Exception;
+    }
+
     @Override
     public void stop(String runId) {
         RunControl control = runs.get(runId);
@@ -73,6 +309,26 @@ public final class DefaultScriptEngine implements ScriptEngine {
         }
     }
 
+    /**
+     * Take one device out of a broadcast run: its in-flight step is interrupted and no later
+     * step is started on it, while the rest of the group carries on. Call it before handing the
+     * device to anyone else.
+     *
+     * @return false when the run is not known (already finished or never started)
+     */
+    public boolean drop(String runId, String instanceName) {
+        RunControl control = runs.get(runId);
+        if (control == null) {
+            return false;
+        }
+        control.dropped.add(instanceName);
+        Future<?> step = control.inFlight.get(instanceName);
+        if (step != null) {
+            step.cancel(true);
+        }
+        return true;
+    }
+
     @Override
     public boolean isRunning(String runId) {
         RunControl control = runs.get(runId);
@@ -81,8 +337,19 @@ public final class DefaultScriptEngine implements ScriptEngine {
 
     private static final class RunControl {
         final AtomicBoolean stopRequested = new AtomicBoolean(false);
+        /** Instances taken out of the run by {@link #drop}. */
+        final Set<String> dropped = ConcurrentHashMap.newKeySet();
+        /** Step currently running per instance, so a drop can interrupt it. */
+        final Map<String, Future<?>> inFlight = new ConcurrentHashMap<>();
         Future<?> future;
         com.duckbot.adb.AdbClient adb;
         java.util.function.Supplier<java.awt.image.BufferedImage> screencap;
+
+        List<ScriptContext> active(List<ScriptContext> cohort) {
+            if (dropped.isEmpty()) {
+                return cohort;
+            }
+            return cohort.stream().filter(ctx -> !dropped.contains(ctx.instanceName)).toList();
+        }
     }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.duckbot.scripts;
 
 import com.duckbot.adb.AdbClient;
+import com.duckbot.adb.FrameSource;
+import com.duckbot.ocr.Frame;
 import com.duckbot.services.LogService;
 
 import java.awt.image.BufferedImage;
@@ -17,10 +19,21 @@ public final class ScriptContext {
     public String runId;
     public String botId;
     public String instanceName;
+    /** ADB serial of the instance, used for every device call of the run. */
+    public String serial;
     public Map<String, Object> vars;
     public AdbClient adb;
     public LogService log;
     public Supplier<BufferedImage> screencap;
+    /** Optional streaming source; when it has a recent frame, captures skip the screencap round trip. */
+    public FrameSource frames;
+    /**
+     * Oldest frame a check may use: an older shared frame is recaptured, and an older streamed
+     * frame (e.g. after the stream died) falls back to screencap.
+     */
+    public long maxFrameAgeMs = 1000;
+    private Frame frame;
+    private long frameTakenAt;
 
     public ScriptContext() {
     }
@@ -34,9 +47,58 @@ public final class ScriptContext {
     }
 
     public Optional<BufferedImage> tryCapture() {
+        if (frames != null && System.currentTimeMillis() - frames.latestTimestamp() <= maxFrameAgeMs) {
+            BufferedImage latest = frames.latest();
+            if (latest != null) {
+                return Optional.of(latest);
+            }
+        }
         if (screencap == null) {
             return Optional.empty();
         }
         return Optional.ofNullable(screencap.get());
     }
-}
\ No newline at end of file
+
+    /**
+     * Current screen frame, captured on first use and shared by every image check until a
+     * step changes the screen or the frame gets too old, so consecutive checks capture and
+     * convert the screen once. Null if nothing could be captured.
+     */
+    public synchronized Frame frame() {
+        if (frame != null && System.currentTimeMillis() - frameTakenAt > maxFrameAgeMs) {
+            nextTick();
+        }
+        if (frame == null) {
+            BufferedImage image = tryCapture().orElse(null);
+            if (image != null) {
+                frame = new Frame(image);
+                frameTakenAt = System.currentTimeMillis();
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * Drop the shared frame so the next check sees the screen after the last input.
+     */
+    public synchronized void nextTick() {
+        if (frame != null) {
+            frame.close();
+            frame = null;
+        }
+    }
+
+    /**
+     * Execute a step, dropping the shared frame afterwards if the step can change the screen;
+     * compound steps run their nested steps through this too.
+     */
+    public void runStep(Step step) throws Exception {
+        try {
+            step.execute(this);
+        } finally {
+            if (step.changesScreen()) {
+                nextTick();
+            }
+        }
+    }
+}
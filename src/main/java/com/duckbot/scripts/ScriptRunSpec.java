@@ -1,6 +1,8 @@
 package com.duckbot.scripts;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
@@ -14,6 +16,11 @@ public final class ScriptRunSpec {
     public String instanceName;
     public Script script;
     public Map<String, Object> variables = new HashMap<>();
+    /**
+     * Broadcast group: when it holds more than one instance, the script drives all of them in
+     * lockstep and {@link #instanceName} is ignored.
+     */
+    public List<String> instanceNames = new ArrayList<>();
 
     public ScriptRunSpec() {
     }
@@ -30,6 +37,7 @@ public final class ScriptRunSpec {
                 ", instanceName='" + instanceName + '\'' +
                 ", script=" + script +
                 ", variables=" + variables +
+                ", instanceNames=" + instanceNames +
                 '}';
     }
 
@@ -41,11 +49,12 @@ public final class ScriptRunSpec {
                 && Objects.equals(botId, that.botId)
                 && Objects.equals(instanceName, that.instanceName)
                 && Objects.equals(script, that.script)
-                && Objects.equals(variables, that.variables);
+                && Objects.equals(variables, that.variables)
+                && Objects.equals(instanceNames, that.instanceNames);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(runId, botId, instanceName, script, variables);
+        return Objects.hash(runId, botId, instanceName, script, variables, instanceNames);
     }
 }
\ No newline at end of file
@@ -14,4 +14,12 @@ public interface Step {
      * Executes the step using the supplied context.
      */
     void execute(ScriptContext ctx) throws Exception;
+
+    /**
+     * @return whether the step can change what is on screen (input, waiting), so frames
+     *         captured before it must not be reused after it
+     */
+    default boolean changesScreen() {
+        return false;
+    }
 }
\ No newline at end of file
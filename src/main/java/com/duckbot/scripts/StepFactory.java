@@ -45,6 +45,19 @@ public final class StepFactory {
                 step.x = getStringProp(es, "x", "0");
                 step.y = getStringProp(es, "y", "0");
                 step.delay = getLongProp(es, "delay", 0L);
+                step.backend = getStringProp(es, "backend", "input");
+                yield step;
+            }
+            case "tap element", "tapelement" -> {
+                TapElementStep step = new TapElementStep();
+                step.resourceId = getStringProp(es, "resourceId", "");
+                step.text = getStringProp(es, "text", "");
+                step.className = getStringProp(es, "className", "");
+                step.contentDesc = getStringProp(es, "contentDesc", "");
+                step.index = getIntProp(es, "index", 0);
+                step.timeoutMs = getLongProp(es, "timeoutMs", 5_000L);
+                step.delay = getLongProp(es, "delay", 0L);
+                step.backend = getStringProp(es, "backend", "input");
                 yield step;
             }
             case "swipe" -> {
@@ -54,6 +67,7 @@ public final class StepFactory {
                 step.x2 = getStringProp(es, "x2", "0");
                 step.y2 = getStringProp(es, "y2", "0");
                 step.durationMs = getIntProp(es, "durationMs", 300);
+                step.backend = getStringProp(es, "backend", "input");
                 yield step;
             }
             case "scroll" -> {
@@ -61,6 +75,7 @@ public final class StepFactory {
                 step.direction = getStringProp(es, "direction", "DOWN");
                 step.distance = getIntProp(es, "distance", 400);
                 step.durationMs = getIntProp(es, "durationMs", 300);
+                step.backend = getStringProp(es, "backend", "input");
                 yield step;
             }
             case "wait" -> {
@@ -68,15 +83,37 @@ public final class StepFactory {
                 step.delay = getLongProp(es, "delay", 1000L);
                 yield step;
             }
+            case "wait ready", "waitready" -> {
+                WaitReadyStep step = new WaitReadyStep();
+                step.packageName = getStringProp(es, "packageName", "");
+                step.imagePath = getStringProp(es, "imagePath", "");
+                step.confidence = getDoubleProp(es, "confidence", 0.9);
+                step.timeoutMs = getLongProp(es, "timeoutMs", 120_000L);
+                step.continueOnTimeout = "CONTINUE".equalsIgnoreCase(getStringProp(es, "onTimeout", "FAIL"));
+                yield step;
+            }
+            case "wait log", "waitlog" -> {
+                WaitLogStep step = new WaitLogStep();
+                step.tag = getStringProp(es, "tag", "");
+                step.pattern = getStringProp(es, "pattern", "");
+                step.timeoutMs = getLongProp(es, "timeoutMs", 30_000L);
+                step.outVar = getStringProp(es, "outVar", "");
+                step.continueOnTimeout = "CONTINUE".equalsIgnoreCase(getStringProp(es, "onTimeout", "FAIL"));
+                yield step;
+            }
             case "input", "input text" -> {
                 InputStep step = new InputStep();
                 step.text = getStringProp(es, "text", "");
+                step.backend = getStringProp(es, "backend", "auto");
                 yield step;
             }
             case "if image", "ifimage" -> {
                 IfImageStep step = new IfImageStep();
                 step.imagePath = getStringProp(es, "imagePath", "");
                 step.confidence = getDoubleProp(es, "confidence", 0.9);
+                step.region = getStringProp(es, "region", "");
+                step.margin = getIntProp(es, "margin", 0);
+                step.pyramidLevels = getIntProp(es, "pyramidLevels", 0);
                 step.thenSteps = new ArrayList<>(); // Nested steps handled separately if needed
                 step.elseSteps = new ArrayList<>();
                 yield step;
@@ -144,7 +181,7 @@ public final class StepFactory {
      * Get list of all supported step types for UI display.
      */
     public static List<String> getSupportedStepTypes() {
-        return List.of("Tap", "Swipe", "Scroll", "Wait", "Input Text", "If Image",
+        return List.of("Tap", "Tap Element", "Swipe", "Scroll", "Wait", "Wait Ready", "Wait Log", "Input Text", "If Image",
                 "Loop", "OCR Read", "Log", "Exit", "Custom JS");
     }
 }
@@ -4,7 +4,6 @@ import com.duckbot.ocr.ImageMatcher;
 import com.duckbot.scripts.ScriptContext;
 import com.duckbot.scripts.Step;
 
-import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,6 +14,12 @@ public final class IfImageStep implements Step {
 
     public String imagePath;
     public double confidence = 0.9d;
+    /** Search area "x,y,width,height"; blank searches the whole screen. */
+    public String region = "";
+    /** Pixels added around {@link #region} on every side. */
+    public int margin;
+    /** Match at 1/2^levels scale first and refine at full size; 0 searches exactly. */
+    public int pyramidLevels;
     public List<Step> thenSteps = new ArrayList<>();
     public List<Step> elseSteps = new ArrayList<>();
     private final ImageMatcher matcher = new ImageMatcher();
@@ -26,15 +31,21 @@ public final class IfImageStep implements Step {
 
     @Override
     public void execute(ScriptContext ctx) throws Exception {
-        BufferedImage capture = ctx.tryCapture().orElse(null);
-        double score = matcher.match(capture, imagePath);
+        List<Step> branch = test(ctx) ? thenSteps : elseSteps;
+        for (Step step : branch) {
+            ctx.runStep(step);
+        }
+    }
+
+    /**
+     * Evaluate the condition only; broadcast runs call this per device and run the branches themselves.
+     */
+    public boolean test(ScriptContext ctx) {
+        double score = matcher.find(ctx.frame(), imagePath, ImageMatcher.parseRegion(region, margin), pyramidLevels).score;
         boolean condition = score >= confidence;
         if (ctx.log != null) {
             ctx.log.info("[{}] IF_IMAGE '{}' -> {} (score={})", ctx.instanceName, imagePath, condition, score);
         }
-        List<Step> branch = condition ? thenSteps : elseSteps;
-        for (Step step : branch) {
-            step.execute(ctx);
-        }
+        return condition;
     }
 }
\ No newline at end of file
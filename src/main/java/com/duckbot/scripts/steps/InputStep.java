@@ -11,12 +11,19 @@ import com.duckbot.util.StringTemplate;
 public final class InputStep implements Step {
 
     public String text;
+    /** "auto" (default: fastest the device supports), "adbkeyboard", "clipboard" or "input". */
+    public String backend;
 
     @Override
     public String type() {
         return "INPUT";
     }
 
+    @Override
+    public boolean changesScreen() {
+        return true;
+    }
+
     @Override
     public void execute(ScriptContext ctx) {
         String resolved = StringTemplate.resolve(text, ctx.vars);
@@ -25,7 +32,12 @@ public final class InputStep implements Step {
         }
         AdbClient adb = ctx.adb;
         if (adb != null) {
-            adb.inputText(ctx.instanceName, resolved);
+            AdbClient.TextBackend chosen = AdbClient.TextBackend.parse(backend);
+            if (chosen == null) {
+                adb.typeText(ctx.serial, resolved);
+            } else {
+                adb.typeText(ctx.serial, resolved, chosen);
+            }
         }
     }
 }
\ No newline at end of file
@@ -26,7 +26,7 @@ public final class LoopStep implements Step {
                 ctx.log.info("[{}] LOOP iteration {}/{}", ctx.instanceName, i + 1, count);
             }
             for (Step step : steps) {
-                step.execute(ctx);
+                ctx.runStep(step);
             }
         }
     }
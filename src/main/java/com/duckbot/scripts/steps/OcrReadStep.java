@@ -1,5 +1,6 @@
 package com.duckbot.scripts.steps;
 
+import com.duckbot.ocr.Frame;
 import com.duckbot.ocr.OcrService;
 import com.duckbot.scripts.ScriptContext;
 import com.duckbot.scripts.Step;
@@ -20,7 +21,8 @@ public final class OcrReadStep implements Step {
 
     @Override
     public void execute(ScriptContext ctx) {
-        String result = ocrService.read(ctx.tryCapture().orElse(null), region, "eng");
+        Frame frame = ctx.frame();
+        String result = ocrService.read(frame == null ? null : frame.image(), region, "eng");
         if (ctx.log != null) {
             ctx.log.info("[{}] OCR_READ region={} -> {}", ctx.instanceName, region, result);
         }
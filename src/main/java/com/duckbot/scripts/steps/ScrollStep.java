@@ -12,12 +12,19 @@ public final class ScrollStep implements Step {
     public String direction = "DOWN";
     public int distance = 400;
     public int durationMs = 300;
+    /** "input" (default) or "minitouch". */
+    public String backend;
 
     @Override
     public String type() {
         return "SCROLL";
     }
 
+    @Override
+    public boolean changesScreen() {
+        return true;
+    }
+
     @Override
     public void execute(ScriptContext ctx) {
         if (ctx.log != null) {
@@ -43,6 +50,6 @@ public final class ScrollStep implements Step {
                 return;
             }
         }
-        adb.swipe(ctx.instanceName, centerX, centerY, centerX + deltaX, centerY + deltaY, durationMs);
+        adb.swipe(ctx.serial, centerX, centerY, centerX + deltaX, centerY + deltaY, durationMs, AdbClient.TouchBackend.parse(backend));
     }
 }
\ No newline at end of file
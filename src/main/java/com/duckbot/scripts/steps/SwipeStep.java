@@ -17,12 +17,19 @@ public final class SwipeStep implements Step {
     public String x2;
     public String y2;
     public int durationMs = 300;
+    /** "input" (default) or "minitouch". */
+    public String backend;
 
     @Override
     public String type() {
         return "SWIPE";
     }
 
+    @Override
+    public boolean changesScreen() {
+        return true;
+    }
+
     @Override
     public void execute(ScriptContext ctx) {
         Map<String, Object> vars = ctx.vars;
@@ -35,7 +42,7 @@ public final class SwipeStep implements Step {
         }
         AdbClient adb = ctx.adb;
         if (adb != null) {
-            adb.swipe(ctx.instanceName, resolvedX1, resolvedY1, resolvedX2, resolvedY2, durationMs);
+            adb.swipe(ctx.serial, resolvedX1, resolvedY1, resolvedX2, resolvedY2, durationMs, AdbClient.TouchBackend.parse(backend));
         }
     }
 }
\ No newline at end of file
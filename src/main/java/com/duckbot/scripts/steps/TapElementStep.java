@@ -0,0 +1,95 @@
+package com.duckbot.scripts.steps;
+
+import com.duckbot.adb.AdbClient;
+import com.duckbot.adb.UiHierarchy;
+import com.duckbot.ocr.Frame;
+import com.duckbot.scripts.ScriptContext;
+import com.duckbot.scripts.Step;
+import com.duckbot.util.StringTemplate;
+
+import java.util.List;
+
+/**
+ * Taps the centre of a UI element found in the uiautomator view tree, so native dialogs and
+ * launchers can be driven without coordinates or template images. The tree is reused while
+ * the screen does not change.
+ */
+public final class TapElementStep implements Step {
+
+    /** Full ("com.game:id/ok") or short ("ok") resource id; blank for any. */
+    public String resourceId = "";
+    public String text = "";
+    public String className = "";
+    public String contentDesc = "";
+    /** Which of several matches to tap, in document order. */
+    public int index;
+    public long timeoutMs = 5_000L;
+    public long delay;
+    /** "input" (default) or "minitouch". */
+    public String backend;
+
+    @Override
+    public String type() {
+        return "TAP_ELEMENT";
+    }
+
+    @Override
+    public boolean changesScreen() {
+        return true;
+    }
+
+    @Override
+    public void execute(ScriptContext ctx) throws Exception {
+        AdbClient adb = ctx.adb;
+        if (adb == null) {
+            if (ctx.log != null) {
+                ctx.log.warn("[{}] TAP_ELEMENT skipped: no ADB client", ctx.instanceName);
+            }
+            return;
+        }
+        UiHierarchy.Query query = new UiHierarchy.Query()
+                .resourceId(StringTemplate.resolve(resourceId, ctx.vars))
+                .text(StringTemplate.resolve(text, ctx.vars))
+                .className(StringTemplate.resolve(className, ctx.vars))
+                .contentDesc(StringTemplate.resolve(contentDesc, ctx.vars));
+        if (query.isEmpty()) {
+            if (ctx.log != null) {
+                ctx.log.warn("[{}] TAP_ELEMENT skipped: no element criteria", ctx.instanceName);
+            }
+            return;
+        }
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        UiHierarchy.Node node = null;
+        while (true) {
+            Frame frame = ctx.frame();
+            UiHierarchy tree = adb.uiHierarchy(ctx.serial, frame == null ? null : frame.image());
+            if (tree != null) {
+                List<UiHierarchy.Node> matches = tree.findAll(query);
+                if (matches.size() > index) {
+                    node = matches.get(index);
+                    break;
+                }
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                break;
+            }
+            Thread.sleep(500);
+            ctx.nextTick();
+        }
+        if (node == null) {
+            if (ctx.log != null) {
+                ctx.log.warn("[{}] No element {} within {}ms", ctx.instanceName, query, timeoutMs);
+            }
+            return;
+        }
+        if (ctx.log != null) {
+            ctx.log.info("[{}] Tapping {} at ({}, {})", ctx.instanceName, node, node.centerX(), node.centerY());
+        }
+        adb.tap(ctx.serial, node.centerX(), node.centerY(), AdbClient.TouchBackend.parse(backend));
+        // The tap most likely changes the screen before the next frame shows it
+        adb.invalidateUiHierarchy(ctx.serial);
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+}
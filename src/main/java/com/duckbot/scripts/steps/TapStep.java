@@ -15,12 +15,19 @@ public final class TapStep implements Step {
     public String x;
     public String y;
     public long delay;
+    /** "input" (default) or "minitouch". */
+    public String backend;
 
     @Override
     public String type() {
         return "TAP";
     }
 
+    @Override
+    public boolean changesScreen() {
+        return true;
+    }
+
     @Override
     public void execute(ScriptContext ctx) throws Exception {
         Map<String, Object> vars = ctx.vars;
@@ -31,7 +38,7 @@ public final class TapStep implements Step {
         }
         AdbClient adb = ctx.adb;
         if (adb != null) {
-            adb.tap(ctx.instanceName, resolvedX, resolvedY);
+            adb.tap(ctx.serial, resolvedX, resolvedY, AdbClient.TouchBackend.parse(backend));
         }
         if (delay > 0) {
             Thread.sleep(delay);
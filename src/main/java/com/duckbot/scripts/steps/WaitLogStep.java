@@ -0,0 +1,74 @@
+package com.duckbot.scripts.steps;
+
+import com.duckbot.adb.LogcatStream;
+import com.duckbot.scripts.ScriptContext;
+import com.duckbot.scripts.Step;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Waits until a matching line appears in the device's logcat, e.g. a network error or an
+ * ad SDK callback, instead of polling screenshots for its effect. Fails the script on timeout
+ * unless {@link #continueOnTimeout} is set.
+ */
+public final class WaitLogStep implements Step {
+
+    /** Exact logcat tag; blank for any tag. */
+    public String tag = "";
+    /** Regex found anywhere in the message; blank matches any line of the tag. */
+    public String pattern = "";
+    public long timeoutMs = 30_000L;
+    /** Variable that receives the matched message; blank to skip. */
+    public String outVar = "";
+    /** Log the timeout and carry on instead of failing the script. */
+    public boolean continueOnTimeout = false;
+    private transient LogcatStream.Filter filter;
+
+    @Override
+    public String type() {
+        return "WAIT_LOG";
+    }
+
+    @Override
+    public boolean changesScreen() {
+        return true;
+    }
+
+    @Override
+    public void execute(ScriptContext ctx) throws InterruptedException {
+        if (ctx.adb == null) {
+            if (ctx.log != null) {
+                ctx.log.warn("[{}] WAIT_LOG skipped: no ADB client", ctx.instanceName);
+            }
+            return;
+        }
+        if (filter == null) {
+            filter = new LogcatStream.Filter("wait", tag, pattern);
+        }
+        CompletableFuture<LogcatStream.Event> matched = new CompletableFuture<>();
+        try (LogcatStream stream = new LogcatStream(ctx.adb, ctx.serial, List.of(filter), 16)) {
+            stream.addListener(matched::complete);
+            LogcatStream.Event event = matched.get(timeoutMs, TimeUnit.MILLISECONDS);
+            if (outVar != null && !outVar.isBlank() && ctx.vars != null) {
+                ctx.vars.put(outVar, event.message);
+            }
+            if (ctx.log != null) {
+                ctx.log.info("[{}] Logcat matched: {}", ctx.instanceName, event);
+            }
+        } catch (TimeoutException e) {
+            String message = "No logcat match for " + pattern + " within " + timeoutMs + "ms";
+            if (!continueOnTimeout) {
+                throw new IllegalStateException(message);
+            }
+            if (ctx.log != null) {
+                ctx.log.warn("[{}] {}, continuing", ctx.instanceName, message);
+            }
+        } catch (ExecutionException e) {
+            // The future is only completed normally
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.duckbot.scripts.steps;
+
+import com.duckbot.adb.ReadinessProbe;
+import com.duckbot.ocr.ImageMatcher;
+import com.duckbot.scripts.ScriptContext;
+import com.duckbot.scripts.Step;
+
+import java.time.Duration;
+
+/**
+ * Waits until the device has booted, the game is in the foreground and, optionally, an
+ * image is on screen, instead of sleeping for a fixed time. Fails the script on timeout
+ * unless {@link #continueOnTimeout} is set.
+ */
+public final class WaitReadyStep implements Step {
+
+    /** Package that must own the focused window; blank to skip. */
+    public String packageName = "";
+    /** Template that must be visible; blank to skip. */
+    public String imagePath = "";
+    public double confidence = 0.9d;
+    public long timeoutMs = 120_000L;
+    /** Log the timeout and carry on instead of failing the script. */
+    public boolean continueOnTimeout = false;
+    private final ImageMatcher matcher = new ImageMatcher();
+
+    @Override
+    public String type() {
+        return "WAIT_READY";
+    }
+
+    @Override
+    public boolean changesScreen() {
+        return true;
+    }
+
+    @Override
+    public void execute(ScriptContext ctx) throws InterruptedException {
+        if (ctx.adb == null) {
+            if (ctx.log != null) {
+                ctx.log.warn("[{}] WAIT_READY skipped: no ADB client", ctx.instanceName);
+            }
+            return;
+        }
+        ReadinessProbe probe = new ReadinessProbe()
+                .foregroundPackage(packageName)
+                .deadline(Duration.ofMillis(timeoutMs));
+        if (imagePath != null && !imagePath.isBlank()) {
+            probe.screen(image -> matcher.match(image, imagePath) >= confidence);
+        }
+        ReadinessProbe.Result result = ctx.adb.awaitReady(ctx.serial, probe);
+        if (result.ready) {
+            if (ctx.log != null) {
+                ctx.log.info("[{}] Device ready after {}ms", ctx.instanceName, result.elapsedMs);
+            }
+            return;
+        }
+        String message = "Device not ready after " + result.elapsedMs + "ms (waiting on " + result.stage + ")";
+        if (!continueOnTimeout) {
+            throw new IllegalStateException(message);
+        }
+        if (ctx.log != null) {
+            ctx.log.warn("[{}] {}, continuing", ctx.instanceName, message);
+        }
+    }
+}
@@ -15,6 +15,11 @@ public final class WaitStep implements Step {
         return "WAIT";
     }
 
+    @Override
+    public boolean changesScreen() {
+        return true;
+    }
+
     @Override
     public void execute(ScriptContext ctx) throws InterruptedException {
         if (ctx.log != null) {
@@ -0,0 +1,53 @@
+package com.duckbot.services;
+
+/**
+ * Health metrics of one watched device, as reported by {@link DeviceHealthMonitor}.
+ */
+public final class DeviceHealth {
+
+    /** Recovery steps in escalation order; HEALTHY when no recovery is in progress. */
+    public enum Stage { HEALTHY, APP_RESTART, INSTANCE_RESTART, GAVE_UP }
+
+    public String instanceName;
+    public String serial;
+    /** Smoothed adb round-trip latency, or -1 before the first successful probe. */
+    public long latencyMs = -1;
+    /** Smoothed share of captures that succeeded, 0..1. */
+    public double captureSuccessRate = 1.0;
+    /** Smoothed share of checks whose frame differed from the previous one, 0..1. */
+    public double frameChangeRate = 1.0;
+    public long lastFrameChangeAt;
+    public int consecutiveFailures;
+    public boolean healthy = true;
+    public Stage stage = Stage.HEALTHY;
+    public int recoveries;
+    /** No recovery step is taken before this time. */
+    public long backoffUntil;
+
+    public DeviceHealth() {
+    }
+
+    public DeviceHealth copy() {
+        DeviceHealth c = new DeviceHealth();
+        c.instanceName = instanceName;
+        c.serial = serial;
+        c.latencyMs = latencyMs;
+        c.captureSuccessRate = captureSuccessRate;
+        c.frameChangeRate = frameChangeRate;
+        c.lastFrameChangeAt = lastFrameChangeAt;
+        c.consecutiveFailures = consecutiveFailures;
+        c.healthy = healthy;
+        c.stage = stage;
+        c.recoveries = recoveries;
+        c.backoffUntil = backoffUntil;
+        return c;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceHealth{" + instanceName + " (" + serial + "), healthy=" + healthy + ", stage=" + stage
+                + ", latencyMs=" + latencyMs + ", captureSuccessRate=" + String.format("%.2f", captureSuccessRate)
+                + ", frameChangeRate=" + String.format("%.2f", frameChangeRate)
+                + ", consecutiveFailures=" + consecutiveFailures + ", recoveries=" + recoveries + '}';
+    }
+}
@@ -0,0 +1,31 @@
+package com.duckbot.services;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Watches devices that are running scripts and recovers the ones that hang.
+ *
+ * An unhealthy device is escalated one step at a time: restart the game, restart the
+ * instance, then give up and hand the instance back to the caller to reschedule.
+ */
+public interface DeviceHealthMonitor extends AutoCloseable {
+
+    /**
+     * Start watching an instance.
+     *
+     * @param packageName game to restart as the first recovery step; null or blank to skip that step
+     * @param onGiveUp called with the instance name once recovery has failed
+     */
+    void watch(String instanceName, String packageName, Consumer<String> onGiveUp);
+
+    void unwatch(String instanceName);
+
+    /**
+     * Current metrics for every watched instance.
+     */
+    List<DeviceHealth> snapshot();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,34 @@
+package com.duckbot.services;
+
+import com.duckbot.adb.Instance;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Keeps an up-to-date view of the emulator instances and reports changes.
+ *
+ * Snapshot instances are shared and must be treated as read-only.
+ */
+public interface InstanceDiscoveryService extends AutoCloseable {
+
+    /**
+     * Latest known instances; immutable and cheap to read.
+     */
+    List<Instance> snapshot();
+
+    Optional<Instance> find(String name);
+
+    /**
+     * Poll now and return the fresh snapshot.
+     */
+    List<Instance> refresh();
+
+    void addListener(Consumer<InstanceEvent> listener);
+
+    void removeListener(Consumer<InstanceEvent> listener);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,28 @@
+package com.duckbot.services;
+
+import com.duckbot.adb.Instance;
+
+/**
+ * A change seen by {@link InstanceDiscoveryService} between two polls.
+ */
+public final class InstanceEvent {
+
+    public enum Type { ADDED, REMOVED, STATE_CHANGED }
+
+    public final Type type;
+    /** The instance as now seen; for REMOVED, as last seen. */
+    public final Instance instance;
+    /** The instance as previously seen; null for ADDED. */
+    public final Instance previous;
+
+    public InstanceEvent(Type type, Instance instance, Instance previous) {
+        this.type = type;
+        this.instance = instance;
+        this.previous = previous;
+    }
+
+    @Override
+    public String toString() {
+        return "InstanceEvent{" + type + " " + instance.name + ", running=" + instance.running + '}';
+    }
+}
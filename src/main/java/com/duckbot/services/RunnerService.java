@@ -12,6 +12,11 @@ public interface RunnerService {
 
     String start(BotProfile bot);
 
+    /**
+     * Announce that the bot will be started at the given time so its instances can be prepared.
+     */
+    void prepare(BotProfile bot, long startAtEpochMs);
+
     void stop(String runId);
 
     List<RunStatus> list();
@@ -0,0 +1,37 @@
+package com.duckbot.services;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Keeps emulator instances booted ahead of the runs that need them.
+ */
+public interface WarmPoolService extends AutoCloseable {
+
+    /**
+     * Announce that a run will need the instance at the given time, so it can be pre-booted.
+     */
+    void schedule(String instanceName, long startAtEpochMs);
+
+    /**
+     * Wait until the instance is booted and mark it in use.
+     *
+     * @return false if it was not ready within the timeout; the pool then stops booting it but
+     *         will not quit it either, in case the caller starts anyway, until it is released
+     */
+    boolean acquire(String instanceName, Duration timeout);
+
+    /**
+     * Return an instance after its run, or give up on it after a failed start; clears any
+     * schedule for it in every state. A booted instance stays warm for the idle grace period.
+     */
+    void release(String instanceName);
+
+    /**
+     * Pool state per tracked instance (COLD, BOOTING, WARM, IN_USE).
+     */
+    Map<String, String> states();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,306 @@
+package com.duckbot.services.impl;
+
+import com.duckbot.adb.AdbClient;
+import com.duckbot.adb.LdPlayerManager;
+import com.duckbot.adb.RawFrame;
+import com.duckbot.core.Config;
+import com.duckbot.services.DeviceHealth;
+import com.duckbot.services.DeviceHealthMonitor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Health monitor that probes each watched device over adb on a background thread.
+ *
+ * Every check measures an {@code echo} round trip and takes a raw screencap whose sampled
+ * pixels are compared with the previous one. A device is unhealthy when its frame has not
+ * changed for {@code stuckMinutes} or too many probes in a row failed. Recovery then
+ * escalates one step per grace period until the device shows a new frame again. A device
+ * that fails again soon after recovering is flapping: its grace period doubles each time
+ * (up to {@code maxBackoffMinutes}) and its escalation resumes past the step that last
+ * helped instead of repeating it.
+ */
+public final class AdbDeviceHealthMonitor implements DeviceHealthMonitor {
+
+    private static final double SMOOTHING = 0.2;
+    private static final int FRAME_SAMPLES = 4096;
+
+    private static final class Watched {
+        final DeviceHealth health = new DeviceHealth();
+        final String packageName;
+        final Consumer<String> onGiveUp;
+        long frameHash;
+        boolean hasFrame;
+        /** A recovery step is running; checks still update metrics but do not escalate. */
+        volatile boolean acting;
+        long actionAt;
+        long recoveredAt;
+        DeviceHealth.Stage lastStep;
+        int flaps;
+
+        Watched(String instanceName, String packageName, Consumer<String> onGiveUp, long now) {
+            this.packageName = packageName;
+            this.onGiveUp = onGiveUp;
+            health.instanceName = instanceName;
+            health.lastFrameChangeAt = now;
+        }
+    }
+
+    private final LdPlayerManager ldPlayer;
+    private final AdbClient adb;
+    private final Config.HealthConfig config;
+    private final LongSupplier clock;
+    private final Map<String, Watched> watched = new ConcurrentHashMap<>();
+    private final ExecutorService recovery = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "health-recovery");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Thread worker;
+    private volatile boolean closed;
+
+    public AdbDeviceHealthMonitor(LdPlayerManager ldPlayer, Config.HealthConfig config) {
+        this(ldPlayer, config, System::currentTimeMillis, true);
+    }
+
+    /**
+     * @param background false to run no checking thread; the caller drives {@link #checkAll()}
+     *                   and recovery steps run on its thread
+     */
+    AdbDeviceHealthMonitor(LdPlayerManager ldPlayer, Config.HealthConfig config, LongSupplier clock, boolean background) {
+        this.ldPlayer = ldPlayer;
+        this.adb = ldPlayer.adb();
+        this.config = config;
+        this.clock = clock;
+        this.worker = background ? new Thread(this::loop, "device-health") : null;
+        if (worker != null) {
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    @Override
+    public void watch(String instanceName, String packageName, Consumer<String> onGiveUp) {
+        String pkg = packageName == null || packageName.isBlank() ? config.gamePackage : packageName;
+        watched.put(instanceName, new Watched(instanceName, pkg == null || pkg.isBlank() ? null : pkg, onGiveUp,
+                clock.getAsLong()));
+    }
+
+    @Override
+    public void unwatch(String instanceName) {
+        watched.remove(instanceName);
+    }
+
+    @Override
+    public List<DeviceHealth> snapshot() {
+        List<DeviceHealth> result = new ArrayList<>();
+        for (Watched w : watched.values()) {
+            synchronized (w) {
+                result.add(w.health.copy());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (worker != null) {
+            worker.interrupt();
+        }
+        recovery.shutdownNow();
+    }
+
+    private void loop() {
+        while (!closed) {
+            checkAll();
+            try {
+                Thread.sleep(Math.max(1, config.checkIntervalSeconds) * 1000L);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Probe every watched device once, then escalate or settle each one.
+     */
+    void checkAll() {
+        List<CompletableFuture<Void>> checks = new ArrayList<>();
+        for (Watched w : watched.values()) {
+            checks.add(check(w));
+        }
+        try {
+            CompletableFuture.allOf(checks.toArray(new CompletableFuture<?>[0])).join();
+        } catch (Exception ignored) {
+            // Each check handles its own failures
+        }
+        long now = clock.getAsLong();
+        for (Watched w : watched.values()) {
+            evaluate(w, now);
+        }
+    }
+
+    private CompletableFuture<Void> check(Watched w) {
+        String serial = ldPlayer.resolveSerial(w.health.instanceName);
+        synchronized (w) {
+            w.health.serial = serial;
+        }
+        if (serial == null) {
+            synchronized (w) {
+                w.health.consecutiveFailures++;
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+        Duration timeout = Duration.ofSeconds(Math.max(1, config.probeTimeoutSeconds));
+        long started = System.currentTimeMillis();
+        return adb.shellAsync(serial, timeout, "echo", "ok")
+                .handle((out, error) -> {
+                    boolean ok = error == null && out != null && out.trim().equals("ok");
+                    synchronized (w) {
+                        if (ok) {
+                            long latency = System.currentTimeMillis() - started;
+                            w.health.latencyMs = w.health.latencyMs < 0 ? latency
+                                    : Math.round(w.health.latencyMs * (1 - SMOOTHING) + latency * SMOOTHING);
+                        }
+                        w.health.consecutiveFailures = ok ? 0 : w.health.consecutiveFailures + 1;
+                    }
+                    return ok;
+                })
+                .thenCompose(ok -> ok ? adb.screencapRawAsync(serial, null, timeout).handle((frame, error) -> frame)
+                        : CompletableFuture.completedFuture((RawFrame) null))
+                .thenAccept(frame -> recordFrame(w, frame));
+    }
+
+    private void recordFrame(Watched w, RawFrame frame) {
+        synchronized (w) {
+            DeviceHealth h = w.health;
+            h.captureSuccessRate = h.captureSuccessRate * (1 - SMOOTHING) + (frame != null ? SMOOTHING : 0);
+            if (frame == null) {
+                return;
+            }
+            long hash = sampleHash(frame);
+            boolean changed = !w.hasFrame || hash != w.frameHash;
+            h.frameChangeRate = h.frameChangeRate * (1 - SMOOTHING) + (changed ? SMOOTHING : 0);
+            if (changed) {
+                h.lastFrameChangeAt = clock.getAsLong();
+            }
+            w.frameHash = hash;
+            w.hasFrame = true;
+        }
+    }
+
+    /**
+     * Hash of evenly spaced pixel bytes; cheap, and any visible animation changes it.
+     */
+    private static long sampleHash(RawFrame frame) {
+        int length = frame.width * frame.height * frame.bytesPerPixel();
+        int end = Math.min(frame.data.length, frame.offset + length);
+        int step = Math.max(1, (end - frame.offset) / FRAME_SAMPLES);
+        long hash = 1125899906842597L;
+        for (int i = frame.offset; i < end; i += step) {
+            hash = 31 * hash + frame.data[i];
+        }
+        return hash;
+    }
+
+    private void evaluate(Watched w, long now) {
+        if (w.acting) {
+            return;
+        }
+        DeviceHealth.Stage step;
+        synchronized (w) {
+            DeviceHealth h = w.health;
+            boolean stuck = now - h.lastFrameChangeAt > config.stuckMinutes * 60_000L;
+            boolean failing = h.consecutiveFailures >= Math.max(1, config.maxConsecutiveFailures);
+            h.healthy = !stuck && !failing;
+
+            if (h.stage != DeviceHealth.Stage.HEALTHY) {
+                // Recovered once the device answers and draws a new frame after the last step
+                if (h.consecutiveFailures == 0 && h.lastFrameChangeAt > w.actionAt) {
+                    h.stage = DeviceHealth.Stage.HEALTHY;
+                    h.healthy = true;
+                    w.recoveredAt = now;
+                    return;
+                }
+                if (now < h.backoffUntil) {
+                    return;
+                }
+                step = next(h.stage, w.packageName != null);
+            } else {
+                if (h.healthy) {
+                    return;
+                }
+                boolean flapping = w.recoveredAt > 0 && now - w.recoveredAt < config.flapWindowMinutes * 60_000L;
+                w.flaps = flapping ? w.flaps + 1 : 0;
+                step = flapping && w.lastStep != null
+                        ? next(w.lastStep, w.packageName != null)
+                        : next(DeviceHealth.Stage.HEALTHY, w.packageName != null);
+            }
+            h.stage = step;
+            h.recoveries++;
+            w.lastStep = step;
+            w.acting = true;
+        }
+        if (worker == null) {
+            recover(w, step);
+        } else {
+            recovery.execute(() -> recover(w, step));
+        }
+    }
+
+    private static DeviceHealth.Stage next(DeviceHealth.Stage stage, boolean hasPackage) {
+        return switch (stage) {
+            case HEALTHY -> hasPackage ? DeviceHealth.Stage.APP_RESTART : DeviceHealth.Stage.INSTANCE_RESTART;
+            case APP_RESTART -> DeviceHealth.Stage.INSTANCE_RESTART;
+            case INSTANCE_RESTART, GAVE_UP -> DeviceHealth.Stage.GAVE_UP;
+        };
+    }
+
+    private void recover(Watched w, DeviceHealth.Stage step) {
+        String name = w.health.instanceName;
+        try {
+            switch (step) {
+                case APP_RESTART -> {
+                    String serial = w.health.serial;
+                    if (serial != null) {
+                        adb.shell(serial, "am", "force-stop", w.packageName);
+                    }
+                    if (!ldPlayer.runApp(name, w.packageName) && serial != null) {
+                        adb.shell(serial, "monkey", "-p", w.packageName, "-c", "android.intent.category.LAUNCHER", "1");
+                    }
+                }
+                case INSTANCE_RESTART -> ldPlayer.restartAll(List.of(name));
+                case GAVE_UP -> {
+                    watched.remove(name, w);
+                    if (w.onGiveUp != null) {
+                        w.onGiveUp.accept(name);
+                    }
+                }
+                default -> {
+                }
+            }
+        } catch (Exception ignored) {
+            // The next check sees whether it helped
+        } finally {
+            synchronized (w) {
+                long now = clock.getAsLong();
+                long graceMs = Math.min(config.recoveryGraceSeconds * 1000L << Math.min(w.flaps, 16),
+                        config.maxBackoffMinutes * 60_000L);
+                w.actionAt = now;
+                w.health.backoffUntil = now + graceMs;
+                w.health.consecutiveFailures = 0;
+                w.acting = false;
+            }
+        }
+    }
+}
@@ -1,39 +1,113 @@
 package com.duckbot.services.impl;
 
+import com.duckbot.adb.AdbClient;
+import com.duckbot.adb.LogcatStream;
 import com.duckbot.core.BotProfile;
-import com.duckbot.core.BotScriptRef;
+import com.duckbot.core.BotInstanceBinding;
 import com.duckbot.core.RunStatus;
+import com.duckbot.games.GamePopupManager;
+import com.duckbot.services.DeviceHealthMonitor;
 import com.duckbot.services.InstanceRegistry;
 import com.duckbot.services.LogService;
 import com.duckbot.services.RunnerService;
+import com.duckbot.services.WarmPoolService;
 import com.duckbot.scripts.DefaultScriptEngine;
 import com.duckbot.scripts.Script;
-import com.duckbot.scripts.ScriptEngine;
 import com.duckbot.scripts.ScriptRunSpec;
 import com.duckbot.scripts.steps.LogStep;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Simplified runner service that schedules scripts sequentially.
  */
 public final class DefaultRunnerService implements RunnerService {
 
-    private final ScriptEngine scriptEngine;
+    private static final Duration WARM_TIMEOUT = Duration.ofMinutes(3);
+    private static final long RESCHEDULE_DELAY_MS = 60_000;
+    /** Script key of a broadcast run, which drives all of a run's instances at once. */
+    private static final String BROADCAST = "*";
+
+    private final DefaultScriptEngine scriptEngine;
     private final InstanceRegistry registry;
     private final LogService logService;
+    private final WarmPoolService warmPool;
+    private final DeviceHealthMonitor health;
     private final Map<String, List<RunStatus>> runs = new ConcurrentHashMap<>();
+    /** Engine run ids per run and instance, so one instance's scripts can be stopped alone. */
+    private final Map<String, List<String>> scriptRuns = new ConcurrentHashMap<>();
+    private final AtomicLong scriptSeq = new AtomicLong();
+    private final AdbClient adb;
+    private final Function<String, String> serials;
+    /** Logcat popup watch per run and instance, closed with the instance's scripts. */
+    private final Map<String, LogcatStream> popupStreams = new ConcurrentHashMap<>();
+    private volatile GamePopupManager popups;
 
     public DefaultRunnerService(LogService logService, InstanceRegistry registry) {
+        this(logService, registry, null);
+    }
+
+    /**
+     * @param warmPool pool to take booted instances from, or null to assume instances are up
+     */
+    public DefaultRunnerService(LogService logService, InstanceRegistry registry, WarmPoolService warmPool) {
+        this(logService, registry, warmPool, null);
+    }
+
+    /**
+     * @param health monitor that recovers hung instances, or null to run without one; when it
+     *               gives up on an instance, the reservation is released and the instance rescheduled
+     */
+    public DefaultRunnerService(LogService logService, InstanceRegistry registry, WarmPoolService warmPool,
+                                DeviceHealthMonitor health) {
+        this(logService, registry, warmPool, health, null, null);
+    }
+
+    /**
+     * @param adb     client scripts drive their instances with; pass the one the rest of the app uses
+     *                so script, preview and pool traffic share the same per-device lanes and limits
+     * @param serials instance name to ADB serial, or null when instances are named by their serial
+     */
+    public DefaultRunnerService(LogService logService, InstanceRegistry registry, WarmPoolService warmPool,
+                                DeviceHealthMonitor health, AdbClient adb, Function<String, String> serials) {
         this.logService = Objects.requireNonNull(logService);
         this.registry = Objects.requireNonNull(registry);
-        this.scriptEngine = new DefaultScriptEngine(logService);
+        this.warmPool = warmPool;
+        this.health = health;
+        this.adb = adb;
+        this.serials = serials;
+        this.scriptEngine = new DefaultScriptEngine(logService, adb, serials);
+    }
+
+    /**
+     * Follow each running instance's logcat for the bot's game popups that have a logcat
+     * pattern, and tap those with a {@code tap} action at their coordinates. Applies to
+     * instances started afterwards; null turns it off. Needs the ADB client.
+     */
+    public void setPopupWatcher(GamePopupManager popups) {
+        this.popups = popups;
+    }
+
+    /**
+     * Stream script screens instead of taking a screencap per check; see
+     * {@link DefaultScriptEngine#setFrameStreaming}.
+     */
+    public void setFrameStreaming(boolean enabled, long maxFrameAgeMs) {
+        scriptEngine.setFrameStreaming(enabled, maxFrameAgeMs);
     }
 
     @Override
@@ -59,26 +133,267 @@ public final class DefaultRunnerService implements RunnerService {
             status.scriptName = bot.scripts.isEmpty() ? "N/A" : bot.scripts.get(0).scriptName;
             status.updateState("RUNNING", "Scheduled");
             statuses.add(status);
+        });
+        if (bot.broadcast && bot.instances.size() > 1) {
+            startBroadcast(runId, bot, statuses);
+        } else {
+            for (int i = 0; i < bot.instances.size(); i++) {
+                startOn(runId, bot, bot.instances.get(i), statuses.get(i));
+            }
+        }
+        return runId;
+    }
+
+    /**
+     * Start one lockstep run over every instance that could be reserved. The group is fixed
+     * once started: an instance the health monitor gives up on is dropped, not restarted.
+     */
+    private void startBroadcast(String runId, BotProfile bot, List<RunStatus> statuses) {
+        List<BotInstanceBinding> group = new ArrayList<>();
+        List<RunStatus> groupStatuses = new ArrayList<>();
+        for (int i = 0; i < bot.instances.size(); i++) {
+            BotInstanceBinding binding = bot.instances.get(i);
             if (registry.reserve(binding.instanceName, runId)) {
-                scheduleScripts(runId, bot, binding.instanceName, bot.scripts);
+                group.add(binding);
+                groupStatuses.add(statuses.get(i));
             } else {
-                status.updateState("WAITING", "Instance busy");
+                statuses.get(i).updateState("WAITING", "Instance busy");
+            }
+        }
+        if (group.isEmpty()) {
+            return;
+        }
+        if (warmPool != null) {
+            // Boot the whole group together under the launch window, not one acquire at a time
+            long now = System.currentTimeMillis();
+            group.forEach(binding -> warmPool.schedule(binding.instanceName, now));
+        }
+        Runnable launch = () -> {
+            for (int i = 0; i < group.size(); i++) {
+                RunStatus status = groupStatuses.get(i);
+                if (warmPool != null && !warmPool.acquire(group.get(i).instanceName, WARM_TIMEOUT)) {
+                    status.updateState("RUNNING", "Instance not confirmed booted; starting anyway");
+                } else {
+                    status.updateState("RUNNING", "Broadcasting");
+                }
+            }
+            if (runs.containsKey(runId)) {
+                for (int i = 0; i < group.size(); i++) {
+                    BotInstanceBinding binding = group.get(i);
+                    RunStatus status = groupStatuses.get(i);
+                    watchHealth(binding, bot, name -> dropFromBroadcast(runId, binding, status));
+                    watchPopups(runId, bot, binding.instanceName);
+                }
+                scheduleScripts(runId, bot, BROADCAST, group.stream().map(b -> b.instanceName).toList());
+            }
+        };
+        if (warmPool == null) {
+            launch.run();
+            return;
+        }
+        groupStatuses.forEach(status -> status.updateState("STARTING", "Waiting for instance to boot"));
+        CompletableFuture.runAsync(launch).exceptionally(e -> {
+            for (int i = 0; i < group.size(); i++) {
+                failStart(runId, group.get(i), groupStatuses.get(i), e);
             }
+            return null;
         });
-        return runId;
     }
 
-    private void scheduleScripts(String runId, BotProfile bot, String instanceName, List<BotScriptRef> scripts) {
-        scripts.stream().filter(ref -> ref.enabled).forEach(ref -> {
+    /**
+     * Health gave up on one instance of a broadcast: take it out of the lockstep run, then free
+     * it, leaving the rest of the group running.
+     */
+    private void dropFromBroadcast(String runId, BotInstanceBinding binding, RunStatus status) {
+        if (!runs.containsKey(runId)) {
+            return;
+        }
+        // Before the release, so nothing this run sends can reach the instance's next owner
+        List<String> ids = scriptRuns.getOrDefault(scriptKey(runId, BROADCAST), List.of());
+        ids.forEach(id -> scriptEngine.drop(id, binding.instanceName));
+        unwatchPopups(runId, binding.instanceName);
+        registry.release(binding.instanceName, runId);
+        if (warmPool != null) {
+            warmPool.release(binding.instanceName);
+        }
+        status.updateState("ERROR", "Instance unresponsive; dropped from broadcast");
+        logService.warn("Instance {} unresponsive after recovery; dropped from broadcast run {}", binding.instanceName, runId);
+    }
+
+    private void startOn(String runId, BotProfile bot, BotInstanceBinding binding, RunStatus status) {
+        if (registry.reserve(binding.instanceName, runId)) {
+            if (warmPool == null) {
+                watchHealth(runId, bot, binding, status);
+                watchPopups(runId, bot, binding.instanceName);
+                scheduleScripts(runId, bot, binding.instanceName, List.of(binding.instanceName));
+            } else {
+                status.updateState("STARTING", "Waiting for instance to boot");
+                CompletableFuture.runAsync(() -> {
+                    if (!warmPool.acquire(binding.instanceName, WARM_TIMEOUT)) {
+                        status.updateState("RUNNING", "Instance not confirmed booted; starting anyway");
+                    } else {
+                        status.updateState("RUNNING", "Scheduled");
+                    }
+                    if (runs.containsKey(runId)) {
+                        watchHealth(runId, bot, binding, status);
+                        watchPopups(runId, bot, binding.instanceName);
+                        scheduleScripts(runId, bot, binding.instanceName, List.of(binding.instanceName));
+                    }
+                }).exceptionally(e -> {
+                    failStart(runId, binding, status, e);
+                    return null;
+                });
+            }
+        } else {
+            status.updateState("WAITING", "Instance busy");
+        }
+    }
+
+    /**
+     * Watch the instance once it is booted; the game package comes from the bot's "gamePackage" override.
+     */
+    private void watchHealth(String runId, BotProfile bot, BotInstanceBinding binding, RunStatus status) {
+        watchHealth(binding, bot, name -> reschedule(runId, bot, binding, status));
+    }
+
+    private void watchHealth(BotInstanceBinding binding, BotProfile bot, Consumer<String> onGiveUp) {
+        if (health == null) {
+            return;
+        }
+        Object pkg = bot.overrides == null ? null : bot.overrides.get("gamePackage");
+        health.watch(binding.instanceName, pkg == null ? null : pkg.toString(), onGiveUp);
+    }
+
+    /**
+     * Open a logcat popup watch on the instance if a popup manager is set and the bot's game
+     * has logcat popups.
+     */
+    private void watchPopups(String runId, BotProfile bot, String instanceName) {
+        GamePopupManager manager = popups;
+        if (manager == null || adb == null || bot.game == null || bot.game.isBlank()) {
+            return;
+        }
+        String serial = serial(instanceName);
+        LogcatStream stream = manager.watchLogcat(adb, serial, bot.game,
+                popup -> onPopup(runId, instanceName, serial, popup));
+        if (stream == null) {
+            return;
+        }
+        LogcatStream previous = popupStreams.put(scriptKey(runId, instanceName), stream);
+        if (previous != null) {
+            previous.close();
+        }
+        if (!runs.containsKey(runId)) {
+            // Stopped while opening
+            unwatchPopups(runId, instanceName);
+        }
+    }
+
+    private void unwatchPopups(String runId, String instanceName) {
+        LogcatStream stream = popupStreams.remove(scriptKey(runId, instanceName));
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    private void onPopup(String runId, String instanceName, String serial, GamePopupManager.PopupDefinition popup) {
+        Map<String, Integer> at = popup.coordinates;
+        if ("tap".equalsIgnoreCase(popup.action) && at != null && at.containsKey("x") && at.containsKey("y")) {
+            boolean tapped = adb.tap(serial, at.get("x"), at.get("y"));
+            logService.info("Popup {} on {} (run {}): {}", popup.id, instanceName, runId, tapped ? "tapped" : "tap failed");
+        } else {
+            logService.warn("Popup {} on {} (run {})", popup.id, instanceName, runId);
+        }
+    }
+
+    private String serial(String instanceName) {
+        if (serials == null) {
+            return instanceName;
+        }
+        try {
+            String serial = serials.apply(instanceName);
+            return serial != null ? serial : instanceName;
+        } catch (RuntimeException e) {
+            return instanceName;
+        }
+    }
+
+    /**
+     * Called by the health monitor after recovery failed: free the instance and try again later.
+     */
+    private void reschedule(String runId, BotProfile bot, BotInstanceBinding binding, RunStatus status) {
+        if (!runs.containsKey(runId)) {
+            return;
+        }
+        // Only this instance's scripts; the bot's other instances keep running
+        stopScripts(runId, binding.instanceName);
+        unwatchPopups(runId, binding.instanceName);
+        registry.release(binding.instanceName, runId);
+        if (warmPool != null) {
+            warmPool.release(binding.instanceName);
+        }
+        status.updateState("WAITING", "Instance unresponsive; rescheduled");
+        logService.warn("Instance {} unresponsive after recovery; rescheduling run {}", binding.instanceName, runId);
+        CompletableFuture.runAsync(() -> {
+            if (runs.containsKey(runId)) {
+                status.updateState("RUNNING", "Rescheduled");
+                try {
+                    startOn(runId, bot, binding, status);
+                } catch (Exception e) {
+                    failStart(runId, binding, status, e);
+                }
+            }
+        }, CompletableFuture.delayedExecutor(RESCHEDULE_DELAY_MS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Starting scripts on the instance failed off the caller's thread: show it on the status and
+     * give the instance back instead of leaving it reserved with nothing running.
+     */
+    private void failStart(String runId, BotInstanceBinding binding, RunStatus status, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        stopScripts(runId, binding.instanceName);
+        unwatchPopups(runId, binding.instanceName);
+        registry.release(binding.instanceName, runId);
+        if (health != null) {
+            health.unwatch(binding.instanceName);
+        }
+        if (warmPool != null) {
+            warmPool.release(binding.instanceName);
+        }
+        status.updateState("ERROR", "Start failed: " + cause.getMessage());
+        logService.error("Run {} failed to start on {}: {}", runId, binding.instanceName, String.valueOf(cause));
+    }
+
+    private void stopScripts(String runId, String instanceName) {
+        List<String> ids = scriptRuns.remove(scriptKey(runId, instanceName));
+        if (ids != null) {
+            ids.forEach(scriptEngine::stop);
+        }
+    }
+
+    private static String scriptKey(String runId, String instanceName) {
+        return runId + "/" + instanceName;
+    }
+
+    /**
+     * Start the bot's enabled scripts on the instances, tracked under {@code key}: the instance
+     * name, or {@link #BROADCAST} for one lockstep run over several instances.
+     */
+    private void scheduleScripts(String runId, BotProfile bot, String key, List<String> instanceNames) {
+        bot.scripts.stream().filter(ref -> ref.enabled).forEach(ref -> {
             Script script = new Script();
             script.name = ref.scriptName;
             LogStep logStep = new LogStep();
             logStep.message = "Running script " + ref.scriptName;
             script.steps.add(logStep);
             ScriptRunSpec spec = new ScriptRunSpec();
-            spec.runId = runId;
+            // Unique per script start, so restarts never collide with a run still winding down
+            spec.runId = scriptKey(runId, key) + "#" + scriptSeq.incrementAndGet();
+            scriptRuns.computeIfAbsent(scriptKey(runId, key), k -> new CopyOnWriteArrayList<>()).add(spec.runId);
             spec.botId = bot.id;
-            spec.instanceName = instanceName;
+            spec.instanceName = instanceNames.get(0);
+            spec.instanceNames = new ArrayList<>(instanceNames);
             spec.script = script;
             Map<String, Object> vars = bot.overrides == null ? Map.of() : bot.overrides;
             spec.variables = new HashMap<>(vars);
@@ -86,17 +401,49 @@ public final class DefaultRunnerService implements RunnerService {
         });
     }
 
+    @Override
+    public void prepare(BotProfile bot, long startAtEpochMs) {
+        if (warmPool == null) {
+            return;
+        }
+        bot.instances.forEach(binding -> warmPool.schedule(binding.instanceName, startAtEpochMs));
+    }
+
     @Override
     public void stop(String runId) {
         List<RunStatus> statuses = runs.remove(runId);
         if (statuses != null) {
+            stopScripts(runId, BROADCAST);
             statuses.forEach(status -> {
-                registry.release(status.instanceName, runId);
+                stopScripts(runId, status.instanceName);
+                unwatchPopups(runId, status.instanceName);
+                // An instance that was busy with another run is that run's to watch and release
+                if (!releaseReservation(runId, status.instanceName)) {
+                    status.updateState("STOPPED", "Stopped by user");
+                    return;
+                }
+                if (health != null) {
+                    health.unwatch(status.instanceName);
+                }
+                if (warmPool != null) {
+                    warmPool.release(status.instanceName);
+                }
                 status.updateState("STOPPED", "Stopped by user");
             });
         }
     }
 
+    /**
+     * Release the instance if this run holds it.
+     *
+     * @return true if the run held it
+     */
+    private boolean releaseReservation(String runId, String instanceName) {
+        boolean held = registry.isReserved(instanceName);
+        registry.release(instanceName, runId);
+        return held && !registry.isReserved(instanceName);
+    }
+
     @Override
     public List<RunStatus> list() {
         return runs.values().stream().flatMap(List::stream).toList();
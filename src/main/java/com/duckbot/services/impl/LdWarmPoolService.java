@@ -0,0 +1,266 @@
+package com.duckbot.services.impl;
+
+import com.duckbot.adb.Instance;
+import com.duckbot.adb.LdPlayerManager;
+import com.duckbot.adb.LifecycleResult;
+import com.duckbot.core.Config;
+import com.duckbot.services.InstanceDiscoveryService;
+import com.duckbot.services.WarmPoolService;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Warm pool on top of {@link LdPlayerManager}.
+ *
+ * A maintenance pass every few seconds boots instances scheduled to start within the
+ * lookahead window and tops up the idle spares, never holding more instances up than the
+ * memory budget allows. Instances nobody needs soon are quit once idle past the grace period.
+ * When a discovery service is given, instances started or stopped outside the pool are
+ * picked up from its snapshot.
+ */
+public final class LdWarmPoolService implements WarmPoolService {
+
+    private static final long MAINTAIN_INTERVAL_MS = 5000;
+    /** Discovery may still list a just-quit instance as running for a moment. */
+    private static final long QUIT_SETTLE_MS = 30000;
+    /** A failed launch is only retried for a new schedule or acquire, or after this long. */
+    private static final long LAUNCH_RETRY_MS = 60000;
+
+    private enum State { COLD, BOOTING, WARM, IN_USE }
+
+    private static final class Entry {
+        State state = State.COLD;
+        long idleSince = System.currentTimeMillis();
+        long scheduledAt = Long.MAX_VALUE;
+        long quitAt;
+        long retryAt;
+        boolean spare;
+        /** Used by a run although acquire timed out; kept up until released. */
+        boolean claimed;
+    }
+
+    private final LdPlayerManager ldPlayer;
+    private final InstanceDiscoveryService discovery;
+    private final Config.WarmPoolConfig config;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final ExecutorService lifecycle = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "warm-pool-lifecycle");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Thread worker;
+    private volatile boolean closed;
+
+    public LdWarmPoolService(LdPlayerManager ldPlayer, InstanceDiscoveryService discovery, Config.WarmPoolConfig config) {
+        this.ldPlayer = ldPlayer;
+        this.discovery = discovery;
+        this.config = config;
+        for (String name : config.instances) {
+            entry(name).spare = true;
+        }
+        this.worker = new Thread(this::loop, "warm-pool");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    @Override
+    public synchronized void schedule(String instanceName, long startAtEpochMs) {
+        Entry entry = entry(instanceName);
+        entry.scheduledAt = Math.min(entry.scheduledAt, startAtEpochMs);
+        entry.retryAt = 0;
+        notifyAll();
+    }
+
+    @Override
+    public boolean acquire(String instanceName, Duration timeout) {
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        synchronized (this) {
+            schedule(instanceName, System.currentTimeMillis());
+            Entry entry = entry(instanceName);
+            while (entry.state != State.WARM) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || closed) {
+                    timedOut(entry);
+                    return false;
+                }
+                try {
+                    wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    timedOut(entry);
+                    return false;
+                }
+            }
+            entry.state = State.IN_USE;
+            entry.scheduledAt = Long.MAX_VALUE;
+            return true;
+        }
+    }
+
+    /**
+     * The caller may start on the instance anyway: stop retrying the launch, and never idle-quit
+     * it under the caller, until it is released.
+     */
+    private void timedOut(Entry entry) {
+        entry.scheduledAt = Long.MAX_VALUE;
+        entry.claimed = true;
+    }
+
+    @Override
+    public synchronized void release(String instanceName) {
+        Entry entry = entries.get(instanceName);
+        if (entry == null) {
+            return;
+        }
+        entry.scheduledAt = Long.MAX_VALUE;
+        entry.claimed = false;
+        if (entry.state == State.IN_USE) {
+            entry.state = State.WARM;
+        }
+        entry.idleSince = System.currentTimeMillis();
+        notifyAll();
+    }
+
+    @Override
+    public synchronized Map<String, String> states() {
+        Map<String, String> states = new LinkedHashMap<>();
+        entries.forEach((name, entry) -> states.put(name, entry.state.name()));
+        return states;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+        lifecycle.shutdownNow();
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    private void loop() {
+        while (!closed) {
+            maintain();
+            synchronized (this) {
+                try {
+                    wait(MAINTAIN_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void maintain() {
+        List<String> toLaunch = new ArrayList<>();
+        List<String> toQuit = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            if (discovery != null) {
+                syncWithDiscovery(discovery.snapshot(), now);
+            }
+            long soon = now + config.lookaheadSeconds * 1000L;
+            int maxWarm = Math.max(1, config.memoryBudgetMb / Math.max(1, config.instanceMemoryMb));
+            int up = (int) entries.values().stream().filter(e -> e.state != State.COLD).count();
+
+            // Scheduled runs first, soonest first
+            List<Map.Entry<String, Entry>> due = entries.entrySet().stream()
+                    .filter(e -> e.getValue().state == State.COLD && e.getValue().scheduledAt <= soon
+                            && e.getValue().retryAt <= now)
+                    .sorted(Comparator.comparingLong(e -> e.getValue().scheduledAt))
+                    .toList();
+            for (Map.Entry<String, Entry> e : due) {
+                if (up >= maxWarm) break;
+                toLaunch.add(e.getKey());
+                up++;
+            }
+
+            // Then spares that nobody has claimed
+            int idleSpares = (int) entries.values().stream()
+                    .filter(e -> e.spare && e.scheduledAt > soon && (e.state == State.WARM || e.state == State.BOOTING))
+                    .count();
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (idleSpares >= config.spares || up >= maxWarm) break;
+                Entry entry = e.getValue();
+                if (entry.spare && entry.state == State.COLD && entry.retryAt <= now && !toLaunch.contains(e.getKey())) {
+                    toLaunch.add(e.getKey());
+                    idleSpares++;
+                    up++;
+                }
+            }
+
+            // Idle past the grace period and not needed soon; keep the configured spares
+            long grace = config.idleGraceSeconds * 1000L;
+            int keptSpares = 0;
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.state != State.WARM || entry.scheduledAt <= soon || entry.claimed) continue;
+                if (entry.spare && keptSpares < config.spares) {
+                    keptSpares++;
+                    continue;
+                }
+                if (now - entry.idleSince >= grace) {
+                    toQuit.add(e.getKey());
+                }
+            }
+
+            for (String name : toLaunch) entries.get(name).state = State.BOOTING;
+            for (String name : toQuit) {
+                entries.get(name).state = State.COLD;
+                entries.get(name).quitAt = now;
+            }
+        }
+        if (!toLaunch.isEmpty()) {
+            lifecycle.execute(() -> launch(toLaunch));
+        }
+        if (!toQuit.isEmpty()) {
+            lifecycle.execute(() -> ldPlayer.quitAll(toQuit));
+        }
+    }
+
+    private void launch(List<String> names) {
+        List<LifecycleResult> results = ldPlayer.launchAll(names);
+        for (LifecycleResult result : results) {
+            if (result.success && config.gamePackage != null && !config.gamePackage.isBlank()) {
+                ldPlayer.runApp(result.instance, config.gamePackage);
+            }
+        }
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (LifecycleResult result : results) {
+                Entry entry = entry(result.instance);
+                if (entry.state == State.BOOTING) {
+                    entry.state = result.success ? State.WARM : State.COLD;
+                    entry.idleSince = now;
+                    entry.retryAt = result.success ? 0 : now + LAUNCH_RETRY_MS;
+                }
+            }
+            notifyAll();
+        }
+    }
+
+    private void syncWithDiscovery(List<Instance> snapshot, long now) {
+        for (Instance inst : snapshot) {
+            Entry entry = entries.get(inst.name);
+            if (entry == null) continue;
+            if (inst.running && entry.state == State.COLD && now - entry.quitAt > QUIT_SETTLE_MS) {
+                entry.state = State.WARM;
+                entry.idleSince = now;
+            } else if (!inst.running && entry.state == State.WARM) {
+                entry.state = State.COLD;
+            }
+        }
+        notifyAll();
+    }
+
+    private Entry entry(String name) {
+        return entries.computeIfAbsent(name, n -> new Entry());
+    }
+}
@@ -0,0 +1,161 @@
+package com.duckbot.services.impl;
+
+import com.duckbot.adb.Instance;
+import com.duckbot.adb.LdConsoleHelper;
+import com.duckbot.services.InstanceDiscoveryService;
+import com.duckbot.services.InstanceEvent;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Discovers LDPlayer instances by polling {@code ldconsole list2} on a background thread.
+ *
+ * The poll interval starts short, doubles while nothing changes and drops back to the
+ * minimum on any change. Console executables are located once and only searched for again
+ * when one disappears. Listeners run on the discovery thread.
+ */
+public final class PollingInstanceDiscoveryService implements InstanceDiscoveryService {
+
+    private static final long MIN_INTERVAL_MS = 1000;
+    private static final long MAX_INTERVAL_MS = 15000;
+
+    private volatile List<String> ldRoots;
+    private final List<Consumer<InstanceEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final Object pollLock = new Object();
+    private final Thread worker;
+
+    private volatile List<Instance> snapshot = List.of();
+    private volatile Map<String, Instance> byName = Map.of();
+    private volatile boolean closed;
+    /** Set by any poll that saw a change, including {@link #refresh()}; resets the interval. */
+    private volatile boolean changedSinceWait;
+    private List<File> consoles = List.of();
+
+    public PollingInstanceDiscoveryService(List<String> ldRoots) {
+        this.ldRoots = List.copyOf(ldRoots);
+        this.worker = new Thread(this::loop, "instance-discovery");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Discover from other LDPlayer install folders from the next poll on; instances only
+     * under the old folders are reported as removed then.
+     */
+    public void setRoots(List<String> ldRoots) {
+        synchronized (pollLock) {
+            this.ldRoots = List.copyOf(ldRoots);
+            consoles = List.of();
+        }
+    }
+
+    @Override
+    public List<Instance> snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public Optional<Instance> find(String name) {
+        return Optional.ofNullable(byName.get(name));
+    }
+
+    @Override
+    public List<Instance> refresh() {
+        poll();
+        return snapshot;
+    }
+
+    @Override
+    public void addListener(Consumer<InstanceEvent> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Consumer<InstanceEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+    }
+
+    private void loop() {
+        long interval = MIN_INTERVAL_MS;
+        while (!closed) {
+            poll();
+            interval = changedSinceWait ? MIN_INTERVAL_MS : Math.min(interval * 2, MAX_INTERVAL_MS);
+            changedSinceWait = false;
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Read list2 once and publish the differences.
+     *
+     * @return whether anything changed
+     */
+    private boolean poll() {
+        synchronized (pollLock) {
+            List<InstanceEvent> events = new ArrayList<>();
+            if (consoles.isEmpty() || consoles.stream().anyMatch(f -> !f.exists())) {
+                consoles = LdConsoleHelper.findConsoles(ldRoots);
+            }
+            List<Instance> current = LdConsoleHelper.readInstances(consoles);
+            if (current.isEmpty() && !snapshot.isEmpty()) {
+                // LDPlayer always lists its default instance; an empty list means the console failed
+                return false;
+            }
+            Map<String, Instance> next = new LinkedHashMap<>();
+            for (Instance inst : current) {
+                next.put(inst.name, inst);
+                Instance old = byName.get(inst.name);
+                if (old == null) {
+                    events.add(new InstanceEvent(InstanceEvent.Type.ADDED, inst, null));
+                } else if (!sameState(old, inst)) {
+                    events.add(new InstanceEvent(InstanceEvent.Type.STATE_CHANGED, inst, old));
+                }
+            }
+            for (Instance old : byName.values()) {
+                if (!next.containsKey(old.name)) {
+                    events.add(new InstanceEvent(InstanceEvent.Type.REMOVED, old, old));
+                }
+            }
+            if (events.isEmpty()) {
+                return false;
+            }
+            byName = Map.copyOf(next);
+            snapshot = List.copyOf(current);
+            changedSinceWait = true;
+            // Still under the lock so listeners see events in poll order
+            for (InstanceEvent event : events) {
+                for (Consumer<InstanceEvent> listener : listeners) {
+                    try {
+                        listener.accept(event);
+                    } catch (Exception ignored) {
+                        // A failing listener must not stop discovery
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    private static boolean sameState(Instance a, Instance b) {
+        return a.index == b.index && a.running == b.running && a.pid == b.pid && a.vboxPid == b.vboxPid
+                && a.topWindowHandle == b.topWindowHandle && a.bindWindowHandle == b.bindWindowHandle
+                && a.width == b.width && a.height == b.height && a.dpi == b.dpi;
+    }
+}
@@ -0,0 +1,97 @@
+package com.duckbot.adb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdbClientTest {
+
+    private static final String SERIAL = "emulator-5554";
+
+    private FakeAdbServer server;
+    private AdbClient adb;
+    private final AtomicInteger inputs = new AtomicInteger();
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeAdbServer();
+        server.service("exec:sh", FakeAdbServer.shell(line -> {
+            if (line.startsWith("input ")) {
+                inputs.incrementAndGet();
+                if (line.equals("input tap 9 9")) {
+                    sleep(800);
+                }
+                return "";
+            }
+            if (line.equals("printf abc")) {
+                return "abc";
+            }
+            if (line.equals("getprop")) {
+                return "[ro.product.model]: [LD]\n\n";
+            }
+            return null;
+        }));
+        server.service("shell:", (service, socket) -> inputs.incrementAndGet());
+        adb = new AdbClient("adb-not-installed", server.transport(1000));
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        adb.close();
+        server.close();
+    }
+
+    @Test
+    void callsAfterCloseReturnFallbacksInsteadOfThrowing() {
+        assertTrue(adb.tap(SERIAL, 1, 2));
+        adb.close();
+
+        assertFalse(adb.tap(SERIAL, 1, 2));
+        assertFalse(adb.shell(SERIAL, "input", "keyevent", "4"));
+        assertNull(adb.shellOutput(SERIAL, "getprop"));
+        assertFalse(adb.runBatch(SERIAL, new InputBatch().tap(1, 1)).success);
+        assertNotNull(adb.screencap(SERIAL));
+        assertThrows(CompletionException.class, () -> adb.tapAsync(SERIAL, 1, 2, Duration.ofSeconds(1)).join());
+    }
+
+    @Test
+    void nonZeroExitFailsTheCallButKeepsOutput() {
+        assertTrue(adb.shell(SERIAL, "input", "tap", "1", "2"));
+        assertFalse(adb.shell(SERIAL, "missing-binary"));
+        assertEquals("", adb.shellOutput(SERIAL, "missing-binary"));
+    }
+
+    @Test
+    void outputKeepsItsOwnTrailingNewlines() {
+        assertEquals("abc", adb.shellOutput(SERIAL, "printf", "abc"));
+        assertEquals("[ro.product.model]: [LD]\n\n", adb.shellOutput(SERIAL, "getprop"));
+    }
+
+    @Test
+    void timedOutCommandIsNotSentAgain() throws InterruptedException {
+        assertThrows(CompletionException.class, () -> adb.tapAsync(SERIAL, 9, 9, Duration.ofMillis(300)).join());
+        Thread.sleep(1000);
+
+        assertEquals(1, inputs.get());
+        assertTrue(adb.tap(SERIAL, 1, 2));
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.duckbot.adb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdbSocketTransportTest {
+
+    private static final String SERIAL = "emulator-5554";
+
+    private FakeAdbServer server;
+    private AdbSocketTransport transport;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = new FakeAdbServer();
+        transport = server.transport(300);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void hostQueryReturnsLengthPrefixedReply() throws IOException {
+        server.reply("host:devices", SERIAL + "\tdevice\n");
+
+        assertEquals("0029", transport.hostQuery("host:version"));
+        assertEquals(SERIAL + "\tdevice\n", transport.hostQuery("host:devices"));
+        assertTrue(transport.isAvailable());
+    }
+
+    @Test
+    void failReplyCarriesServerMessage() {
+        IOException e = assertThrows(IOException.class, () -> transport.hostQuery("host:bogus"));
+        assertTrue(e.getMessage().contains("unknown host service"), e.getMessage());
+    }
+
+    @Test
+    void openServiceSwitchesToDeviceFirst() throws IOException {
+        server.service("exec:echo", (service, socket) ->
+                socket.getOutputStream().write("hi\n".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("hi\n", new String(transport.exec(SERIAL, "echo hi"), StandardCharsets.UTF_8));
+        assertEquals(List.of("host:transport:" + SERIAL, "exec:echo hi"), server.requests);
+    }
+
+    @Test
+    void unknownServiceFails() {
+        assertThrows(IOException.class, () -> transport.openService(SERIAL, "exec:nothing"));
+    }
+
+    @Test
+    void hostCommandAcceptsDoubleAcknowledgement() throws IOException {
+        transport.hostCommand("host-serial:" + SERIAL + ":forward:tcp:1234;localabstract:minitouch");
+        assertEquals(List.of("host-serial:" + SERIAL + ":forward:tcp:1234;localabstract:minitouch"), server.requests);
+    }
+
+    @Test
+    void stalledServerFailsHandshakeInsteadOfHanging() {
+        server.stall();
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertThrows(IOException.class, () -> transport.hostQuery("host:version"));
+            assertThrows(IOException.class, () -> transport.openService(SERIAL, "shell:echo"));
+        });
+    }
+
+    @Test
+    void openServiceStreamHasNoReadTimeout() throws IOException {
+        server.service("exec:slow", (service, socket) -> {
+            Thread.sleep(900);
+            socket.getOutputStream().write("late".getBytes(StandardCharsets.UTF_8));
+        });
+
+        assertEquals("late", new String(transport.exec(SERIAL, "slow"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void unreachableServerIsUnavailable() throws IOException {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = probe.getLocalPort();
+        }
+
+        assertFalse(new AdbSocketTransport("127.0.0.1", port, 300).isAvailable());
+    }
+
+    @Test
+    void sendFileFollowsSyncProtocol() throws Exception {
+        byte[] data = new byte[150 * 1024];
+        new Random(7).nextBytes(data);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        List<String> frames = new CopyOnWriteArrayList<>();
+        CountDownLatch quit = new CountDownLatch(1);
+        server.service("sync:", (service, socket) -> {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            while (true) {
+                byte[] id = new byte[4];
+                in.readFully(id);
+                String kind = new String(id, StandardCharsets.US_ASCII);
+                int length = Integer.reverseBytes(in.readInt());
+                frames.add(kind + ":" + length);
+                switch (kind) {
+                    case "SEND" -> frames.add(new String(in.readNBytes(length), StandardCharsets.UTF_8));
+                    case "DATA" -> received.write(in.readNBytes(length));
+                    case "DONE" -> {
+                        OutputStream out = socket.getOutputStream();
+                        out.write("OKAY\0\0\0\0".getBytes(StandardCharsets.US_ASCII));
+                        out.flush();
+                    }
+                    default -> {
+                        quit.countDown();
+                        return;
+                    }
+                }
+            }
+        });
+
+        try (Socket socket = transport.openService(SERIAL, "sync:")) {
+            AdbSocketTransport.sendFile(socket, new ByteArrayInputStream(data), "/sdcard/x.bin", 0100644, 1234, null);
+        }
+
+        assertTrue(quit.await(2, TimeUnit.SECONDS));
+        assertArrayEquals(data, received.toByteArray());
+        assertEquals(List.of("SEND:19", "/sdcard/x.bin,33188", "DATA:65536", "DATA:65536", "DATA:22528", "DONE:1234", "QUIT:0"),
+                frames);
+    }
+
+    @Test
+    void sendFileSurfacesDeviceFailure() {
+        server.service("sync:", (service, socket) -> {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            while (true) {
+                byte[] id = new byte[4];
+                in.readFully(id);
+                int length = Integer.reverseBytes(in.readInt());
+                String kind = new String(id, StandardCharsets.US_ASCII);
+                if (!"DONE".equals(kind)) {
+                    in.readNBytes(length);
+                    continue;
+                }
+                byte[] message = "Read-only file system".getBytes(StandardCharsets.UTF_8);
+                OutputStream out = socket.getOutputStream();
+                out.write("FAIL".getBytes(StandardCharsets.US_ASCII));
+                out.write(new byte[]{(byte) message.length, 0, 0, 0});
+                out.write(message);
+                out.flush();
+                return;
+            }
+        });
+
+        IOException e = assertThrows(IOException.class, () -> {
+            try (Socket socket = transport.openService(SERIAL, "sync:")) {
+                AdbSocketTransport.sendFile(socket, new ByteArrayInputStream(new byte[10]), "/system/x", 0100644, 0, null);
+            }
+        });
+        assertTrue(e.getMessage().contains("Read-only file system"), e.getMessage());
+    }
+}
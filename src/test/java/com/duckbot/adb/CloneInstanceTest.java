@@ -0,0 +1,75 @@
+package com.duckbot.adb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link LdPlayerManager#cloneInstance} against tools/fake-ldplayer/ldconsole.
+ */
+@DisabledOnOs(OS.WINDOWS)
+class CloneInstanceTest {
+
+    @TempDir
+    Path dir;
+    private Path state;
+    private LdPlayerManager ldPlayer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        state = dir.resolve("state.csv");
+        Files.writeString(state, "0,golden,0,0,0,-1,-1,960,540,240\n1,taken,0,0,0,-1,-1,960,540,240\n");
+        FakeLdConsole.install(dir, state);
+        ldPlayer = new LdPlayerManager(new AdbClient("adb-not-installed", new AdbSocketTransport("127.0.0.1", 1, 200)),
+                dir.toString());
+    }
+
+    @AfterEach
+    void tearDown() {
+        ldPlayer.adb().close();
+    }
+
+    @Test
+    void clonesAreCopiedFromTheGolden() throws IOException {
+        List<LifecycleResult> results = ldPlayer.cloneInstance("golden", List.of("golden-1", "golden-2"), new CloneSettings());
+
+        assertTrue(results.stream().allMatch(r -> r.success), results.toString());
+        assertEquals(List.of("golden-1", "golden-2"), results.stream().map(r -> r.instance).toList());
+        List<String> rows = Files.readAllLines(state);
+        assertTrue(rows.stream().anyMatch(r -> r.contains(",golden-1,")), rows.toString());
+        assertTrue(rows.stream().anyMatch(r -> r.contains(",golden-2,")), rows.toString());
+    }
+
+    @Test
+    void existingNameIsNotCopiedOver() throws IOException {
+        List<LifecycleResult> results = ldPlayer.cloneInstance("golden", List.of("taken", "golden-1"), new CloneSettings());
+
+        assertFalse(results.get(0).success);
+        assertEquals("Instance already exists", results.get(0).message);
+        assertTrue(results.get(1).success, results.get(1).toString());
+        assertEquals(1, Files.readAllLines(state).stream().filter(r -> r.contains(",taken,")).count());
+    }
+
+    @Test
+    void runningGoldenIsRefused() throws IOException {
+        Files.writeString(state, "0,golden,0,0,1,4242,4243,960,540,240\n");
+
+        List<LifecycleResult> results = ldPlayer.cloneInstance("golden", List.of("golden-1", "golden-2"), new CloneSettings());
+
+        assertTrue(results.stream().noneMatch(r -> r.success));
+        assertTrue(results.get(0).message.contains("is running"), results.get(0).message);
+        assertTrue(Files.readAllLines(state).stream().noneMatch(r -> r.contains(",golden-1,")));
+    }
+}
@@ -0,0 +1,128 @@
+package com.duckbot.adb;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeviceGateTest {
+
+    private static final long NO_AGING = 60_000;
+
+    @Test
+    void higherLanesGoFirst() throws Exception {
+        DeviceGate gate = new DeviceGate(1, 0, 1, NO_AGING);
+        assertTrue(gate.acquire(AdbClient.Lane.INPUT, deadline(1000)));
+        List<AdbClient.Lane> order = new CopyOnWriteArrayList<>();
+        Thread preview = waiter(gate, AdbClient.Lane.PREVIEW, order);
+        awaitWaiting(gate, AdbClient.Lane.PREVIEW);
+        Thread capture = waiter(gate, AdbClient.Lane.CAPTURE, order);
+        awaitWaiting(gate, AdbClient.Lane.CAPTURE);
+        Thread input = waiter(gate, AdbClient.Lane.INPUT, order);
+        awaitWaiting(gate, AdbClient.Lane.INPUT);
+
+        gate.release();
+        join(preview, capture, input);
+
+        assertEquals(List.of(AdbClient.Lane.INPUT, AdbClient.Lane.CAPTURE, AdbClient.Lane.PREVIEW), order);
+        assertEquals(1L, gate.stats().get(AdbClient.Lane.PREVIEW).calls);
+    }
+
+    @Test
+    void tokenBucketPacesCallsAfterTheBurst() throws Exception {
+        DeviceGate gate = new DeviceGate(4, 20, 2, NO_AGING);
+        long start = System.nanoTime();
+        for (int i = 0; i < 12; i++) {
+            assertTrue(gate.acquire(AdbClient.Lane.CAPTURE, deadline(5000)));
+            gate.release();
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        // 2 from the burst, then 10 more at 50 ms each
+        assertTrue(elapsedMs >= 450, "too fast: " + elapsedMs + "ms");
+        assertTrue(elapsedMs < 2000, "too slow: " + elapsedMs + "ms");
+    }
+
+    @Test
+    void emptyBucketTimesOut() throws Exception {
+        DeviceGate gate = new DeviceGate(4, 1, 3, NO_AGING);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(gate.acquire(AdbClient.Lane.INPUT, deadline(100)));
+            gate.release();
+        }
+
+        assertFalse(gate.acquire(AdbClient.Lane.INPUT, deadline(100)));
+    }
+
+    @Test
+    void steadyInputDoesNotStarvePreview() throws Exception {
+        DeviceGate gate = new DeviceGate(1, 0, 1, 100);
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread[] flood = new Thread[3];
+        for (int i = 0; i < flood.length; i++) {
+            flood[i] = new Thread(() -> {
+                try {
+                    while (!stop.get()) {
+                        if (gate.acquire(AdbClient.Lane.INPUT, deadline(5000))) {
+                            Thread.sleep(2);
+                            gate.release();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            flood[i].setDaemon(true);
+            flood[i].start();
+        }
+        try {
+            Thread.sleep(50);
+            assertTrue(gate.acquire(AdbClient.Lane.PREVIEW, deadline(2000)), "preview starved");
+            gate.release();
+        } finally {
+            stop.set(true);
+            join(flood);
+        }
+    }
+
+    private static Thread waiter(DeviceGate gate, AdbClient.Lane lane, List<AdbClient.Lane> order) {
+        Thread t = new Thread(() -> {
+            try {
+                if (gate.acquire(lane, deadline(5000))) {
+                    order.add(lane);
+                    gate.release();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    private static void awaitWaiting(DeviceGate gate, AdbClient.Lane lane) throws InterruptedException {
+        long until = System.currentTimeMillis() + 5000;
+        while (gate.stats().get(lane).waiting == 0) {
+            assertTrue(System.currentTimeMillis() < until, lane + " never queued");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void join(Thread... threads) throws InterruptedException {
+        for (Thread t : threads) {
+            t.join(5000);
+            assertFalse(t.isAlive());
+        }
+    }
+
+    private static long deadline(long millis) {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
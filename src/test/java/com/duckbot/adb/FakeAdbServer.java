@@ -0,0 +1,210 @@
+package com.duckbot.adb;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal adb server for tests: speaks the host protocol on a free loopback port, answers
+ * host queries from a table, acknowledges host-serial commands (forward, killforward) and
+ * hands device services to registered handlers.
+ */
+public final class FakeAdbServer implements AutoCloseable {
+
+    private static final Pattern ACK = Pattern.compile("printf '\\\\n%s %d\\\\n' (\\S+) \\$\\?");
+
+    /**
+     * Serves one opened device service; OKAY has already been sent. Returning closes the socket.
+     */
+    @FunctionalInterface
+    public interface Service {
+        void serve(String service, Socket socket) throws Exception;
+    }
+
+    /** Every request received, in order, including the service after host:transport. */
+    final List<String> requests = new CopyOnWriteArrayList<>();
+
+    private final ServerSocket server;
+    private final Map<String, String> replies = new ConcurrentHashMap<>();
+    private final Map<String, Service> services = new ConcurrentHashMap<>();
+    private volatile boolean stalled;
+    private volatile Consumer<String> hostSerial = request -> { };
+
+    public FakeAdbServer() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        replies.put("host:version", "0029");
+        Thread acceptor = new Thread(this::acceptLoop, "fake-adb");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    public AdbSocketTransport transport(int handshakeTimeoutMs) {
+        return new AdbSocketTransport("127.0.0.1", port(), handshakeTimeoutMs);
+    }
+
+    /** Answer a host query with a length-prefixed payload. */
+    FakeAdbServer reply(String request, String payload) {
+        replies.put(request, payload);
+        return this;
+    }
+
+    /** Serve device services whose name starts with {@code prefix}. */
+    public FakeAdbServer service(String prefix, Service handler) {
+        services.put(prefix, handler);
+        return this;
+    }
+
+    /**
+     * What a fake shell command prints and the status it exits with.
+     */
+    record Reply(String output, int status) {
+    }
+
+    /**
+     * An {@code exec:sh} session that answers each command line from {@code commands} and
+     * acks it like the device shell would. A null answer is a command that exits 127.
+     */
+    public static Service shell(Function<String, String> commands) {
+        return shellReplies(line -> {
+            String output = commands.apply(line);
+            return output == null ? new Reply("", 127) : new Reply(output, 0);
+        });
+    }
+
+    static Service shellReplies(Function<String, Reply> commands) {
+        return (service, socket) -> {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = socket.getOutputStream();
+            int status = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                Matcher ack = ACK.matcher(line);
+                if (ack.matches()) {
+                    out.write(("\n" + ack.group(1) + " " + status + "\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                } else if (!line.equals("exec 2>&1")) {
+                    Reply reply = commands.apply(line);
+                    status = reply.status();
+                    out.write(reply.output().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        };
+    }
+
+    /** Called with each host-serial command before it is acknowledged, e.g. to bind a forwarded port. */
+    FakeAdbServer onHostSerial(Consumer<String> listener) {
+        hostSerial = listener;
+        return this;
+    }
+
+    /** Accept connections but never answer, like a hung adb server. */
+    void stall() {
+        stalled = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+
+    private void acceptLoop() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                Thread t = new Thread(() -> handle(socket), "fake-adb-conn");
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+            String request = readRequest(in);
+            requests.add(request);
+            if (stalled) {
+                in.read();
+                return;
+            }
+            if (request.startsWith("host:transport:")) {
+                status(out, "OKAY");
+                String service = readRequest(in);
+                requests.add(service);
+                Service handler = find(service);
+                if (handler == null) {
+                    fail(out, "closed");
+                    return;
+                }
+                status(out, "OKAY");
+                handler.serve(service, socket);
+            } else if (request.startsWith("host-serial:")) {
+                hostSerial.accept(request);
+                status(out, "OKAY");
+                status(out, "OKAY");
+            } else if (replies.containsKey(request)) {
+                status(out, "OKAY");
+                lengthPrefixed(out, replies.get(request));
+            } else {
+                fail(out, "unknown host service");
+            }
+        } catch (Exception ignored) {
+            // Client went away
+        }
+    }
+
+    private Service find(String service) {
+        for (Map.Entry<String, Service> e : services.entrySet()) {
+            if (service.startsWith(e.getKey())) {
+                return e.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String readRequest(DataInputStream in) throws IOException {
+        byte[] len = new byte[4];
+        in.readFully(len);
+        byte[] payload = new byte[Integer.parseInt(new String(len, StandardCharsets.US_ASCII), 16)];
+        in.readFully(payload);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    private static void status(OutputStream out, String code) throws IOException {
+        out.write(code.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private static void fail(OutputStream out, String message) throws IOException {
+        status(out, "FAIL");
+        lengthPrefixed(out, message);
+    }
+
+    private static void lengthPrefixed(OutputStream out, String payload) throws IOException {
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        out.write(String.format("%04x", bytes.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(bytes);
+        out.flush();
+    }
+}
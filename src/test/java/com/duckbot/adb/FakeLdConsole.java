@@ -0,0 +1,28 @@
+package com.duckbot.adb;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Installs tools/fake-ldplayer/ldconsole for a test: a wrapper named like the console that
+ * keeps the fake's list2 rows in a file of the test's own and copies without delay.
+ */
+public final class FakeLdConsole {
+
+    private FakeLdConsole() {
+    }
+
+    /**
+     * Put the wrapper in {@code dir}, which then works as an LDPlayer root.
+     */
+    public static void install(Path dir, Path state) throws IOException {
+        Path console = dir.resolve("ldconsole");
+        Files.writeString(console, "#!/bin/sh\n"
+                + "FAKE_LDCONSOLE_STATE='" + state + "' FAKE_LDCONSOLE_COPY_SECONDS=0 exec '"
+                + Path.of("tools/fake-ldplayer/ldconsole").toAbsolutePath() + "' \"$@\"\n");
+        if (!console.toFile().setExecutable(true)) {
+            throw new IOException("Cannot make " + console + " executable");
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.duckbot.adb;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LdConsoleHelperTest {
+
+    @Test
+    void parsesARunningList2Row() {
+        Instance inst = LdConsoleHelper.parseList2Row("3,Farm 2,1312562,2689810,1,10240,10380,1280,720,240");
+
+        assertEquals(3, inst.index);
+        assertEquals("Farm 2", inst.name);
+        assertEquals(1312562L, inst.topWindowHandle);
+        assertEquals(2689810L, inst.bindWindowHandle);
+        assertTrue(inst.running);
+        assertEquals(10240, inst.pid);
+        assertEquals(10380, inst.vboxPid);
+        assertEquals(1280, inst.width);
+        assertEquals(720, inst.height);
+        assertEquals(240, inst.dpi);
+    }
+
+    @Test
+    void parsesAStoppedRow() {
+        Instance inst = LdConsoleHelper.parseList2Row("0,LDPlayer,0,0,0,-1,-1,960,540,240");
+
+        assertFalse(inst.running);
+        assertEquals(-1, inst.pid);
+        assertEquals(960, inst.width);
+    }
+
+    @Test
+    void shortRowKeepsDefaults() {
+        Instance inst = LdConsoleHelper.parseList2Row("1,LDPlayer-1");
+
+        assertEquals("LDPlayer-1", inst.name);
+        assertFalse(inst.running);
+        assertEquals(-1, inst.pid);
+    }
+
+    @Test
+    void rejectsLinesThatAreNotRows() {
+        assertNull(LdConsoleHelper.parseList2Row(""));
+        assertNull(LdConsoleHelper.parseList2Row("error: console not running"));
+        assertNull(LdConsoleHelper.parseList2Row("x,LDPlayer,0,0,0,-1,-1,960,540,240"));
+        assertNull(LdConsoleHelper.parseList2Row("0,,0,0,0,-1,-1,960,540,240"));
+    }
+}
@@ -0,0 +1,73 @@
+package com.duckbot.adb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogcatStreamTest {
+
+    private static final String SERIAL = "emulator-5554";
+
+    private FakeAdbServer server;
+    private AdbClient adb;
+    private final AtomicInteger starts = new AtomicInteger();
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeAdbServer();
+        server.service("exec:sh", FakeAdbServer.shell(line ->
+                line.startsWith("date ") ? "10-18 12:00:00.000\n" : null));
+        server.service("exec:logcat", (service, socket) -> {
+            OutputStream out = socket.getOutputStream();
+            if (starts.incrementAndGet() == 1) {
+                out.write(lines(
+                        "10-18 11:59:59.900  100  100 I Game: before the stream",
+                        "10-18 12:00:00.500  100  100 I Game: first"));
+            } else {
+                // Resumed at the last line's time, which logcat replays
+                out.write(lines(
+                        "10-18 12:00:00.500  100  100 I Game: first",
+                        "10-18 12:00:01.000  100  100 I Game: second"));
+                Thread.sleep(5000);
+            }
+            out.flush();
+        });
+        adb = new AdbClient("adb-not-installed", server.transport(1000));
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        adb.close();
+        server.close();
+    }
+
+    @Test
+    void reportsNewLinesOnceAcrossRestarts() throws Exception {
+        BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        try (LogcatStream stream = new LogcatStream(adb, SERIAL, List.of(new LogcatStream.Filter("game", "Game", null)))) {
+            stream.addListener(event -> messages.add(event.message));
+
+            assertEquals("first", messages.poll(3, TimeUnit.SECONDS));
+            assertEquals("second", messages.poll(3, TimeUnit.SECONDS));
+            assertNull(messages.poll(300, TimeUnit.MILLISECONDS));
+        }
+        assertTrue(server.requests.contains("exec:logcat -v threadtime -T '10-18 12:00:00.000' Game:V *:S"), server.requests.toString());
+        assertTrue(server.requests.contains("exec:logcat -v threadtime -T '10-18 12:00:00.500' Game:V *:S"), server.requests.toString());
+    }
+
+    private static byte[] lines(String... lines) {
+        return (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
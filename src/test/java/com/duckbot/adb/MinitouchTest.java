@@ -0,0 +1,159 @@
+package com.duckbot.adb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MinitouchTest {
+
+    private static final String SERIAL = "emulator-5554";
+
+    private FakeAdbServer server;
+    private AdbClient adb;
+    private ServerSocket touchServer;
+    private final BlockingQueue<String> touches = new LinkedBlockingQueue<>();
+    private final AtomicInteger inputs = new AtomicInteger();
+    private volatile int orientation;
+    private volatile boolean minitouchInstalled = true;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeAdbServer();
+        server.service("exec:sh", FakeAdbServer.shell(line -> {
+            if (line.equals("wm size")) {
+                return "Physical size: 1080x1920\n";
+            }
+            if (line.contains("SurfaceOrientation")) {
+                return "    SurfaceOrientation: " + orientation + "\n";
+            }
+            if (line.startsWith("input ")) {
+                inputs.incrementAndGet();
+                return "";
+            }
+            return null;
+        }));
+        server.onHostSerial(request -> {
+            int forward = request.indexOf(":forward:tcp:");
+            if (forward >= 0 && minitouchInstalled) {
+                listen(Integer.parseInt(request.substring(forward + 13, request.indexOf(';'))));
+            }
+        });
+        adb = new AdbClient("adb-not-installed", server.transport(1000));
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        adb.close();
+        server.close();
+        if (touchServer != null) {
+            touchServer.close();
+        }
+    }
+
+    @Test
+    void tapIsScaledToTouchRange() throws Exception {
+        assertTrue(adb.tap(SERIAL, 540, 960, AdbClient.TouchBackend.MINITOUCH));
+
+        assertEquals(List.of("d 0 1080 1920 50", "c", "u 0", "c"), take(4));
+        assertEquals(0, inputs.get());
+    }
+
+    @Test
+    void tapFollowsDisplayRotation() throws Exception {
+        orientation = 1;
+
+        // (480, 540) on the 1920x1080 landscape screen is a quarter down the portrait panel
+        assertTrue(adb.tap(SERIAL, 480, 540, AdbClient.TouchBackend.MINITOUCH));
+
+        assertEquals("d 0 1080 960 50", take(1).get(0));
+    }
+
+    @Test
+    void swipeReturnsOnceTheGestureHasPlayed() throws Exception {
+        long started = System.nanoTime();
+        assertTrue(adb.swipe(SERIAL, 100, 100, 100, 900, 300, AdbClient.TouchBackend.MINITOUCH));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertTrue(elapsedMs >= 300, "returned after " + elapsedMs + " ms");
+        assertEquals("d 0 200 200 50", take(1).get(0));
+    }
+
+    @Test
+    void missingMinitouchFallsBackToInputAndIsNotRetriedEachTap() {
+        minitouchInstalled = false;
+
+        assertTrue(adb.tap(SERIAL, 10, 10, AdbClient.TouchBackend.MINITOUCH));
+        assertTrue(adb.tap(SERIAL, 20, 20, AdbClient.TouchBackend.MINITOUCH));
+
+        assertEquals(2, inputs.get());
+        assertEquals(1, count(":forward:"));
+        assertEquals(1, count(":killforward:"));
+    }
+
+    @Test
+    void closeRemovesTheForward() throws Exception {
+        assertTrue(adb.tap(SERIAL, 1, 1, AdbClient.TouchBackend.MINITOUCH));
+        take(4);
+
+        adb.close();
+
+        assertEquals(1, count(":killforward:tcp:" + touchServer.getLocalPort()));
+    }
+
+    /** Fake minitouch on the forwarded port: sends the banner and records every line. */
+    private void listen(int port) {
+        try {
+            touchServer = new ServerSocket(port, 1, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Thread t = new Thread(() -> {
+            try (Socket socket = touchServer.accept()) {
+                socket.getOutputStream().write("v 1\n^ 10 2160 3840 255\n$ 123\n".getBytes(StandardCharsets.US_ASCII));
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    touches.add(line);
+                }
+            } catch (IOException ignored) {
+                // Test finished
+            }
+        }, "fake-minitouch");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private List<String> take(int lines) throws InterruptedException {
+        List<String> taken = new ArrayList<>();
+        for (int i = 0; i < lines; i++) {
+            String line = touches.poll(2, TimeUnit.SECONDS);
+            if (line == null) {
+                break;
+            }
+            taken.add(line);
+        }
+        return taken;
+    }
+
+    private long count(String part) {
+        return server.requests.stream().filter(r -> r.contains(part)).count();
+    }
+}
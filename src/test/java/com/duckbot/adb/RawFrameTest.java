@@ -0,0 +1,114 @@
+package com.duckbot.adb;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RawFrameTest {
+
+    @Test
+    void rgbaFrameBecomesStandardBgrImage() throws IOException {
+        RawFrame frame = RawFrame.read(stream(2, 1, RawFrame.FORMAT_RGBA_8888, true,
+                0x11, 0x22, 0x33, 0xFF, 0xAA, 0xBB, 0xCC, 0x00), null);
+        BufferedImage image = frame.toImage();
+
+        assertEquals(BufferedImage.TYPE_3BYTE_BGR, image.getType());
+        assertEquals(0x112233, image.getRGB(0, 0) & 0xFFFFFF);
+        assertEquals(0xAABBCC, image.getRGB(1, 0) & 0xFFFFFF);
+        assertEquals(1, frame.colorSpace);
+    }
+
+    @Test
+    void bgraAndRgbFramesKeepTheirColors() throws IOException {
+        BufferedImage bgra = RawFrame.read(stream(1, 1, RawFrame.FORMAT_BGRA_8888, false, 0x33, 0x22, 0x11, 0xFF), null).toImage();
+        BufferedImage rgb = RawFrame.read(stream(1, 1, RawFrame.FORMAT_RGB_888, true, 0x11, 0x22, 0x33), null).toImage();
+
+        assertEquals(0x112233, bgra.getRGB(0, 0) & 0xFFFFFF);
+        assertEquals(0x112233, rgb.getRGB(0, 0) & 0xFFFFFF);
+    }
+
+    @Test
+    void rgb565FrameIsDecoded() throws IOException {
+        // Pure red in 565 is 0xF800, little-endian
+        BufferedImage image = RawFrame.read(stream(1, 1, RawFrame.FORMAT_RGB_565, false, 0x00, 0xF8), null).toImage();
+
+        assertEquals(0xFF0000, image.getRGB(0, 0) & 0xFFFFFF);
+    }
+
+    @Test
+    void imageOutlivesReusedFrame() throws IOException {
+        RawFrame frame = RawFrame.read(stream(1, 1, RawFrame.FORMAT_RGBA_8888, true, 0x11, 0x22, 0x33, 0xFF), null);
+        BufferedImage first = frame.toImage();
+        RawFrame reused = RawFrame.read(stream(1, 1, RawFrame.FORMAT_RGBA_8888, true, 0x44, 0x55, 0x66, 0xFF), frame);
+
+        assertSame(frame, reused);
+        assertEquals(0x112233, first.getRGB(0, 0) & 0xFFFFFF);
+        assertEquals(0x445566, reused.toImage().getRGB(0, 0) & 0xFFFFFF);
+    }
+
+    @Test
+    void truncatedFrameFails() {
+        assertThrows(IOException.class, () -> RawFrame.read(stream(2, 2, RawFrame.FORMAT_RGBA_8888, false, 1, 2, 3), null));
+    }
+
+    /**
+     * Decode plus a Java2D draw of a 1280x720 RGBA frame, the path previews and screencap
+     * callers take. Run with {@code mvn test -Dtest=RawFrameTest -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkToImage() throws IOException {
+        int w = 1280;
+        int h = 720;
+        byte[] pixels = new byte[w * h * 4];
+        new Random(1).nextBytes(pixels);
+        RawFrame frame = RawFrame.read(new ByteArrayInputStream(withHeader(w, h, RawFrame.FORMAT_RGBA_8888, true, pixels)), null);
+        BufferedImage target = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        for (int round = 0; round < 2; round++) {
+            int iterations = round == 0 ? 20 : 100;
+            long toImageNanos = 0;
+            long drawNanos = 0;
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                BufferedImage image = frame.toImage();
+                long converted = System.nanoTime();
+                Graphics2D g = target.createGraphics();
+                g.drawImage(image, 0, 0, null);
+                g.dispose();
+                toImageNanos += converted - start;
+                drawNanos += System.nanoTime() - converted;
+            }
+            if (round == 1) {
+                System.out.printf("RawFrame.toImage %.2f ms, drawImage %.2f ms per %dx%d frame%n",
+                        toImageNanos / 1e6 / iterations, drawNanos / 1e6 / iterations, w, h);
+            }
+        }
+    }
+
+    private static ByteArrayInputStream stream(int w, int h, int format, boolean colorSpace, int... pixels) throws IOException {
+        byte[] bytes = new byte[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            bytes[i] = (byte) pixels[i];
+        }
+        return new ByteArrayInputStream(withHeader(w, h, format, colorSpace, bytes));
+    }
+
+    private static byte[] withHeader(int w, int h, int format, boolean colorSpace, byte[] pixels) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int value : colorSpace ? new int[]{w, h, format, 1} : new int[]{w, h, format}) {
+            out.write(new byte[]{(byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24)});
+        }
+        out.write(pixels);
+        return out.toByteArray();
+    }
+}
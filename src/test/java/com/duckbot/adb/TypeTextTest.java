@@ -0,0 +1,68 @@
+package com.duckbot.adb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TypeTextTest {
+
+    private static final String SERIAL = "emulator-5554";
+
+    private FakeAdbServer server;
+    private AdbClient adb;
+    private final List<String> typed = new CopyOnWriteArrayList<>();
+    private volatile FakeAdbServer.Reply backendReply;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeAdbServer();
+        server.service("exec:sh", FakeAdbServer.shellReplies(line -> {
+            if (line.startsWith("input text ")) {
+                typed.add(line);
+                return new FakeAdbServer.Reply("", 0);
+            }
+            if (line.startsWith("sh -c ")) {
+                return backendReply;
+            }
+            return new FakeAdbServer.Reply("", 127);
+        }));
+        adb = new AdbClient("adb-not-installed", server.transport(1000));
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        adb.close();
+        server.close();
+    }
+
+    @Test
+    void deliveredTextIsNotTypedAgain() {
+        backendReply = new FakeAdbServer.Reply("Broadcasting: Intent { act=ADB_INPUT_B64 }\nBroadcast completed: result=0\n", 0);
+
+        assertTrue(adb.typeText(SERIAL, "hello", AdbClient.TextBackend.ADB_KEYBOARD));
+        assertEquals(List.of(), typed);
+    }
+
+    @Test
+    void unavailableBackendFallsBackToInputText() {
+        backendReply = new FakeAdbServer.Reply("__DUCKBOT_TEXT_BACKEND_UNAVAILABLE\n", 3);
+
+        assertTrue(adb.typeText(SERIAL, "hello", AdbClient.TextBackend.CLIPBOARD));
+        assertEquals(List.of("input text hello"), typed);
+    }
+
+    @Test
+    void uncertainDeliveryFailsWithoutRetyping() {
+        backendReply = new FakeAdbServer.Reply("Error: Activity manager has died\n", 1);
+
+        assertFalse(adb.typeText(SERIAL, "hello", AdbClient.TextBackend.ADB_KEYBOARD));
+        assertEquals(List.of(), typed);
+    }
+}
@@ -0,0 +1,119 @@
+package com.duckbot.adb;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UiHierarchyTest {
+
+    private static final String SERIAL = "emulator-5554";
+    static final String DUMP = "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>"
+            + "<hierarchy rotation=\"0\">"
+            + "<node index=\"0\" text=\"\" resource-id=\"\" class=\"android.widget.FrameLayout\" package=\"com.game\" bounds=\"[0,0][1080,1920]\">"
+            + "<node index=\"0\" text=\"Update available\" resource-id=\"com.game:id/title\" class=\"android.widget.TextView\" package=\"com.game\" bounds=\"[100,800][980,900]\" />"
+            + "<node index=\"1\" text=\"OK\" resource-id=\"com.game:id/ok\" class=\"android.widget.Button\" package=\"com.game\" clickable=\"true\" bounds=\"[600,1000][900,1100]\" />"
+            + "<node index=\"2\" text=\"Later\" resource-id=\"com.game:id/later\" class=\"android.widget.Button\" package=\"com.game\" clickable=\"true\" enabled=\"false\" bounds=\"[180,1000][480,1100]\" />"
+            + "</node></hierarchy>";
+
+    private FakeAdbServer server;
+    private AdbClient adb;
+    private final AtomicInteger dumps = new AtomicInteger();
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeAdbServer();
+        server.service("exec:sh", FakeAdbServer.shell(line -> {
+            if (line.contains("uiautomator dump")) {
+                dumps.incrementAndGet();
+                // cat of the dump file: no trailing newline
+                return DUMP;
+            }
+            return "";
+        }));
+        adb = new AdbClient("adb-not-installed", server.transport(1000));
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        adb.close();
+        server.close();
+    }
+
+    @Test
+    void parsesNodesInDocumentOrder() throws Exception {
+        UiHierarchy tree = UiHierarchy.parse(DUMP);
+
+        List<UiHierarchy.Node> nodes = tree.nodes();
+        assertEquals(4, nodes.size());
+        assertEquals(-1, nodes.get(0).parent);
+        assertEquals(List.of(1, 2, 3), nodes.get(0).children);
+        UiHierarchy.Node ok = nodes.get(2);
+        assertEquals("ok", ok.shortId);
+        assertEquals(750, ok.centerX());
+        assertEquals(1050, ok.centerY());
+        assertTrue(ok.clickable);
+        assertTrue(ok.enabled);
+        assertTrue(!nodes.get(3).enabled);
+    }
+
+    @Test
+    void findsByIdTextClassAndFlags() throws Exception {
+        UiHierarchy tree = UiHierarchy.parse(DUMP);
+
+        assertEquals("OK", tree.find(new UiHierarchy.Query().resourceId("ok")).text);
+        assertEquals("OK", tree.find(new UiHierarchy.Query().resourceId("com.game:id/ok")).text);
+        assertEquals("com.game:id/later", tree.find(new UiHierarchy.Query().text("Later")).resourceId);
+        assertEquals(2, tree.findAll(new UiHierarchy.Query().className("android.widget.Button").clickable()).size());
+        assertEquals("com.game:id/title", tree.find(new UiHierarchy.Query().textContains("Update")).resourceId);
+        assertNull(tree.find(new UiHierarchy.Query().text("OK").className("android.widget.TextView")));
+    }
+
+    @Test
+    void dumpWithoutTrailingNewlineRunsOnceAndReturnsPromptly() {
+        long started = System.nanoTime();
+        UiHierarchy tree = adb.uiDump(SERIAL);
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertNotNull(tree);
+        assertEquals(4, tree.nodes().size());
+        assertEquals(1, dumps.get());
+        assertTrue(elapsedMs < 5_000, "dump took " + elapsedMs + "ms");
+    }
+
+    @Test
+    void treeIsReusedUntilTheScreenChanges() {
+        BufferedImage screen = screen(Color.WHITE);
+
+        UiHierarchy first = adb.uiHierarchy(SERIAL, screen);
+        assertSame(first, adb.uiHierarchy(SERIAL, screen(Color.WHITE)));
+        assertEquals(1, dumps.get());
+
+        adb.uiHierarchy(SERIAL, screen(Color.DARK_GRAY));
+        assertEquals(2, dumps.get());
+
+        adb.invalidateUiHierarchy(SERIAL);
+        adb.uiHierarchy(SERIAL, screen(Color.DARK_GRAY));
+        assertEquals(3, dumps.get());
+    }
+
+    private static BufferedImage screen(Color color) {
+        BufferedImage image = new BufferedImage(108, 192, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(color);
+        g.fillRect(0, 0, 108, 192);
+        g.dispose();
+        return image;
+    }
+}
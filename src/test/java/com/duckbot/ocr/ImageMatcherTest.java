@@ -0,0 +1,97 @@
+package com.duckbot.ocr;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImageMatcherTest {
+
+    @TempDir
+    Path dir;
+    private final ImageMatcher matcher = new ImageMatcher();
+
+    @Test
+    void pyramidSearchFindsTheFullResolutionMatch() throws IOException {
+        BufferedImage screen = screen(1280, 720, 7);
+        int[][] spots = {{601, 333}, {17, 25}, {1180, 640}};
+        for (int[] spot : spots) {
+            String template = crop(screen, spot[0], spot[1], 64, 48);
+            try (Frame frame = new Frame(screen)) {
+                MatchResult exact = matcher.find(frame, template, null, 0);
+                for (int levels = 1; levels <= 2; levels++) {
+                    MatchResult pyramid = matcher.find(frame, template, null, levels);
+
+                    assertEquals(spot[0], exact.x);
+                    assertEquals(spot[1], exact.y);
+                    assertEquals(exact.x, pyramid.x, "x at " + levels + " levels");
+                    assertEquals(exact.y, pyramid.y, "y at " + levels + " levels");
+                    assertEquals(exact.score, pyramid.score, 0.01, "score at " + levels + " levels");
+                }
+            }
+        }
+    }
+
+    @Test
+    void pyramidSearchInARegionMatchesTheExactSearch() throws IOException {
+        BufferedImage screen = screen(1280, 720, 11);
+        String template = crop(screen, 400, 200, 80, 60);
+        Rectangle region = new Rectangle(300, 150, 300, 200);
+        try (Frame frame = new Frame(screen)) {
+            MatchResult exact = matcher.find(frame, template, region, 0);
+            MatchResult pyramid = matcher.find(frame, template, region, 2);
+
+            assertEquals(400, exact.x);
+            assertEquals(200, exact.y);
+            assertEquals(exact.x, pyramid.x);
+            assertEquals(exact.y, pyramid.y);
+            assertEquals(exact.score, pyramid.score, 0.01);
+        }
+    }
+
+    @Test
+    void pyramidSearchScoresAMissingTemplateLow() throws IOException {
+        String template = crop(screen(200, 200, 3), 50, 50, 64, 64);
+        try (Frame frame = new Frame(screen(1280, 720, 5))) {
+            MatchResult exact = matcher.find(frame, template, null, 0);
+            MatchResult pyramid = matcher.find(frame, template, null, 2);
+
+            assertTrue(pyramid.score <= exact.score + 1e-6, exact + " vs " + pyramid);
+            assertTrue(exact.score < 0.9, exact.toString());
+        }
+    }
+
+    /** Screen-like content: flat blocks of colour, so detail survives downscaling as on a game UI. */
+    private static BufferedImage screen(int width, int height, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        for (int i = 0; i < 1500; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g.fillRect(random.nextInt(width), random.nextInt(height), 6 + random.nextInt(40), 6 + random.nextInt(40));
+        }
+        g.dispose();
+        return image;
+    }
+
+    private String crop(BufferedImage screen, int x, int y, int width, int height) throws IOException {
+        BufferedImage part = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = part.createGraphics();
+        g.drawImage(screen.getSubimage(x, y, width, height), 0, 0, null);
+        g.dispose();
+        File file = dir.resolve("template-" + x + "-" + y + ".png").toFile();
+        ImageIO.write(part, "png", file);
+        return file.getPath();
+    }
+}
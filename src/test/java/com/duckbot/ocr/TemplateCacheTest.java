@@ -0,0 +1,115 @@
+package com.duckbot.ocr;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TemplateCacheTest {
+
+    /** A 10x10 BGR template: 300 bytes plus a third for its pyramid levels. */
+    private static final long TEMPLATE_BYTES = 400;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void evictsTheLeastRecentlyUsedOnceOverBudget() throws IOException {
+        TemplateCache cache = new TemplateCache(2 * TEMPLATE_BYTES);
+        String a = png("a", 10);
+        String b = png("b", 10);
+        String c = png("c", 10);
+
+        use(cache, a);
+        use(cache, b);
+        use(cache, a);
+        use(cache, c);
+
+        assertEquals(2L, cache.stats().get("entries"));
+        assertEquals(2 * TEMPLATE_BYTES, cache.stats().get("bytes"));
+        assertEquals(1L, cache.stats().get("evictions"));
+        long misses = cache.stats().get("misses");
+        use(cache, a);
+        assertEquals(misses, cache.stats().get("misses"), "a was used recently and must still be cached");
+        use(cache, b);
+        assertEquals(misses + 1, cache.stats().get("misses"), "b was least recently used and must be evicted");
+    }
+
+    @Test
+    void changedFileIsReloaded() throws IOException {
+        TemplateCache cache = new TemplateCache(1 << 20);
+        String path = png("a", 10);
+        use(cache, path);
+
+        File file = new File(path);
+        long modified = file.lastModified();
+        png("a", 12);
+        assertTrue(file.setLastModified(modified + 2000));
+
+        try (TemplateCache.Handle handle = cache.acquire(path)) {
+            assertEquals(12, handle.mat().cols());
+        }
+        assertEquals(2L, cache.stats().get("misses"));
+        assertEquals(1L, cache.stats().get("entries"));
+    }
+
+    @Test
+    void deletedFileIsDropped() throws IOException {
+        TemplateCache cache = new TemplateCache(1 << 20);
+        String path = png("a", 10);
+        use(cache, path);
+
+        assertTrue(new File(path).delete());
+
+        assertNull(cache.acquire(path));
+        assertEquals(0L, cache.stats().get("entries"));
+    }
+
+    @Test
+    void templateInUseIsNotFreedByEviction() throws IOException {
+        TemplateCache cache = new TemplateCache(TEMPLATE_BYTES);
+        String a = png("a", 10);
+        String b = png("b", 10);
+
+        TemplateCache.Handle held = cache.acquire(a);
+        assertNotNull(held);
+        Mat mat = held.mat();
+        use(cache, b);
+
+        assertEquals(1L, cache.stats().get("evictions"));
+        assertFalse(mat.empty(), "evicted while in use");
+        assertEquals(10, mat.cols());
+
+        held.close();
+        assertTrue(mat.empty(), "released once the last handle closed");
+    }
+
+    private static void use(TemplateCache cache, String path) {
+        try (TemplateCache.Handle handle = cache.acquire(path)) {
+            assertNotNull(handle, path);
+        }
+    }
+
+    private String png(String name, int size) throws IOException {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_3BYTE_BGR);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, (x * 25) << 16 | (y * 25) << 8 | name.charAt(0));
+            }
+        }
+        File file = dir.resolve(name + ".png").toFile();
+        ImageIO.write(image, "png", file);
+        return file.getPath();
+    }
+}
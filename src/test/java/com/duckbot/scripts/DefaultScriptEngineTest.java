@@ -0,0 +1,113 @@
+package com.duckbot.scripts;
+
+import com.duckbot.services.LogService;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DefaultScriptEngineTest {
+
+    private static final LogService QUIET = new LogService() {
+        @Override
+        public void debug(String fmt, Object... args) {
+        }
+
+        @Override
+        public void info(String fmt, Object... args) {
+        }
+
+        @Override
+        public void warn(String fmt, Object... args) {
+        }
+
+        @Override
+        public void error(String fmt, Object... args) {
+        }
+    };
+
+    private final DefaultScriptEngine engine = new DefaultScriptEngine(QUIET);
+    private final List<String> calls = new CopyOnWriteArrayList<>();
+
+    @Test
+    void droppedDeviceGetsNoFurtherSteps() throws Exception {
+        CountDownLatch bothBlocked = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch interrupted = new CountDownLatch(1);
+        Step block = step("BLOCK", ctx -> {
+            bothBlocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                throw e;
+            }
+        });
+        ScriptRunSpec spec = broadcast("run", record("first"), block, record("after"));
+
+        engine.runAsync(spec);
+        assertTrue(bothBlocked.await(2, TimeUnit.SECONDS));
+        assertTrue(engine.drop("run", "b"));
+        assertTrue(interrupted.await(2, TimeUnit.SECONDS), "dropped device's step was not interrupted");
+        release.countDown();
+        awaitFinished("run");
+
+        assertEquals(List.of("after:a", "first:a", "first:b"), sorted(calls));
+    }
+
+    @Test
+    void dropOfUnknownRunIsRejected() {
+        assertFalse(engine.drop("missing", "a"));
+    }
+
+    private ScriptRunSpec broadcast(String runId, Step... steps) {
+        Script script = new Script();
+        script.steps.addAll(List.of(steps));
+        ScriptRunSpec spec = new ScriptRunSpec();
+        spec.runId = runId;
+        spec.script = script;
+        spec.instanceNames = List.of("a", "b");
+        return spec;
+    }
+
+    private Step record(String name) {
+        return step(name, ctx -> calls.add(name + ":" + ctx.instanceName));
+    }
+
+    private void awaitFinished(String runId) throws InterruptedException {
+        long end = System.currentTimeMillis() + 2000;
+        while (engine.isRunning(runId) && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertFalse(engine.isRunning(runId));
+    }
+
+    private static List<String> sorted(List<String> values) {
+        return values.stream().sorted().toList();
+    }
+
+    private static Step step(String type, Body body) {
+        return new Step() {
+            @Override
+            public String type() {
+                return type;
+            }
+
+            @Override
+            public void execute(ScriptContext ctx) throws Exception {
+                body.run(ctx);
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        void run(ScriptContext ctx) throws Exception;
+    }
+}
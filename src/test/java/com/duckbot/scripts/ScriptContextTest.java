@@ -0,0 +1,73 @@
+package com.duckbot.scripts;
+
+import com.duckbot.ocr.Frame;
+import com.duckbot.scripts.steps.WaitStep;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ScriptContextTest {
+
+    private final AtomicInteger captures = new AtomicInteger();
+    private ScriptContext ctx;
+
+    @BeforeEach
+    void setUp() {
+        ctx = new ScriptContext();
+        ctx.screencap = () -> {
+            captures.incrementAndGet();
+            return new BufferedImage(4, 4, BufferedImage.TYPE_3BYTE_BGR);
+        };
+    }
+
+    @Test
+    void consecutiveChecksShareOneFrame() throws Exception {
+        Frame[] seen = new Frame[2];
+        ctx.runStep(check(seen, 0));
+        ctx.runStep(check(seen, 1));
+
+        assertSame(seen[0], seen[1]);
+        assertEquals(1, captures.get());
+    }
+
+    @Test
+    void screenChangingStepDropsTheFrame() throws Exception {
+        Frame[] seen = new Frame[2];
+        ctx.runStep(check(seen, 0));
+        ctx.runStep(new WaitStep());
+        ctx.runStep(check(seen, 1));
+
+        assertNotSame(seen[0], seen[1]);
+        assertEquals(2, captures.get());
+    }
+
+    @Test
+    void oldFrameIsRecaptured() throws Exception {
+        ctx.maxFrameAgeMs = 20;
+        Frame first = ctx.frame();
+        Thread.sleep(50);
+
+        assertNotSame(first, ctx.frame());
+        assertEquals(2, captures.get());
+    }
+
+    private static Step check(Frame[] seen, int index) {
+        return new Step() {
+            @Override
+            public String type() {
+                return "CHECK";
+            }
+
+            @Override
+            public void execute(ScriptContext ctx) {
+                seen[index] = ctx.frame();
+            }
+        };
+    }
+}
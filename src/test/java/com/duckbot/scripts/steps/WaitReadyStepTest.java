@@ -0,0 +1,49 @@
+package com.duckbot.scripts.steps;
+
+import com.duckbot.adb.AdbClient;
+import com.duckbot.adb.AdbSocketTransport;
+import com.duckbot.scripts.ScriptContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WaitReadyStepTest {
+
+    private AdbClient adb;
+    private ScriptContext ctx;
+
+    @BeforeEach
+    void setUp() {
+        // Nothing listens on port 1, so the device never reports boot completed
+        adb = new AdbClient("adb-not-installed", new AdbSocketTransport("127.0.0.1", 1, 200));
+        ctx = new ScriptContext();
+        ctx.adb = adb;
+        ctx.serial = "emulator-5554";
+        ctx.instanceName = "test";
+    }
+
+    @AfterEach
+    void tearDown() {
+        adb.close();
+    }
+
+    @Test
+    void timeoutFailsTheStep() {
+        WaitReadyStep step = new WaitReadyStep();
+        step.timeoutMs = 300;
+
+        assertThrows(IllegalStateException.class, () -> step.execute(ctx));
+    }
+
+    @Test
+    void timeoutCanBeSkippedPast() {
+        WaitReadyStep step = new WaitReadyStep();
+        step.timeoutMs = 300;
+        step.continueOnTimeout = true;
+
+        assertDoesNotThrow(() -> step.execute(ctx));
+    }
+}
@@ -0,0 +1,132 @@
+package com.duckbot.services.impl;
+
+import com.duckbot.adb.AdbClient;
+import com.duckbot.adb.FakeAdbServer;
+import com.duckbot.core.Config;
+import com.duckbot.services.DeviceHealth;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdbDeviceHealthMonitorTest {
+
+    private static final String DEVICE = "emulator-5554";
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private final Config.HealthConfig config = new Config.HealthConfig();
+    private final List<String> gaveUp = new CopyOnWriteArrayList<>();
+    private FakeAdbServer server;
+    private AdbClient adb;
+    private FakeLdPlayer ldPlayer;
+    private AdbDeviceHealthMonitor monitor;
+    private volatile boolean answering = true;
+    /** Byte the fake screen is filled with; changing it is a new frame. */
+    private volatile int screen;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new FakeAdbServer();
+        server.service("exec:sh", FakeAdbServer.shell(line -> answering ? (line.startsWith("echo") ? "ok\n" : "") : null));
+        server.service("exec:screencap", (service, socket) -> {
+            // 2x2 RGBA frame, no color space field
+            OutputStream out = socket.getOutputStream();
+            out.write(new byte[]{2, 0, 0, 0, 2, 0, 0, 0, 1, 0, 0, 0});
+            byte[] pixels = new byte[16];
+            java.util.Arrays.fill(pixels, (byte) screen);
+            out.write(pixels);
+            out.flush();
+        });
+        adb = new AdbClient("adb-not-installed", server.transport(1000));
+        ldPlayer = new FakeLdPlayer(adb);
+        config.maxConsecutiveFailures = 1;
+        config.stuckMinutes = 1;
+        config.recoveryGraceSeconds = 60;
+        config.flapWindowMinutes = 15;
+        config.maxBackoffMinutes = 30;
+        monitor = new AdbDeviceHealthMonitor(ldPlayer, config, now::get, false);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        monitor.close();
+        adb.close();
+        server.close();
+    }
+
+    @Test
+    void escalatesAppRestartThenInstanceRestartThenGivesUp() {
+        answering = false;
+        monitor.watch(DEVICE, "com.game", gaveUp::add);
+
+        monitor.checkAll();
+        assertEquals(List.of("runApp " + DEVICE + " com.game"), ldPlayer.actions);
+
+        // Still failing, but within the grace period of the app restart
+        advanceSeconds(30);
+        monitor.checkAll();
+        assertEquals(1, ldPlayer.actions.size());
+
+        advanceSeconds(31);
+        monitor.checkAll();
+        assertEquals(List.of("runApp " + DEVICE + " com.game", "restart " + DEVICE), ldPlayer.actions);
+        assertTrue(gaveUp.isEmpty());
+
+        advanceSeconds(61);
+        monitor.checkAll();
+        assertEquals(List.of(DEVICE), gaveUp);
+        assertTrue(monitor.snapshot().isEmpty());
+    }
+
+    @Test
+    void withoutAGamePackageStartsWithAnInstanceRestart() {
+        answering = false;
+        monitor.watch(DEVICE, null, gaveUp::add);
+
+        monitor.checkAll();
+
+        assertEquals(List.of("restart " + DEVICE), ldPlayer.actions);
+    }
+
+    @Test
+    void flappingDeviceDoublesItsGraceAndSkipsTheStepThatLastHelped() {
+        monitor.watch(DEVICE, "com.game", gaveUp::add);
+        monitor.checkAll();
+
+        // Same frame for over stuckMinutes: restart the app
+        advanceSeconds(61);
+        monitor.checkAll();
+        DeviceHealth first = health();
+        assertEquals(DeviceHealth.Stage.APP_RESTART, first.stage);
+        assertEquals(60_000L, first.backoffUntil - now.get());
+
+        // A new frame after the restart: recovered
+        screen = 1;
+        advanceSeconds(1);
+        monitor.checkAll();
+        assertEquals(DeviceHealth.Stage.HEALTHY, health().stage);
+
+        // Stuck again within the flap window
+        advanceSeconds(61);
+        monitor.checkAll();
+        DeviceHealth second = health();
+        assertEquals(DeviceHealth.Stage.INSTANCE_RESTART, second.stage);
+        assertEquals(120_000L, second.backoffUntil - now.get());
+        assertEquals(List.of("runApp " + DEVICE + " com.game", "restart " + DEVICE), ldPlayer.actions);
+    }
+
+    private DeviceHealth health() {
+        return monitor.snapshot().get(0);
+    }
+
+    private void advanceSeconds(long seconds) {
+        now.addAndGet(seconds * 1000);
+    }
+}
@@ -0,0 +1,61 @@
+package com.duckbot.services.impl;
+
+import com.duckbot.adb.AdbClient;
+import com.duckbot.adb.AdbSocketTransport;
+import com.duckbot.adb.LdPlayerManager;
+import com.duckbot.adb.LifecycleResult;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records lifecycle calls instead of driving ldconsole; instances are named by their serial.
+ */
+final class FakeLdPlayer extends LdPlayerManager {
+
+    final List<String> launched = new CopyOnWriteArrayList<>();
+    final List<String> quit = new CopyOnWriteArrayList<>();
+    /** Recovery calls in order, e.g. "runApp a com.game" or "restart a". */
+    final List<String> actions = new CopyOnWriteArrayList<>();
+    volatile boolean launchSucceeds = true;
+
+    /** With an ADB client that reaches nothing. */
+    FakeLdPlayer() {
+        this(new AdbClient("adb-not-installed", new AdbSocketTransport("127.0.0.1", 1, 200)));
+    }
+
+    FakeLdPlayer(AdbClient adb) {
+        super(adb);
+    }
+
+    @Override
+    public List<LifecycleResult> launchAll(List<String> instances) {
+        launched.addAll(instances);
+        return instances.stream()
+                .map(name -> new LifecycleResult(name, "launch", launchSucceeds, "", 0, launchSucceeds ? 0 : -1))
+                .toList();
+    }
+
+    @Override
+    public List<LifecycleResult> quitAll(List<String> instances) {
+        quit.addAll(instances);
+        return instances.stream().map(name -> new LifecycleResult(name, "quit", true, "", 0, -1)).toList();
+    }
+
+    @Override
+    public List<LifecycleResult> restartAll(List<String> instances) {
+        instances.forEach(name -> actions.add("restart " + name));
+        return instances.stream().map(name -> new LifecycleResult(name, "restart", true, "", 0, 0)).toList();
+    }
+
+    @Override
+    public boolean runApp(String instance, String packageName) {
+        actions.add("runApp " + instance + " " + packageName);
+        return true;
+    }
+
+    @Override
+    public String resolveSerial(String instance) {
+        return instance;
+    }
+}
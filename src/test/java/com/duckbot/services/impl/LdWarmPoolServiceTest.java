@@ -0,0 +1,142 @@
+package com.duckbot.services.impl;
+
+import com.duckbot.core.Config;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LdWarmPoolServiceTest {
+
+    private final FakeLdPlayer ldPlayer = new FakeLdPlayer();
+    private final Config.WarmPoolConfig config = new Config.WarmPoolConfig();
+    private LdWarmPoolService pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+        ldPlayer.adb().close();
+    }
+
+    @Test
+    void timedOutAcquireIsNotRelaunchedOrQuit() throws Exception {
+        config.spares = 0;
+        config.idleGraceSeconds = 0;
+        ldPlayer.launchSucceeds = false;
+        pool = new LdWarmPoolService(ldPlayer, null, config);
+
+        assertFalse(pool.acquire("a", Duration.ofMillis(300)));
+        assertEquals(List.of("a"), ldPlayer.launched);
+
+        // Wakes the maintenance pass, which must not retry the failed launch
+        pool.schedule("other", Long.MAX_VALUE);
+        Thread.sleep(200);
+        assertEquals(List.of("a"), ldPlayer.launched);
+
+        // Booted late while the run starts anyway: kept up until released
+        ldPlayer.launchSucceeds = true;
+        pool.schedule("a", System.currentTimeMillis());
+        await(() -> "WARM".equals(pool.states().get("a")));
+        pool.schedule("other", Long.MAX_VALUE);
+        Thread.sleep(200);
+        assertTrue(ldPlayer.quit.isEmpty());
+
+        pool.release("a");
+        await(() -> ldPlayer.quit.contains("a"));
+    }
+
+    @Test
+    void releaseClearsAScheduleOfAnInstanceNeverAcquired() throws Exception {
+        config.spares = 0;
+        config.idleGraceSeconds = 0;
+        pool = new LdWarmPoolService(ldPlayer, null, config);
+
+        // A run scheduled it but failed to reserve it, so never acquires it
+        pool.schedule("a", System.currentTimeMillis());
+        await(() -> "WARM".equals(pool.states().get("a")));
+        Thread.sleep(200);
+        assertTrue(ldPlayer.quit.isEmpty());
+
+        pool.release("a");
+        await(() -> ldPlayer.quit.contains("a"));
+    }
+
+    @Test
+    void failedLaunchIsNotRetriedWhileWaiting() {
+        config.spares = 0;
+        ldPlayer.launchSucceeds = false;
+        pool = new LdWarmPoolService(ldPlayer, null, config);
+
+        assertFalse(pool.acquire("a", Duration.ofMillis(300)));
+
+        assertEquals(List.of("a"), ldPlayer.launched);
+    }
+
+    @Test
+    void neverBootsMoreThanTheMemoryBudget() throws Exception {
+        config.spares = 0;
+        config.memoryBudgetMb = 4096;
+        config.instanceMemoryMb = 2048;
+        pool = new LdWarmPoolService(ldPlayer, null, config);
+
+        long now = System.currentTimeMillis();
+        pool.schedule("c", now + 2000);
+        pool.schedule("a", now);
+        pool.schedule("b", now + 1000);
+        await(() -> ldPlayer.launched.size() == 2);
+        Thread.sleep(200);
+
+        // Soonest first; the third waits for room
+        assertEquals(List.of("a", "b"), ldPlayer.launched.stream().sorted().toList());
+        assertEquals("COLD", pool.states().get("c"));
+    }
+
+    @Test
+    void idleInstancesAreQuitAfterTheGracePeriodButSparesKept() throws Exception {
+        config.instances = List.of("spare");
+        config.spares = 1;
+        config.idleGraceSeconds = 0;
+        pool = new LdWarmPoolService(ldPlayer, null, config);
+        await(() -> "WARM".equals(pool.states().get("spare")));
+
+        assertTrue(pool.acquire("a", Duration.ofSeconds(2)));
+        pool.release("a");
+        await(() -> ldPlayer.quit.contains("a"));
+
+        assertFalse(ldPlayer.quit.contains("spare"));
+        assertEquals("WARM", pool.states().get("spare"));
+    }
+
+    @Test
+    void idleInstanceIsKeptWithinTheGracePeriod() throws Exception {
+        config.spares = 0;
+        config.idleGraceSeconds = 300;
+        pool = new LdWarmPoolService(ldPlayer, null, config);
+
+        assertTrue(pool.acquire("a", Duration.ofSeconds(2)));
+        pool.release("a");
+        pool.schedule("other", Long.MAX_VALUE);
+        Thread.sleep(200);
+
+        assertTrue(ldPlayer.quit.isEmpty());
+        assertEquals("WARM", pool.states().get("a"));
+    }
+
+    static void await(BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > end) {
+                throw new AssertionError("condition not met in time");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
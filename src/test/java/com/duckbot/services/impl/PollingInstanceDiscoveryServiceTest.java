@@ -0,0 +1,84 @@
+package com.duckbot.services.impl;
+
+import com.duckbot.adb.FakeLdConsole;
+import com.duckbot.services.InstanceEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Polls tools/fake-ldplayer/ldconsole, whose list2 rows the test edits between refreshes.
+ */
+@DisabledOnOs(OS.WINDOWS)
+class PollingInstanceDiscoveryServiceTest {
+
+    @TempDir
+    Path dir;
+    private PollingInstanceDiscoveryService discovery;
+
+    @AfterEach
+    void tearDown() {
+        if (discovery != null) {
+            discovery.close();
+        }
+    }
+
+    @Test
+    void reportsAddedChangedAndRemovedInstances() throws Exception {
+        Path state = dir.resolve("state.csv");
+        List<String> events = new CopyOnWriteArrayList<>();
+        discovery = new PollingInstanceDiscoveryService(List.of(dir.toString()));
+        discovery.addListener(e -> events.add(e.type + " " + e.instance.name));
+        // Console installed only now, so no poll has seen an instance before the listener
+        Files.writeString(state, "0,LDPlayer,0,0,0,-1,-1,960,540,240\n1,farm,0,0,0,-1,-1,960,540,240\n");
+        FakeLdConsole.install(dir, state);
+
+        discovery.refresh();
+        assertEquals(List.of("ADDED LDPlayer", "ADDED farm"), events);
+        assertEquals(2, discovery.snapshot().size());
+
+        events.clear();
+        Files.writeString(state, "0,LDPlayer,0,0,0,-1,-1,960,540,240\n1,farm,131072,65536,1,4242,4243,960,540,240\n");
+        discovery.refresh();
+        assertEquals(List.of("STATE_CHANGED farm"), events);
+        assertTrue(discovery.find("farm").orElseThrow().running);
+
+        events.clear();
+        Files.writeString(state, "0,LDPlayer,0,0,0,-1,-1,960,540,240\n");
+        discovery.refresh();
+        assertEquals(List.of("REMOVED farm"), events);
+        assertTrue(discovery.find("farm").isEmpty());
+
+        events.clear();
+        discovery.refresh();
+        assertEquals(List.of(), events);
+    }
+
+    @Test
+    void failedListKeepsTheLastSnapshot() throws Exception {
+        Path state = dir.resolve("state.csv");
+        Files.writeString(state, "0,LDPlayer,0,0,0,-1,-1,960,540,240\n");
+        FakeLdConsole.install(dir, state);
+        discovery = new PollingInstanceDiscoveryService(List.of(dir.toString()));
+        discovery.refresh();
+        List<InstanceEvent> events = new CopyOnWriteArrayList<>();
+        discovery.addListener(events::add);
+
+        // list2 prints nothing, as when the console fails
+        Files.writeString(state, "");
+        discovery.refresh();
+
+        assertEquals(1, discovery.snapshot().size());
+        assertTrue(events.isEmpty(), events.toString());
+    }
+}